@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache;
+
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.policy.cache.configuration.CachePolicyConfiguration;
+import io.gravitee.policy.cache.configuration.CacheScope;
+import io.gravitee.policy.cache.support.InMemoryCache;
+import io.gravitee.policy.cache.support.StubExecutionContext;
+import io.gravitee.policy.cache.support.StubRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of computing the cache key of a request.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheKeyBenchmark {
+
+    /**
+     * Shape of the cache key: the path only, with a literal custom key, or with an expression to evaluate.
+     */
+    @Param({"path", "literal", "expression"})
+    public String keyShape;
+
+    private CachePolicy policy;
+    private ExecutionContext executionContext;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CachePolicyConfiguration configuration = new CachePolicyConfiguration();
+        configuration.setCacheName("my-cache");
+        configuration.setScope(CacheScope.APPLICATION);
+        switch (keyShape) {
+            case "literal":
+                configuration.setKey("products-v2");
+                break;
+            case "expression":
+                configuration.setKey("{#request.headers['X-Tenant'][0]}");
+                break;
+            default:
+                break;
+        }
+
+        StubRequest request = new StubRequest("/products/search");
+        request.headers().set("X-Tenant", "acme");
+
+        executionContext = new StubExecutionContext(request, new InMemoryCache());
+        policy = new CachePolicy(configuration);
+    }
+
+    @Benchmark
+    public String hash() {
+        return policy.hash(executionContext);
+    }
+}
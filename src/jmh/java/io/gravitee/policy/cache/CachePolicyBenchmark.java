@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.gateway.api.Invoker;
+import io.gravitee.gateway.api.Request;
+import io.gravitee.gateway.api.Response;
+import io.gravitee.gateway.api.handler.Handler;
+import io.gravitee.gateway.api.proxy.ProxyConnection;
+import io.gravitee.policy.api.PolicyChain;
+import io.gravitee.policy.api.PolicyResult;
+import io.gravitee.policy.cache.configuration.CachePolicyConfiguration;
+import io.gravitee.policy.cache.configuration.CacheScope;
+import io.gravitee.policy.cache.proxy.EmptyReadStream;
+import io.gravitee.policy.cache.support.InMemoryCache;
+import io.gravitee.policy.cache.support.StaticBackend;
+import io.gravitee.policy.cache.support.StubExecutionContext;
+import io.gravitee.policy.cache.support.StubRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of the policy: serving a hit, and filling the cache on a miss.
+ *
+ * <p>The cache resource and the backend are in-memory stand-ins, so that only the policy is measured.</p>
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CachePolicyBenchmark {
+
+    private static final PolicyChain POLICY_CHAIN = new PolicyChain() {
+        @Override
+        public void doNext(Request request, Response response) {
+        }
+
+        @Override
+        public void failWith(PolicyResult policyResult) {
+            throw new IllegalStateException(policyResult.message());
+        }
+
+        @Override
+        public void streamFailWith(PolicyResult policyResult) {
+            throw new IllegalStateException(policyResult.message());
+        }
+    };
+
+    @Param({"1024", "65536", "1048576"})
+    public int bodySize;
+
+    private final InMemoryCache cache = new InMemoryCache();
+
+    private ExecutionContext executionContext;
+    private Invoker cacheInvoker;
+    private String key;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CachePolicyConfiguration configuration = new CachePolicyConfiguration();
+        configuration.setCacheName("my-cache");
+        configuration.setScope(CacheScope.APPLICATION);
+        configuration.setTimeToLiveSeconds(3600);
+        configuration.setMaxCacheableBodySize(Long.MAX_VALUE);
+        StubRequest request = new StubRequest("/products/search");
+        request.headers().set(HttpHeaders.ACCEPT, "application/json");
+
+        HttpHeaders backendHeaders = new HttpHeaders();
+        backendHeaders.set(HttpHeaders.CONTENT_TYPE, "application/json");
+        backendHeaders.set(HttpHeaders.CONTENT_LENGTH, Integer.toString(bodySize));
+
+        executionContext = new StubExecutionContext(request, cache);
+        executionContext.setAttribute(ExecutionContext.ATTR_INVOKER, new StaticBackend(backendHeaders, bodySize, 8192));
+
+        CachePolicy policy = new CachePolicy(configuration);
+        policy.onRequest(request, null, executionContext, POLICY_CHAIN);
+        cacheInvoker = (Invoker) executionContext.getAttribute(ExecutionContext.ATTR_INVOKER);
+        key = policy.hash(executionContext);
+
+        // Prime the cache for the hit path
+        cacheInvoker.invoke(executionContext, new EmptyReadStream(), drain(null));
+    }
+
+    @Benchmark
+    public void hit(Blackhole blackhole) {
+        cacheInvoker.invoke(executionContext, new EmptyReadStream(), drain(blackhole));
+    }
+
+    @Benchmark
+    public void fill(Blackhole blackhole) {
+        cache.evict(key);
+        cacheInvoker.invoke(executionContext, new EmptyReadStream(), drain(blackhole));
+    }
+
+    private static Handler<ProxyConnection> drain(Blackhole blackhole) {
+        return connection -> connection.responseHandler(proxyResponse -> {
+            proxyResponse.bodyHandler(chunk -> {
+                if (blackhole != null) {
+                    blackhole.consume(chunk);
+                }
+            });
+            proxyResponse.endHandler(aVoid -> {});
+            proxyResponse.resume();
+        });
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.policy.cache.util.CacheControlUtil;
+import io.gravitee.policy.cache.util.ExpiresUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reading the freshness of a backend response from its <code>Cache-Control</code> and <code>Expires</code>
+ * headers.
+ *
+ * @author GraviteeSource Team
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeaderParsingBenchmark {
+
+    /**
+     * Shape of the response headers: a single directive, what most origins send, or a long list of directives
+     * with extensions and quoted values (and an <code>Expires</code> header only, for <code>expires</code>).
+     */
+    @Param({"simple", "typical", "complex", "expires"})
+    public String headerShape;
+
+    private String cacheControl;
+    private String expires;
+    private HttpHeaders headers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        expires = DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.now().plusSeconds(3600).atZone(ZoneOffset.UTC));
+        switch (headerShape) {
+            case "simple":
+                cacheControl = "max-age=600";
+                break;
+            case "typical":
+                cacheControl = "public, max-age=600, s-maxage=300, stale-while-revalidate=30";
+                break;
+            case "complex":
+                cacheControl = "public, max-age=600, s-maxage=300, must-revalidate, proxy-revalidate, "
+                        + "stale-while-revalidate=30, stale-if-error=86400, no-transform, "
+                        + "private=\"Set-Cookie, Authorization\", community=\"UCI\", immutable";
+                break;
+            default:
+                cacheControl = null;
+                break;
+        }
+
+        headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_TYPE, "application/json");
+        if (cacheControl != null) {
+            headers.set(HttpHeaders.CACHE_CONTROL, cacheControl);
+        }
+        headers.set(HttpHeaders.EXPIRES, expires);
+    }
+
+    /**
+     * Parsing through the memo of recently seen values, as done by the policy.
+     */
+    @Benchmark
+    public Object parseCacheControl() {
+        return CacheControlUtil.parseCacheControl(cacheControl);
+    }
+
+    /**
+     * Parsing from scratch, to measure the scanner itself.
+     */
+    @Benchmark
+    public Object scanCacheControl() {
+        return (cacheControl == null) ? null : new CacheControlUtil.CacheControlParser(cacheControl);
+    }
+
+    @Benchmark
+    public Instant parseExpires() {
+        return ExpiresUtil.parseExpires(expires);
+    }
+
+    @Benchmark
+    public long timeToLiveFromHeaders() {
+        return CachePolicy.timeToLiveFromHeaders(headers);
+    }
+}
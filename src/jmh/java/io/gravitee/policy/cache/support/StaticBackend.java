@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.support;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.gateway.api.Invoker;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.handler.Handler;
+import io.gravitee.gateway.api.proxy.ProxyConnection;
+import io.gravitee.gateway.api.proxy.ProxyResponse;
+import io.gravitee.gateway.api.stream.ReadStream;
+
+/**
+ * {@link Invoker} answering every request with the same response, its body being sent in fixed-size chunks.
+ *
+ * @author GraviteeSource Team
+ */
+public class StaticBackend implements Invoker {
+
+    private final HttpHeaders headers;
+    private final byte[][] chunks;
+
+    public StaticBackend(final HttpHeaders headers, final int bodySize, final int chunkSize) {
+        this.headers = headers;
+        this.chunks = new byte[(bodySize + chunkSize - 1) / chunkSize][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new byte[Math.min(chunkSize, bodySize - i * chunkSize)];
+        }
+    }
+
+    @Override
+    public void invoke(ExecutionContext executionContext, ReadStream<Buffer> stream, Handler<ProxyConnection> connectionHandler) {
+        StaticConnection connection = new StaticConnection();
+        connectionHandler.handle(connection);
+        stream.bodyHandler(connection::write).endHandler(aVoid -> connection.end());
+    }
+
+    private class StaticConnection implements ProxyConnection {
+        private Handler<ProxyResponse> responseHandler;
+
+        @Override
+        public ProxyConnection write(Buffer buffer) {
+            return this;
+        }
+
+        @Override
+        public void end() {
+            responseHandler.handle(new StaticResponse());
+        }
+
+        @Override
+        public ProxyConnection responseHandler(Handler<ProxyResponse> responseHandler) {
+            this.responseHandler = responseHandler;
+            return this;
+        }
+    }
+
+    private class StaticResponse implements ProxyResponse {
+        private Handler<Buffer> bodyHandler;
+        private Handler<Void> endHandler;
+
+        @Override
+        public int status() {
+            return 200;
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return headers;
+        }
+
+        @Override
+        public ReadStream<Buffer> bodyHandler(Handler<Buffer> bodyHandler) {
+            this.bodyHandler = bodyHandler;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+            this.endHandler = endHandler;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> resume() {
+            for (byte[] chunk : chunks) {
+                bodyHandler.handle(Buffer.buffer(chunk));
+            }
+            endHandler.handle(null);
+            return this;
+        }
+    }
+}
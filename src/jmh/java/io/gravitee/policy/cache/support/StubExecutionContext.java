@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.support;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.common.util.MultiValueMap;
+import io.gravitee.el.TemplateEngine;
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.gateway.api.Request;
+import io.gravitee.gateway.api.Response;
+import io.gravitee.resource.api.ResourceManager;
+import io.gravitee.resource.cache.Cache;
+import io.gravitee.resource.cache.CacheResource;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link ExecutionContext} exposing a single cache resource, named <code>my-cache</code>.
+ *
+ * @author GraviteeSource Team
+ */
+public class StubExecutionContext implements ExecutionContext {
+
+    private final Request request;
+    private final ResourceManager resourceManager;
+    private final Map<String, Object> attributes = new HashMap<>();
+    private TemplateEngine templateEngine;
+
+    public StubExecutionContext(final Request request, final Cache cache) {
+        this.request = request;
+        this.resourceManager = new StubResourceManager(cache);
+        attributes.put(ATTR_API, "my-api");
+        attributes.put(ATTR_APPLICATION, "my-application");
+    }
+
+    @Override
+    public Request request() {
+        return request;
+    }
+
+    @Override
+    public Response response() {
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getComponent(Class<T> componentClass) {
+        return (componentClass == ResourceManager.class) ? (T) resourceManager : null;
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public TemplateEngine getTemplateEngine() {
+        if (templateEngine == null) {
+            templateEngine = TemplateEngine.templateEngine();
+            templateEngine.getTemplateContext().setVariable("request", new EvaluableRequest(request));
+        }
+        return templateEngine;
+    }
+
+    /**
+     * Bean view of the request, as exposed to expressions by the gateway.
+     */
+    public static class EvaluableRequest {
+        private final Request request;
+
+        EvaluableRequest(final Request request) {
+            this.request = request;
+        }
+
+        public String getPath() {
+            return request.path();
+        }
+
+        public HttpHeaders getHeaders() {
+            return request.headers();
+        }
+
+        public MultiValueMap<String, String> getParams() {
+            return request.parameters();
+        }
+    }
+
+    private static class StubResourceManager implements ResourceManager {
+        private final CacheResource cacheResource;
+
+        StubResourceManager(final Cache cache) {
+            this.cacheResource = new CacheResource() {
+                @Override
+                public Cache getCache() {
+                    return cache;
+                }
+            };
+        }
+
+        @Override
+        public Object getResource(String name) {
+            return cacheResource;
+        }
+
+        @Override
+        public <T> T getResource(Class<T> type) {
+            return type.cast(cacheResource);
+        }
+
+        @Override
+        public <T> T getResource(String name, Class<T> type) {
+            return type.cast(cacheResource);
+        }
+
+        @Override
+        public Class<?> getType(String name) {
+            return CacheResource.class;
+        }
+
+        @Override
+        public boolean containsResource(String name) {
+            return true;
+        }
+    }
+}
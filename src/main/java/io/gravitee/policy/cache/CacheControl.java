@@ -29,6 +29,11 @@ public class CacheControl {
     private boolean isPublic;
     private long maxAge = -1;
     private long sMaxAge = -1;
+    private long staleWhileRevalidate = -1;
+    private long staleIfError = -1;
+    private long maxStale = -1;
+    private long minFresh = -1;
+    private boolean onlyIfCached;
 
     public boolean isPrivate() {
         return isPrivate;
@@ -93,4 +98,54 @@ public class CacheControl {
     public void setSMaxAge(long sMaxAge) {
         this.sMaxAge = sMaxAge;
     }
+
+    public long getStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    public void setStaleWhileRevalidate(long staleWhileRevalidate) {
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    public long getStaleIfError() {
+        return staleIfError;
+    }
+
+    public void setStaleIfError(long staleIfError) {
+        this.staleIfError = staleIfError;
+    }
+
+    /**
+     * Request directive: staleness (in seconds) accepted by the client. Without value, any staleness is accepted and
+     * the largest delta-seconds (2^31) is used.
+     */
+    public long getMaxStale() {
+        return maxStale;
+    }
+
+    public void setMaxStale(long maxStale) {
+        this.maxStale = maxStale;
+    }
+
+    /**
+     * Request directive: time (in seconds) the response must stay fresh for the client.
+     */
+    public long getMinFresh() {
+        return minFresh;
+    }
+
+    public void setMinFresh(long minFresh) {
+        this.minFresh = minFresh;
+    }
+
+    /**
+     * Request directive: the client only wants a cached response.
+     */
+    public boolean isOnlyIfCached() {
+        return onlyIfCached;
+    }
+
+    public void setOnlyIfCached(boolean onlyIfCached) {
+        this.onlyIfCached = onlyIfCached;
+    }
 }
@@ -18,6 +18,7 @@ package io.gravitee.policy.cache;
 import io.gravitee.common.http.HttpHeaders;
 import io.gravitee.common.http.HttpMethod;
 import io.gravitee.common.http.HttpStatusCode;
+import io.gravitee.common.http.MediaType;
 import io.gravitee.gateway.api.ExecutionContext;
 import io.gravitee.gateway.api.Invoker;
 import io.gravitee.gateway.api.Request;
@@ -30,11 +31,37 @@ import io.gravitee.gateway.api.stream.ReadStream;
 import io.gravitee.policy.api.PolicyChain;
 import io.gravitee.policy.api.PolicyResult;
 import io.gravitee.policy.api.annotations.OnRequest;
+import io.gravitee.policy.cache.coalescing.InFlightRequest;
+import io.gravitee.policy.cache.coalescing.RequestCoalescer;
 import io.gravitee.policy.cache.configuration.CachePolicyConfiguration;
+import io.gravitee.policy.cache.configuration.CacheScope;
+import io.gravitee.policy.cache.configuration.CompressionAlgorithm;
+import io.gravitee.policy.cache.disk.DiskStore;
+import io.gravitee.policy.cache.key.BodyDigest;
+import io.gravitee.policy.cache.key.CacheKeyBuilder;
+import io.gravitee.policy.cache.key.KeyTemplate;
+import io.gravitee.policy.cache.metrics.CacheEvent;
+import io.gravitee.policy.cache.metrics.CacheMetricsRegistry;
+import io.gravitee.policy.cache.metrics.CacheMetricsUsage;
+import io.gravitee.policy.cache.offheap.OffHeapStore;
+import io.gravitee.policy.cache.prewarm.CachePrewarmer;
+import io.gravitee.policy.cache.prewarm.WarmupExecutionContext;
+import io.gravitee.policy.cache.proxy.BufferedReadStream;
 import io.gravitee.policy.cache.proxy.CacheProxyConnection;
+import io.gravitee.policy.cache.proxy.EmptyReadStream;
+import io.gravitee.policy.cache.resource.CacheAttachments;
 import io.gravitee.policy.cache.resource.CacheElement;
+import io.gravitee.policy.cache.resource.LocalCache;
+import io.gravitee.policy.cache.resource.NearCache;
+import io.gravitee.policy.cache.resource.PathIndex;
+import io.gravitee.policy.cache.resource.TagIndex;
+import io.gravitee.policy.cache.resource.VaryIndex;
+import io.gravitee.policy.cache.snapshot.CacheSnapshotter;
+import io.gravitee.policy.cache.util.Blocking;
 import io.gravitee.policy.cache.util.CacheControlUtil;
+import io.gravitee.policy.cache.util.CompressionUtil;
 import io.gravitee.policy.cache.util.ExpiresUtil;
+import io.gravitee.policy.cache.util.VaryUtil;
 import io.gravitee.resource.api.ResourceManager;
 import io.gravitee.resource.cache.Cache;
 import io.gravitee.resource.cache.CacheResource;
@@ -42,7 +69,16 @@ import io.gravitee.resource.cache.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * @author David BRASSELY (david.brassely at graviteesource.com)
@@ -57,14 +93,46 @@ public class CachePolicy {
      */
     private final CachePolicyConfiguration cachePolicyConfiguration;
 
-    private final static char KEY_SEPARATOR = '_';
+    // Shared by all the policy instances to coalesce concurrent cache misses
+    private final static RequestCoalescer COALESCER = new RequestCoalescer();
+
+    // Attributes exposing the outcome of the policy to the request metrics
+    public final static String ATTR_CACHE_STATUS = ExecutionContext.ATTR_PREFIX + "cache.status";
+    public final static String ATTR_CACHE_FILL_LATENCY = ExecutionContext.ATTR_PREFIX + "cache.fill-latency";
+    public final static String ATTR_CACHE_BODY_SIZE = ExecutionContext.ATTR_PREFIX + "cache.body-size";
+
+    private final static CacheMetricsRegistry METRICS = CacheMetricsRegistry.getInstance();
+
+    // Largest buffer allocated upfront for the content to put in cache, whatever the declared length
+    private final static int MAX_PRESIZED_CONTENT = 1024 * 1024;
 
     // Policy cache action
     private final static String CACHE_ACTION_QUERY_PARAMETER = "cache";
     private final static String X_GRAVITEE_CACHE_ACTION = "X-Gravitee-Cache";
 
+    // Purge of the elements carrying tags
+    private final static String X_GRAVITEE_CACHE_PURGE_TAGS = "X-Gravitee-Cache-Purge-Tags";
+    private final static String X_GRAVITEE_CACHE_PURGE_SECRET = "X-Gravitee-Cache-Purge-Secret";
+
+    // Warning added to stale responses returned because the backend is failing (RFC 7234, section 5.5.2)
+    private final static String STALE_IF_ERROR_WARNING = "111 - \"Revalidation Failed\"";
+
+    // Warning added to stale responses accepted by the client through max-stale (RFC 7234, section 5.5.1)
+    private final static String STALE_WARNING = "110 - \"Response is Stale\"";
+
     private Cache cache;
     private CacheAction action;
+    private ExecutionContext executionContext;
+
+    // The key of the request, before the selection of a variant
+    private String primaryKey;
+
+    // Counts accesses to the elements, when hot elements are snapshotted
+    private CacheSnapshotter snapshotter;
+
+    // Whether the request is cached according to its body, and the digest of the body once read
+    private boolean bodyKeyed;
+    private String bodyDigest;
 
     public CachePolicy(final CachePolicyConfiguration cachePolicyConfiguration) {
         this.cachePolicyConfiguration = cachePolicyConfiguration;
@@ -72,31 +140,40 @@ public class CachePolicy {
 
     @OnRequest
     public void onRequest(Request request, Response response, ExecutionContext executionContext, PolicyChain policyChain) {
+        this.executionContext = executionContext;
+
+        String purgedTags = request.headers().getFirst(X_GRAVITEE_CACHE_PURGE_TAGS);
+        if (purgedTags != null) {
+            // Do not propagate specific header
+            request.headers().remove(X_GRAVITEE_CACHE_PURGE_TAGS);
+            purge(request, response, executionContext, policyChain, () -> purgeTags(purgedTags));
+            return;
+        }
+
         action = lookForAction(request);
 
-        if (action != CacheAction.BY_PASS) {
+        if (action == CacheAction.PURGE) {
+            purge(request, response, executionContext, policyChain, () -> purgePath(request.path()));
+            return;
+        }
+
+        if (action == CacheAction.BY_PASS) {
+            record(CacheEvent.BYPASS);
+        } else {
+            bodyKeyed = isBodyKeyed(request);
             if (request.method() == HttpMethod.GET ||
                     request.method() == HttpMethod.OPTIONS ||
-                    request.method() == HttpMethod.HEAD) {
-
-                // It's safe to do so because a new instance of policy is created for each request.
-                String cacheName = cachePolicyConfiguration.getCacheName();
-                CacheResource cacheResource = executionContext.getComponent(ResourceManager.class)
-                        .getResource(cacheName, CacheResource.class);
-                if (cacheResource == null) {
-                    policyChain.failWith(PolicyResult.failure("No cache has been defined with name " + cacheName));
-                    return;
-                }
+                    request.method() == HttpMethod.HEAD || bodyKeyed) {
 
-                cache = cacheResource.getCache();
-                if (cache == null) {
-                    policyChain.failWith(PolicyResult.failure("No cache named [ " + cacheName + " ] has been found."));
+                if (!resolveCache(executionContext, policyChain)) {
                     return;
                 }
 
                 // Override the invoker for safe request to cache content (if required)
                 Invoker defaultInvoker = (Invoker) executionContext.getAttribute(ExecutionContext.ATTR_INVOKER);
                 executionContext.setAttribute(ExecutionContext.ATTR_INVOKER, new CacheInvoker(defaultInvoker));
+
+                prewarm(executionContext, defaultInvoker);
             } else {
                 LOGGER.debug("Request {} is not a safe request, disable caching for it.", request.id());
             }
@@ -105,6 +182,262 @@ public class CachePolicy {
         policyChain.doNext(request, response);
     }
 
+    /**
+     * Look for the cache resource of the policy, failing the request if it does not exist.
+     */
+    private boolean resolveCache(ExecutionContext executionContext, PolicyChain policyChain) {
+        // It's safe to do so because a new instance of policy is created for each request.
+        String cacheName = cachePolicyConfiguration.getCacheName();
+        CacheResource cacheResource = executionContext.getComponent(ResourceManager.class)
+                .getResource(cacheName, CacheResource.class);
+        if (cacheResource == null) {
+            policyChain.failWith(PolicyResult.failure("No cache has been defined with name " + cacheName));
+            return false;
+        }
+
+        cache = cacheResource.getCache();
+        if (cache == null) {
+            policyChain.failWith(PolicyResult.failure("No cache named [ " + cacheName + " ] has been found."));
+            return false;
+        }
+
+        // The metrics of the API for this cache resource are dropped once the resource has been stopped
+        String api = (String) executionContext.getAttribute(ExecutionContext.ATTR_API);
+        CacheAttachments.get(cache, CacheMetricsUsage.class, () -> new CacheMetricsUsage(METRICS, api, cacheName));
+
+        String snapshotFile = cachePolicyConfiguration.getSnapshotFile();
+        if (snapshotFile != null && !snapshotFile.isEmpty()) {
+            snapshotter = CacheAttachments.get(cache, CacheSnapshotter.class, () -> new CacheSnapshotter(
+                    Paths.get(snapshotFile), cachePolicyConfiguration.getSnapshotIntervalSeconds(),
+                    cachePolicyConfiguration.getSnapshotMaxEntries()));
+            snapshotter.start(cache);
+        }
+
+        if (cachePolicyConfiguration.isNearCache()) {
+            // The local tier is shared by all the requests using this cache resource
+            LocalCache localCache = CacheAttachments.get(cache, LocalCache.class, () -> new LocalCache(
+                    cachePolicyConfiguration.getNearCacheMaxEntries(),
+                    cachePolicyConfiguration.getNearCacheMaxSize(),
+                    cachePolicyConfiguration.getNearCacheTimeToLiveSeconds() * 1000L));
+            cache = new NearCache(localCache, cache);
+        }
+
+        return true;
+    }
+
+    /**
+     * Evict the given elements, and answer with the number of evicted elements without calling the backend.
+     *
+     * @param purge the keys of the elements to evict, dropped from the indexes.
+     */
+    private void purge(Request request, Response response, ExecutionContext executionContext,
+                       PolicyChain policyChain, Supplier<Set<String>> purge) {
+        // Do not propagate specific header
+        String secret = request.headers().getFirst(X_GRAVITEE_CACHE_PURGE_SECRET);
+        request.headers().remove(X_GRAVITEE_CACHE_PURGE_SECRET);
+
+        if (!isPurgeAllowed(secret)) {
+            LOGGER.debug("Request {} is not allowed to purge the cache", request.id());
+            policyChain.failWith(PolicyResult.failure(HttpStatusCode.FORBIDDEN_403, "Cache purge is not allowed"));
+            return;
+        }
+
+        if (!resolveCache(executionContext, policyChain)) {
+            return;
+        }
+
+        Set<String> purged = purge.get();
+        purged.forEach(cache::evict);
+
+        CacheResponse result = purgeResult(purged.size());
+        executionContext.setAttribute(ExecutionContext.ATTR_INVOKER, (Invoker) (context, stream, connectionHandler) ->
+                serve(context, stream, connectionHandler, result));
+
+        policyChain.doNext(request, response);
+    }
+
+    private Set<String> purgeTags(String purgedTags) {
+        Set<String> tags = TagIndex.parse(Collections.singletonList(purgedTags));
+        TagIndex tagIndex = CacheAttachments.get(cache, TagIndex.class);
+        Set<String> purged = (tagIndex != null) ? tagIndex.purge(tags) : Collections.emptySet();
+        LOGGER.info("{} elements purged from cache {} for tags {}", purged.size(),
+                cachePolicyConfiguration.getCacheName(), tags);
+        return purged;
+    }
+
+    private Set<String> purgePath(String path) {
+        // Clients may have encoded the wildcards of the pattern
+        String pattern = path.replace("%2A", "*").replace("%2a", "*");
+        PathIndex pathIndex = CacheAttachments.get(cache, PathIndex.class);
+        Set<String> purged = (pathIndex != null) ? pathIndex.purge(pattern) : Collections.emptySet();
+        LOGGER.info("{} elements purged from cache {} for path {}", purged.size(),
+                cachePolicyConfiguration.getCacheName(), pattern);
+        return purged;
+    }
+
+    private boolean isPurgeEnabled() {
+        String purgeSecret = cachePolicyConfiguration.getPurgeSecret();
+        return purgeSecret != null && !purgeSecret.isEmpty();
+    }
+
+    /**
+     * Whether the request carries the purge secret of the configuration. Purges are not allowed without a secret.
+     */
+    private boolean isPurgeAllowed(String secret) {
+        if (!isPurgeEnabled() || secret == null) {
+            return false;
+        }
+
+        // Constant time comparison, not to leak the secret through response times
+        return MessageDigest.isEqual(cachePolicyConfiguration.getPurgeSecret().getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static CacheResponse purgeResult(int purged) {
+        CacheResponse response = new CacheResponse();
+        response.setStatus(HttpStatusCode.OK_200);
+        response.setHeaders(new HttpHeaders());
+        response.getHeaders().set(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON);
+        response.setContent(Buffer.buffer("{\"purged\":" + purged + '}'));
+        return response;
+    }
+
+    /**
+     * Index the element put in cache under the given key with the tags of its response, when tags are used, and with
+     * the path of its request, when purges are enabled.
+     */
+    private void index(String key, HttpHeaders headers, long hardExpiry) {
+        String tagHeader = cachePolicyConfiguration.getTagHeader();
+        if (tagHeader != null && !tagHeader.isEmpty()) {
+            TagIndex tagIndex = CacheAttachments.get(cache, TagIndex.class,
+                    () -> new TagIndex(cachePolicyConfiguration.getMaxTaggedKeys()));
+            List<String> dropped = tagIndex.index(key, TagIndex.parse(headers.get(tagHeader)), hardExpiry);
+            if (!dropped.isEmpty()) {
+                LOGGER.debug("{} tagged elements evicted from cache to keep the tag index bounded", dropped.size());
+                dropped.forEach(cache::evict);
+            }
+        }
+
+        if (isPurgeEnabled()) {
+            PathIndex pathIndex = CacheAttachments.get(cache, PathIndex.class,
+                    () -> new PathIndex(cachePolicyConfiguration.getMaxIndexedPaths()));
+            List<String> dropped = pathIndex.index(key, executionContext.request().path(), hardExpiry);
+            if (!dropped.isEmpty()) {
+                LOGGER.debug("{} elements evicted from cache to keep the path index bounded", dropped.size());
+                dropped.forEach(cache::evict);
+            }
+        }
+    }
+
+    /**
+     * Drop the given key from the indexes if its element has expired, the cache resource having evicted it.
+     */
+    private void unindex(String key) {
+        long now = System.currentTimeMillis();
+        if (cachePolicyConfiguration.getTagHeader() != null && !cachePolicyConfiguration.getTagHeader().isEmpty()) {
+            TagIndex tagIndex = CacheAttachments.get(cache, TagIndex.class);
+            if (tagIndex != null) {
+                tagIndex.expire(key, now);
+            }
+        }
+
+        if (isPurgeEnabled()) {
+            PathIndex pathIndex = CacheAttachments.get(cache, PathIndex.class);
+            if (pathIndex != null) {
+                pathIndex.expire(key, now);
+            }
+        }
+    }
+
+    /**
+     * @return <code>false</code> if the content of the response is no longer available, nothing being sent then.
+     */
+    private boolean serve(ExecutionContext executionContext, ReadStream<Buffer> stream,
+                          Handler<ProxyConnection> connectionHandler, CacheResponse response) {
+        CacheProxyConnection proxyConnection = connect(executionContext, response);
+        if (!proxyConnection.isContentAvailable()) {
+            return false;
+        }
+
+        serve(executionContext, stream, connectionHandler, proxyConnection);
+        return true;
+    }
+
+    private static CacheProxyConnection connect(ExecutionContext executionContext, CacheResponse response) {
+        return new CacheProxyConnection(response, executionContext.request().headers().getFirst(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    private void serve(ExecutionContext executionContext, ReadStream<Buffer> stream,
+                       Handler<ProxyConnection> connectionHandler, CacheProxyConnection proxyConnection) {
+        // Ok, there is a value for this request in cache so send it through proxy connection
+        connectionHandler.handle(proxyConnection);
+
+        // The body read to be part of the key is not needed anymore
+        if (stream instanceof BufferedReadStream) {
+            ((BufferedReadStream) stream).discard();
+        }
+
+        // Plug underlying stream to connection stream
+        stream
+                .bodyHandler(proxyConnection::write)
+                .endHandler(aVoid -> proxyConnection.end());
+
+        // Resume the incoming request to handle content and end
+        executionContext.request().resume();
+    }
+
+    /**
+     * Start warming the cache up, if configured and not already done for this cache resource.
+     */
+    private void prewarm(ExecutionContext executionContext, Invoker defaultInvoker) {
+        List<String> paths = cachePolicyConfiguration.getPrewarmPaths();
+        String file = cachePolicyConfiguration.getPrewarmFile();
+        if ((paths == null || paths.isEmpty()) && (file == null || file.isEmpty())) {
+            return;
+        }
+
+        if (cachePolicyConfiguration.getScope() == CacheScope.APPLICATION) {
+            // Warm-up requests do not belong to any application, their responses would be cached under no client key
+            LOGGER.debug("Cache {} is not warmed up with the APPLICATION scope", cachePolicyConfiguration.getCacheName());
+            return;
+        }
+
+        CachePrewarmer prewarmer = CacheAttachments.get(cache, CachePrewarmer.class, () -> new CachePrewarmer(
+                cachePolicyConfiguration.getPrewarmConcurrency(), cachePolicyConfiguration.getPrewarmRatePerSecond()));
+
+        Cache warmedCache = cache;
+        if (prewarmer.start(paths, file, (path, done) ->
+                warm(new WarmupExecutionContext(executionContext, path, cachePolicyConfiguration.getPrewarmHeaders()),
+                        warmedCache, defaultInvoker, done))) {
+            LOGGER.debug("Request {} started the warm-up of cache {}", executionContext.request().id(),
+                    cachePolicyConfiguration.getCacheName());
+        }
+    }
+
+    /**
+     * Send a warm-up request through a policy of its own, so that its response is put in cache under the key a
+     * client request for the same path would get.
+     */
+    private void warm(ExecutionContext warmupContext, Cache cache, Invoker defaultInvoker, Handler<Void> done) {
+        CachePolicy policy = new CachePolicy(cachePolicyConfiguration);
+        policy.executionContext = warmupContext;
+        policy.cache = cache;
+
+        policy.new CacheInvoker(defaultInvoker).invoke(warmupContext, new EmptyReadStream(), proxyConnection -> {
+            proxyConnection.exceptionHandler(throwable -> {
+                LOGGER.debug("Unable to warm up path {}", warmupContext.request().path(), throwable);
+                done.handle(null);
+            });
+
+            proxyConnection.responseHandler(proxyResponse -> {
+                // Nobody is waiting for this response, just consume it to fill the cache
+                proxyResponse
+                        .bodyHandler(chunk -> {})
+                        .endHandler(aVoid -> done.handle(null));
+                proxyResponse.resume();
+            });
+        });
+    }
+
     class CacheInvoker implements Invoker {
 
         private final Invoker invoker;
@@ -115,60 +448,327 @@ public class CachePolicy {
 
         @Override
         public void invoke(ExecutionContext executionContext, ReadStream<Buffer> stream, Handler<ProxyConnection> connectionHandler) {
-            // Here we have to check if there is a value in cache
-            String cacheId = hash(executionContext);
-            LOGGER.debug("Looking for element in cache with the key {}", cacheId);
+            if (bodyKeyed && bodyDigest == null) {
+                readBody(executionContext, stream, connectionHandler);
+                return;
+            }
 
-            Element elt = cache.get(cacheId);
+            // Here we have to check if there is a value in cache
+            primaryKey = hash(executionContext);
+            LOGGER.debug("Looking for element in cache with the key {}", primaryKey);
+
+            Element elt = cache.get(primaryKey);
+            String cacheId = (elt != null && elt.value() instanceof VaryIndex)
+                    ? variantKey(executionContext.request(), ((VaryIndex) elt.value()).getHeaderNames()) : primaryKey;
+            if (!cacheId.equals(primaryKey)) {
+                LOGGER.debug("Responses for key {} vary, looking for the variant with the key {}", primaryKey, cacheId);
+                elt = cache.get(cacheId);
+            }
+            CacheResponse cached = (elt != null) ? (CacheResponse) elt.value() : null;
+            if (elt == null) {
+                unindex(cacheId);
+            }
+            if (cached != null && !cached.isContentAvailable()) {
+                LOGGER.debug("The content of the element for key {} is no longer available, ignoring it", cacheId);
+                cached = null;
+            }
+            long now = System.currentTimeMillis();
+
+            // Cache-Control directives of the request, when they are honored
+            CacheControl requestCacheControl = cachePolicyConfiguration.isUseRequestCacheHeaders()
+                    ? CacheControlUtil.parseCacheControl(executionContext.request().headers().getFirst(HttpHeaders.CACHE_CONTROL))
+                    : null;
+            boolean onlyIfCached = requestCacheControl != null && requestCacheControl.isOnlyIfCached();
+
+            // The cached response, if any, to return when the backend is failing
+            CacheResponse fallback = (cached != null && cachePolicyConfiguration.getStaleIfErrorSeconds() > 0
+                    && cached.isStaleIfError(now)) ? cached : null;
+
+            // The cached response, if any, to conditionally revalidate instead of fetching it again. Conditional requests
+            // with another method than GET or HEAD are preconditions, not revalidations
+            CacheResponse revalidated = (cached != null && !bodyKeyed && cachePolicyConfiguration.getRevalidationWindowSeconds() > 0
+                    && cached.hasValidators() && (action == CacheAction.REFRESH || !cached.isFresh(now))) ? cached : null;
+
+            boolean usable = cached != null && action != CacheAction.REFRESH && satisfies(requestCacheControl, cached, now);
+
+            // The content of the cached response is held from now on, the cache may give it back at any time
+            CacheProxyConnection hit = usable ? connect(executionContext, cached) : null;
+            if (hit != null && !hit.isContentAvailable()) {
+                LOGGER.debug("The content of the element for key {} has just been released, ignoring it", cacheId);
+                usable = false;
+            }
 
+            // Requests keyed on their body can not be revalidated in the background, without their body
+            boolean revalidable = !bodyKeyed;
 
-            if (elt != null && action != CacheAction.REFRESH) {
+            if (usable && cached.isFresh(now)) {
+                record(CacheEvent.HIT);
+                touch(cacheId);
                 LOGGER.debug("An element has been found for key {}, returning the cached response to the initial client", cacheId);
 
-                final ProxyConnection proxyConnection = new CacheProxyConnection((CacheResponse) elt.value());
+                serve(executionContext, stream, connectionHandler, hit);
+                if (revalidable && !onlyIfCached && expiresEarly(cached, now)) {
+                    LOGGER.debug("Element for key {} is about to expire, refreshing it early in background", cacheId);
+                    revalidate(executionContext, cacheId, (cachePolicyConfiguration.getRevalidationWindowSeconds() > 0
+                            && cached.hasValidators()) ? cached : null);
+                }
+                return;
+            }
 
-                // Ok, there is a value for this request in cache so send it through proxy connection
-                connectionHandler.handle(proxyConnection);
+            if (usable && acceptsStale(requestCacheControl, cached, now)) {
+                record(CacheEvent.HIT);
+                touch(cacheId);
+                LOGGER.debug("A stale element has been found for key {}, returning it as accepted by the client", cacheId);
 
-                // Plug underlying stream to connection stream
-                stream
-                        .bodyHandler(proxyConnection::write)
-                        .endHandler(aVoid -> proxyConnection.end());
+                // Held by the hit until the warned copy holds it too
+                CacheProxyConnection stale = connect(executionContext, cached.withHeader(HttpHeaders.WARNING, STALE_WARNING));
+                hit.cancel();
+                serve(executionContext, stream, connectionHandler, stale);
+                return;
+            }
 
-                // Resume the incoming request to handle content and end
-                executionContext.request().resume();
-            } else {
-                if (action == CacheAction.REFRESH) {
-                    LOGGER.info("A refresh action has been received for key {}, invoke backend with invoker", cacheId, invoker.getClass().getName());
-                } else {
-                    LOGGER.debug("No element for key {}, invoke backend with invoker {}", cacheId, invoker.getClass().getName());
+            if (usable && revalidable && cached.isStaleWhileRevalidate(now)) {
+                record(CacheEvent.HIT);
+                touch(cacheId);
+                LOGGER.debug("A stale element has been found for key {}, returning it while revalidating in background", cacheId);
+
+                serve(executionContext, stream, connectionHandler, hit);
+                if (!onlyIfCached) {
+                    revalidate(executionContext, cacheId, revalidated);
                 }
+                return;
+            }
 
-                // No value, let's do the default invocation and cache result in response
-                invoker.invoke(executionContext, stream, proxyConnection -> {
+            if (hit != null) {
+                // Not served from cache after all
+                hit.cancel();
+            }
 
-                    LOGGER.debug("Put response in cache for key {} and request {}", cacheId, executionContext.request().id());
+            if (onlyIfCached) {
+                record(CacheEvent.MISS);
+                LOGGER.debug("No usable element for key {}, and the client only wants a cached response", cacheId);
+
+                serve(executionContext, stream, connectionHandler, gatewayTimeout());
+            } else if (action == CacheAction.REFRESH) {
+                record(CacheEvent.REFRESH);
+                LOGGER.info("A refresh action has been received for key {}, invoke backend with invoker {}", cacheId, invoker.getClass().getName());
+
+                invokeBackend(executionContext, stream, connectionHandler, cacheId, null, fallback, revalidated);
+            } else if (cachePolicyConfiguration.isCoalesceRequests()) {
+                record(CacheEvent.MISS);
+                InFlightRequest flight = COALESCER.join(cacheId, cachePolicyConfiguration.getCoalesceTimeoutMillis(),
+                        response -> {
+                            if (response != null && serve(executionContext, stream, connectionHandler, response)) {
+                                LOGGER.debug("Backend response for key {} shared with request {}", cacheId, executionContext.request().id());
+                            } else {
+                                LOGGER.debug("No shared response for key {}, invoke backend with invoker {}", cacheId, invoker.getClass().getName());
+                                invokeBackend(executionContext, stream, connectionHandler, cacheId, null, fallback, revalidated);
+                            }
+                        });
+
+                if (flight != null) {
+                    LOGGER.debug("No element for key {}, invoke backend with invoker {} on behalf of concurrent requests", cacheId, invoker.getClass().getName());
+                    invokeBackend(executionContext, stream, connectionHandler, cacheId, flight, fallback, revalidated);
+                } else {
+                    LOGGER.debug("No element for key {}, waiting for the in-flight backend call", cacheId);
+                }
+            } else {
+                record(CacheEvent.MISS);
+                LOGGER.debug("No element for key {}, invoke backend with invoker {}", cacheId, invoker.getClass().getName());
 
-                    ProxyConnection cacheProxyConnection = new ProxyConnection() {
-                        @Override
-                        public ProxyConnection write(Buffer buffer) {
-                            proxyConnection.write(buffer);
-                            return this;
-                        }
+                invokeBackend(executionContext, stream, connectionHandler, cacheId, null, fallback, revalidated);
+            }
+        }
 
-                        @Override
-                        public void end() {
-                            proxyConnection.end();
+        /**
+         * Read the request body through a digest, which becomes part of the cache key, before looking for the element
+         * in cache. The chunks are held to be sent to the backend on a miss, and dropped on a hit. Once the body
+         * exceeds the maximum size, the backend is called right away and the response is not cached.
+         */
+        private void readBody(ExecutionContext executionContext, ReadStream<Buffer> stream,
+                              Handler<ProxyConnection> connectionHandler) {
+            BodyDigest digest = new BodyDigest();
+            BufferedReadStream body = new BufferedReadStream();
+            long maxRequestBodySize = cachePolicyConfiguration.getMaxRequestBodySize();
+
+            stream
+                    .bodyHandler(chunk -> {
+                        body.write(chunk);
+                        if (bodyKeyed) {
+                            digest.update(chunk);
+                            if (digest.length() > maxRequestBodySize) {
+                                LOGGER.debug("Body of request {} exceeds {} bytes, invoke backend without caching",
+                                        executionContext.request().id(), maxRequestBodySize);
+                                bodyKeyed = false;
+                                record(CacheEvent.BYPASS);
+                                invoker.invoke(executionContext, body, connectionHandler);
+                            }
                         }
-
-                        @Override
-                        public ProxyConnection responseHandler(Handler<ProxyResponse> responseHandler) {
-                            return proxyConnection.responseHandler(new CacheResponseHandler(cacheId, responseHandler));
+                    })
+                    .endHandler(aVoid -> {
+                        body.end();
+                        if (bodyKeyed) {
+                            bodyDigest = digest.digest();
+                            invoke(executionContext, body, connectionHandler);
                         }
-                    };
+                    });
+
+            executionContext.request().resume();
+        }
 
-                    connectionHandler.handle(cacheProxyConnection);
+        private void revalidate(ExecutionContext executionContext, String cacheId, CacheResponse revalidated) {
+            // Only one background revalidation at a time for a given key
+            InFlightRequest flight = COALESCER.lead(cacheId, cachePolicyConfiguration.getCoalesceTimeoutMillis());
+            if (flight == null) {
+                LOGGER.debug("Element for key {} is already being revalidated", cacheId);
+                return;
+            }
+
+            // The client request is being served from cache, and may be over before the backend answers: the element is
+            // fetched again through a request and a policy of their own
+            CachePolicy policy = new CachePolicy(cachePolicyConfiguration);
+            policy.executionContext = WarmupExecutionContext.revalidation(executionContext);
+            policy.cache = cache;
+            policy.primaryKey = primaryKey;
+            policy.snapshotter = snapshotter;
+
+            CacheResponse conditional = withValidators(policy.executionContext.request(), revalidated);
+
+            invoker.invoke(policy.executionContext, new EmptyReadStream(), proxyConnection -> {
+                proxyConnection.exceptionHandler(throwable -> {
+                    LOGGER.debug("Unable to revalidate element for key {}", cacheId, throwable);
+                    flight.fail();
                 });
+
+                proxyConnection.responseHandler(policy.new CacheResponseHandler(cacheId, proxyResponse -> {
+                    // Nobody is waiting for this response, just consume it to fill the cache
+                    proxyResponse
+                            .bodyHandler(chunk -> {})
+                            .endHandler(aVoid -> {});
+                    proxyResponse.resume();
+                }, flight, null, conditional, null));
+            });
+        }
+
+        private void invokeBackend(ExecutionContext executionContext, ReadStream<Buffer> stream,
+                                   Handler<ProxyConnection> connectionHandler, String cacheId,
+                                   InFlightRequest flight, CacheResponse fallback, CacheResponse revalidated) {
+            CacheResponse conditional = withValidators(executionContext.request(), revalidated);
+
+            // No value, let's do the default invocation and cache result in response
+            invoker.invoke(executionContext, stream, proxyConnection -> {
+
+                LOGGER.debug("Put response in cache for key {} and request {}", cacheId, executionContext.request().id());
+
+                connectionHandler.handle(new CacheBackendConnection(proxyConnection, invoker, cacheId, flight, fallback, conditional));
+            });
+        }
+
+        /**
+         * Make the backend request conditional using the validators of the cached response. The request is left
+         * untouched if the client already sent its own conditions.
+         *
+         * @return the cached response the request has been made conditional for, <code>null</code> otherwise.
+         */
+        private CacheResponse withValidators(Request request, CacheResponse revalidated) {
+            if (revalidated == null || request.headers().containsKey(HttpHeaders.IF_NONE_MATCH)
+                    || request.headers().containsKey(HttpHeaders.IF_MODIFIED_SINCE)) {
+                return null;
+            }
+
+            if (revalidated.getEtag() != null) {
+                request.headers().set(HttpHeaders.IF_NONE_MATCH, revalidated.getEtag());
+            }
+            if (revalidated.getLastModified() != null) {
+                request.headers().set(HttpHeaders.IF_MODIFIED_SINCE, revalidated.getLastModified());
+            }
+
+            return revalidated;
+        }
+    }
+
+    class CacheBackendConnection implements ProxyConnection {
+        private final ProxyConnection proxyConnection;
+        private final Invoker invoker;
+        private final String cacheId;
+        private final InFlightRequest flight;
+        private final CacheResponse fallback;
+        private final CacheResponse revalidated;
+
+        private CacheResponseHandler cacheResponseHandler;
+        private Handler<Throwable> exceptionHandler;
+
+        CacheBackendConnection(final ProxyConnection proxyConnection, final Invoker invoker, final String cacheId,
+                               final InFlightRequest flight, final CacheResponse fallback, final CacheResponse revalidated) {
+            this.proxyConnection = proxyConnection;
+            this.invoker = invoker;
+            this.cacheId = cacheId;
+            this.flight = flight;
+            this.fallback = fallback;
+            this.revalidated = revalidated;
+
+            proxyConnection.exceptionHandler(this::handleException);
+        }
+
+        @Override
+        public ProxyConnection write(Buffer buffer) {
+            proxyConnection.write(buffer);
+            return this;
+        }
+
+        @Override
+        public void end() {
+            proxyConnection.end();
+        }
+
+        @Override
+        public ProxyConnection cancel() {
+            if (flight != null) {
+                flight.fail();
+            }
+            proxyConnection.cancel();
+            return this;
+        }
+
+        @Override
+        public ProxyConnection exceptionHandler(Handler<Throwable> exceptionHandler) {
+            this.exceptionHandler = exceptionHandler;
+            return this;
+        }
+
+        @Override
+        public ProxyConnection responseHandler(Handler<ProxyResponse> responseHandler) {
+            cacheResponseHandler = new CacheResponseHandler(cacheId, responseHandler, flight, fallback, revalidated,
+                    this::refetch);
+            proxyConnection.responseHandler(cacheResponseHandler);
+            return this;
+        }
+
+        /**
+         * Fetch the response again without validators, the content of the revalidated element having been released
+         * in the meantime.
+         */
+        private void refetch(Handler<ProxyResponse> responseHandler) {
+            executionContext.request().headers().remove(HttpHeaders.IF_NONE_MATCH);
+            executionContext.request().headers().remove(HttpHeaders.IF_MODIFIED_SINCE);
+
+            invoker.invoke(executionContext, new EmptyReadStream(), proxyConnection -> {
+                proxyConnection.exceptionHandler(this::handleException);
+                cacheResponseHandler = new CacheResponseHandler(cacheId, responseHandler, flight, fallback, null, null);
+                proxyConnection.responseHandler(cacheResponseHandler);
+            });
+        }
+
+        private void handleException(Throwable throwable) {
+            if (cacheResponseHandler != null && cacheResponseHandler.canServeStale() && cacheResponseHandler.serveStale()) {
+                LOGGER.debug("Unable to reach the backend for key {}, returned the stale cached response", cacheId, throwable);
+            } else {
+                if (flight != null) {
+                    flight.fail();
+                }
+                if (exceptionHandler != null) {
+                    exceptionHandler.handle(throwable);
+                }
             }
         }
     }
@@ -176,34 +776,292 @@ public class CachePolicy {
     class CacheResponseHandler implements Handler<ProxyResponse> {
         private final String cacheId;
         private final Handler<ProxyResponse> responseHandler;
+        private final InFlightRequest flight;
+        private final CacheResponse fallback;
+        private final CacheResponse revalidated;
+        private final Handler<Handler<ProxyResponse>> refetch;
         private final CacheResponse response = new CacheResponse();
+        private final long startedAt = System.nanoTime();
+
+        private boolean handled;
 
-        CacheResponseHandler(final String cacheId, final Handler<ProxyResponse> responseHandler) {
+        CacheResponseHandler(final String cacheId, final Handler<ProxyResponse> responseHandler, final InFlightRequest flight,
+                             final CacheResponse fallback, final CacheResponse revalidated,
+                             final Handler<Handler<ProxyResponse>> refetch) {
             this.cacheId =  cacheId;
             this.responseHandler = responseHandler;
+            this.flight = flight;
+            this.fallback = fallback;
+            this.revalidated = revalidated;
+            this.refetch = refetch;
         }
 
         @Override
         public void handle(ProxyResponse proxyResponse) {
-            if (proxyResponse.status() >= HttpStatusCode.OK_200 && proxyResponse.status() < HttpStatusCode.MULTIPLE_CHOICES_300) {
+            handled = true;
+
+            if (proxyResponse.status() == HttpStatusCode.NOT_MODIFIED_304 && revalidated != null) {
+                LOGGER.debug("Element for key {} has not been modified, refresh it without fetching the content", cacheId);
+
+                proxyResponse
+                        .bodyHandler(chunk -> {})
+                        .endHandler(aVoid -> {});
+                proxyResponse.resume();
+
+                CacheResponse refreshed = revalidated.refresh(proxyResponse.headers());
+                CacheProxyConnection connection = new CacheProxyConnection(refreshed);
+                if (connection.isContentAvailable()) {
+                    store(refreshed);
+                    connection.responseHandler(responseHandler).end();
+                } else if (refetch != null) {
+                    // The content has been released since the lookup, the validators are no more of any use
+                    LOGGER.debug("Content for key {} released during revalidation, fetching it again", cacheId);
+                    refetch.handle(responseHandler);
+                } else if (flight != null) {
+                    flight.fail();
+                }
+            } else if (proxyResponse.status() >= HttpStatusCode.INTERNAL_SERVER_ERROR_500 && fallback != null
+                    && serveStale()) {
+                LOGGER.debug("Backend failed with status code {} for key {}, returned the stale cached response",
+                        proxyResponse.status(), cacheId);
+
+                // Drain the backend response to release the connection
+                proxyResponse
+                        .bodyHandler(chunk -> {})
+                        .endHandler(aVoid -> {});
+                proxyResponse.resume();
+            } else if (isCacheable(proxyResponse)) {
                 responseHandler.handle(new CacheProxyResponse(proxyResponse, cacheId));
             } else {
-                LOGGER.debug("Response for key {} not put in cache because of the status code {}",
-                        cacheId, proxyResponse.status());
+                LOGGER.debug("Response for key {} with status code {} not put in cache", cacheId, proxyResponse.status());
+                record(CacheEvent.UNCACHEABLE);
+                if (flight != null) {
+                    flight.fail();
+                }
                 responseHandler.handle(proxyResponse);
             }
         }
 
+        /**
+         * Whether the response can be put in cache, according to its status code and to its
+         * <code>Cache-Control</code> header.
+         */
+        private boolean isCacheable(ProxyResponse proxyResponse) {
+            if (!cachePolicyConfiguration.cacheabilityRules().isCacheable(proxyResponse.status())) {
+                return false;
+            }
+
+            if (cachePolicyConfiguration.isRespectNoStore()) {
+                CacheControl cacheControl = CacheControlUtil.parseCacheControl(
+                        proxyResponse.headers().getFirst(HttpHeaders.CACHE_CONTROL));
+                if (cacheControl != null && (cacheControl.isNoStore() || cacheControl.isPrivate())) {
+                    LOGGER.debug("Response for key {} must not be stored by a shared cache", cacheId);
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        void store(CacheResponse cacheResponse) {
+            HttpHeaders headers = cacheResponse.getHeaders();
+
+            List<String> vary = cachePolicyConfiguration.isUseVaryHeader() ? vary(headers) : null;
+            if (cachePolicyConfiguration.isUseVaryHeader() && vary == null) {
+                LOGGER.debug("Response for key {} not put in cache because it varies on '*'", cacheId);
+                record(CacheEvent.UNCACHEABLE);
+                if (flight != null) {
+                    flight.fail();
+                }
+                return;
+            }
+            String key = (vary == null || vary.isEmpty()) ? primaryKey : variantKey(executionContext.request(), vary);
+
+            // The time to live of the status code rule, if any, caps the one of the response instead of the policy one
+            long maxTimeToLive = cachePolicyConfiguration.cacheabilityRules().timeToLive(cacheResponse.getStatus());
+            if (maxTimeToLive < 0) {
+                maxTimeToLive = cachePolicyConfiguration.getTimeToLiveSeconds();
+            }
+
+            long timeToLive = resolveTimeToLive(headers, maxTimeToLive);
+            if (timeToLive == -1) {
+                timeToLive = maxTimeToLive;
+            }
+            timeToLive = jitter(timeToLive);
+
+            long staleWhileRevalidate = resolveStaleWhileRevalidate(headers);
+            long staleIfError = resolveStaleIfError(headers);
+            long fillLatency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startedAt);
+            long storedAt = System.currentTimeMillis();
+            cacheResponse.setStoredAt(storedAt);
+            cacheResponse.setFillDuration(TimeUnit.MICROSECONDS.toMillis(fillLatency));
+            cacheResponse.setExpiresAt((timeToLive > 0) ? storedAt + timeToLive * 1000 : 0);
+            cacheResponse.setStaleWhileRevalidate(staleWhileRevalidate);
+            cacheResponse.setStaleIfError(staleIfError);
+            cacheResponse.setEtag(headers.getFirst(HttpHeaders.ETAG));
+            cacheResponse.setLastModified(headers.getFirst(HttpHeaders.LAST_MODIFIED));
+
+            // Keep the element after its expiry as long as it may be served stale or revalidated
+            long staleTimeToLive = Math.max(staleWhileRevalidate, staleIfError);
+            if (cacheResponse.hasValidators()) {
+                staleTimeToLive = Math.max(staleTimeToLive, cachePolicyConfiguration.getRevalidationWindowSeconds());
+            }
+
+            String api = (String) executionContext.getAttribute(ExecutionContext.ATTR_API);
+            METRICS.recordFillLatency(api, cachePolicyConfiguration.getCacheName(), fillLatency);
+            METRICS.recordBodySize(api, cachePolicyConfiguration.getCacheName(), cacheResponse.getContentLength());
+            executionContext.setAttribute(ATTR_CACHE_FILL_LATENCY, TimeUnit.MICROSECONDS.toMillis(fillLatency));
+            executionContext.setAttribute(ATTR_CACHE_BODY_SIZE, (long) cacheResponse.getContentLength());
+
+            CacheElement element = new CacheElement(key, cacheResponse);
+            element.setTimeToLive((int) timeToLive);
+            element.setStaleTimeToLive((int) staleTimeToLive);
+
+            if (!isCompressible(cacheResponse)) {
+                put(element, vary);
+                return;
+            }
+
+            // Compressing may take a while for large contents
+            Blocking.execute(() -> compress(cacheResponse), aVoid -> put(element, vary), throwable -> {
+                LOGGER.warn("Unable to compress the response for key {}, putting it in cache as is", key, throwable);
+                put(element, vary);
+            });
+        }
+
+        /**
+         * Put the element in cache, with its content stored according to the configuration, and index it.
+         */
+        private void put(CacheElement element, List<String> vary) {
+            String key = (String) element.key();
+            CacheResponse cacheResponse = (CacheResponse) element.value();
+
+            if (!cachePolicyConfiguration.isDiskStorage()
+                    || cacheResponse.getContentLength() < cachePolicyConfiguration.getDiskThreshold()) {
+                put(element, vary, false);
+                return;
+            }
+
+            DiskStore diskStore = CacheAttachments.get(cache, DiskStore.class, () -> new DiskStore(
+                    Paths.get(cachePolicyConfiguration.getDiskDirectory()),
+                    cachePolicyConfiguration.getDiskSegmentSize(), cachePolicyConfiguration.getDiskMaxSize()));
+
+            // Writing to disk may also sweep and compact the segments
+            Blocking.execute(() -> diskStore.store(cache, key, cacheResponse, element.getHardExpiry()),
+                    onDisk -> put(element, vary, onDisk), throwable -> {
+                        LOGGER.warn("Unable to write the content for key {} to disk, keeping it in memory", key, throwable);
+                        put(element, vary, false);
+                    });
+        }
+
+        private void put(CacheElement element, List<String> vary, boolean onDisk) {
+            String key = (String) element.key();
+            CacheResponse cacheResponse = (CacheResponse) element.value();
+            HttpHeaders headers = cacheResponse.getHeaders();
+
+            if (!onDisk && cachePolicyConfiguration.isOffHeapStorage()) {
+                OffHeapStore offHeapStore = CacheAttachments.get(cache, OffHeapStore.class,
+                        () -> new OffHeapStore(cachePolicyConfiguration.getOffHeapMaxSize()));
+                offHeapStore.store(cache, key, cacheResponse, element.getHardExpiry());
+            }
+
+            cache.put(element);
+            if (vary != null && !vary.isEmpty()) {
+                // Put after the variant, so that the index never leads to a variant not put in cache yet
+                cache.put(new VaryIndex.Element(primaryKey, new VaryIndex(vary), element.timeToLive()));
+            }
+            index(key, headers, element.getHardExpiry());
+            touch(key);
+
+            if (flight != null) {
+                if (vary != null && !vary.isEmpty()) {
+                    // The coalesced requests may select another variant
+                    flight.fail();
+                } else {
+                    flight.complete(cacheResponse);
+                }
+            }
+        }
+
+        /**
+         * Whether the content to store is to be compressed, if enabled and if the content is eligible.
+         */
+        private boolean isCompressible(CacheResponse cacheResponse) {
+            Buffer content = cacheResponse.getContent();
+            HttpHeaders headers = cacheResponse.getHeaders();
+
+            return cachePolicyConfiguration.isCompressContent() && cacheResponse.getContentEncoding() == null
+                    && content != null && content.length() >= cachePolicyConfiguration.getCompressionThreshold()
+                    && headers.getFirst(HttpHeaders.CONTENT_ENCODING) == null
+                    && CompressionUtil.matches(headers.getFirst(HttpHeaders.CONTENT_TYPE), cachePolicyConfiguration.getCompressibleContentTypes());
+        }
+
+        private Void compress(CacheResponse cacheResponse) {
+            Buffer content = cacheResponse.getContent();
+            CompressionAlgorithm algorithm = cachePolicyConfiguration.getCompressionAlgorithm();
+            byte[] compressed = CompressionUtil.compress(content.getBytes(), algorithm);
+
+            // Not worth it
+            if (compressed.length < content.length()) {
+                cacheResponse.setContent(Buffer.buffer(compressed));
+                cacheResponse.setContentEncoding(algorithm.getContentEncoding());
+            }
+            return null;
+        }
+
+        boolean canServeStale() {
+            return fallback != null && !handled;
+        }
+
+        /**
+         * Serve the stale element instead of the backend failure, unless its content has been released since the
+         * lookup.
+         */
+        boolean serveStale() {
+            CacheResponse stale = fallback.withHeader(HttpHeaders.WARNING, STALE_IF_ERROR_WARNING);
+            CacheProxyConnection connection = new CacheProxyConnection(stale);
+            if (!connection.isContentAvailable()) {
+                LOGGER.debug("Stale content for key {} has been released, unable to serve it", cacheId);
+                return false;
+            }
+
+            handled = true;
+            if (flight != null) {
+                flight.complete(stale);
+            }
+
+            connection.responseHandler(responseHandler).end();
+            return true;
+        }
+
         class CacheProxyResponse implements ProxyResponse {
 
             private final ProxyResponse proxyResponse;
             private final String cacheId;
+            private final long maxCacheableBodySize = cachePolicyConfiguration.getMaxCacheableBodySize();
 
-            final Buffer content = Buffer.buffer();
+            // Null once the response is known to be too large to be put in cache
+            Buffer content;
 
             CacheProxyResponse(final ProxyResponse proxyResponse, final String cacheId) {
                 this.proxyResponse = proxyResponse;
                 this.cacheId = cacheId;
+
+                // Responses to HEAD requests and 304 responses declare the length of a content they do not carry
+                boolean bodiless = executionContext.request().method() == HttpMethod.HEAD
+                        || proxyResponse.status() == HttpStatusCode.NOT_MODIFIED_304;
+                long contentLength = bodiless ? -1 : contentLength(proxyResponse.headers());
+                if (maxCacheableBodySize > 0 && contentLength > maxCacheableBodySize) {
+                    LOGGER.debug("Response for key {} not put in cache because its declared length {} exceeds {} bytes",
+                            cacheId, contentLength, maxCacheableBodySize);
+                    record(CacheEvent.OVERSIZED);
+                } else if (contentLength > 0) {
+                    // Size the buffer upfront to avoid growing it chunk after chunk, without trusting the declared
+                    // length for more than the ceiling since no byte has been received yet
+                    content = Buffer.buffer((int) Math.min(contentLength, MAX_PRESIZED_CONTENT));
+                } else {
+                    content = Buffer.buffer();
+                }
             }
 
             @Override
@@ -212,7 +1070,17 @@ public class CachePolicy {
                     @Override
                     public void handle(Buffer chunk) {
                         bodyHandler.handle(chunk);
-                        content.appendBuffer(chunk);
+
+                        if (content != null) {
+                            if (maxCacheableBodySize > 0 && content.length() + chunk.length() > maxCacheableBodySize) {
+                                LOGGER.debug("Response for key {} not put in cache because its content exceeds {} bytes",
+                                        cacheId, maxCacheableBodySize);
+                                content = null;
+                                record(CacheEvent.OVERSIZED);
+                            } else {
+                                content.appendBuffer(chunk);
+                            }
+                        }
                     }
                 });
 
@@ -226,22 +1094,19 @@ public class CachePolicy {
                     public void handle(Void result) {
                         endHandler.handle(result);
 
+                        if (content == null) {
+                            if (flight != null) {
+                                flight.fail();
+                            }
+                            return;
+                        }
+
                         response.setStatus(proxyResponse.status());
                         response.setHeaders(proxyResponse.headers());
 
                         response.setContent(content);
 
-                        long timeToLive = -1;
-                        if (cachePolicyConfiguration.isUseResponseCacheHeaders()) {
-                            timeToLive = resolveTimeToLive(proxyResponse);
-                        }
-                        if (timeToLive == -1 || cachePolicyConfiguration.getTimeToLiveSeconds() < timeToLive) {
-                            timeToLive = cachePolicyConfiguration.getTimeToLiveSeconds();
-                        }
-
-                        CacheElement element = new CacheElement(cacheId, response);
-                        element.setTimeToLive((int) timeToLive);
-                        cache.put(element);
+                        store(response);
                     }
                 });
 
@@ -270,61 +1135,264 @@ public class CachePolicy {
         }
     }
 
+    /**
+     * Whether the request is to be cached according to its body, its method and content type being configured as
+     * such (read-only POST APIs, ...).
+     */
+    private boolean isBodyKeyed(Request request) {
+        List<String> methods = cachePolicyConfiguration.getRequestBodyMethods();
+        if (methods == null || methods.isEmpty()) {
+            return false;
+        }
+
+        String method = method(request);
+        if (methods.stream().noneMatch(method::equalsIgnoreCase)) {
+            return false;
+        }
+
+        if (!CompressionUtil.matches(request.headers().getFirst(HttpHeaders.CONTENT_TYPE),
+                cachePolicyConfiguration.getRequestBodyContentTypes())) {
+            LOGGER.debug("Content type of request {} is not configured to be cached", request.id());
+            return false;
+        }
+
+        long contentLength = contentLength(request.headers());
+        if (contentLength > cachePolicyConfiguration.getMaxRequestBodySize()) {
+            LOGGER.debug("Body of request {} exceeds {} bytes, disable caching for it",
+                    request.id(), cachePolicyConfiguration.getMaxRequestBodySize());
+            return false;
+        }
+
+        return true;
+    }
+
+    private static String method(Request request) {
+        return (request.rawMethod() != null) ? request.rawMethod() : request.method().name();
+    }
+
+    /**
+     * Whether the fresh cached response is to be refreshed before its expiry, when early refresh is enabled.
+     */
+    private boolean expiresEarly(CacheResponse cached, long now) {
+        return cachePolicyConfiguration.isEarlyRefresh() && cached.isExpiringEarly(now,
+                cachePolicyConfiguration.getEarlyRefreshBeta(), 1 - ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * Shorten the time to live (in seconds) by a random part of the configured jitter, so that elements put in cache
+     * at the same time do not expire at the same time. The time to live is never extended, not to exceed the one of
+     * the configuration or of the response.
+     */
+    long jitter(long timeToLive) {
+        int jitterPercent = Math.min(cachePolicyConfiguration.getTimeToLiveJitterPercent(), 100);
+        if (jitterPercent <= 0 || timeToLive <= 1) {
+            return timeToLive;
+        }
+
+        long maxJitter = timeToLive * jitterPercent / 100;
+        return Math.max(timeToLive - ThreadLocalRandom.current().nextLong(maxJitter + 1), 1);
+    }
+
+    /**
+     * Whether the cached response meets the <code>max-age</code> and <code>min-fresh</code> directives of the request.
+     */
+    private static boolean satisfies(CacheControl requestCacheControl, CacheResponse cached, long now) {
+        if (requestCacheControl == null) {
+            return true;
+        }
+
+        if (requestCacheControl.getMaxAge() != -1 && cached.getAge(now) > requestCacheControl.getMaxAge() * 1000) {
+            return false;
+        }
+
+        return requestCacheControl.getMinFresh() == -1 || cached.getExpiresAt() == 0
+                || cached.getExpiresAt() - now >= requestCacheControl.getMinFresh() * 1000;
+    }
+
+    /**
+     * Whether the cached response, once stale, is still accepted by the <code>max-stale</code> directive of the
+     * request.
+     */
+    private static boolean acceptsStale(CacheControl requestCacheControl, CacheResponse cached, long now) {
+        return requestCacheControl != null && requestCacheControl.getMaxStale() != -1 && !cached.isFresh(now)
+                && now - cached.getExpiresAt() <= requestCacheControl.getMaxStale() * 1000;
+    }
+
+    /**
+     * Response returned to the clients only wanting a cached response, when there is none (RFC 7234, section 5.2.1.7).
+     */
+    private static CacheResponse gatewayTimeout() {
+        CacheResponse response = new CacheResponse();
+        response.setStatus(HttpStatusCode.GATEWAY_TIMEOUT_504);
+        response.setHeaders(new HttpHeaders());
+        response.setContent(Buffer.buffer());
+        return response;
+    }
+
+    /**
+     * The names of the request headers selecting the variant of a response.
+     *
+     * @return the names, empty if the response does not vary, <code>null</code> if it varies on <code>*</code>.
+     */
+    private static List<String> vary(HttpHeaders headers) {
+        List<String> values = headers.get(HttpHeaders.VARY);
+        if (values == null || values.isEmpty()) {
+            return VaryUtil.parseVary(null);
+        }
+
+        return VaryUtil.parseVary((values.size() == 1) ? values.get(0) : String.join(",", values));
+    }
+
+    /**
+     * The key of the variant selected by the (normalized) values of the given request headers.
+     */
+    private String variantKey(Request request, List<String> headerNames) {
+        CacheKeyBuilder builder = CacheKeyBuilder.get().append(primaryKey);
+        for (String headerName : headerNames) {
+            builder.append(headerName).append(VaryUtil.normalize(headerName, request.headers().get(headerName)));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Count an access to the element put in cache under the given key, to rank the elements of the snapshots.
+     */
+    private void touch(String key) {
+        if (snapshotter != null) {
+            snapshotter.hotKeys().touch(key, key.equals(primaryKey) ? null : primaryKey);
+        }
+    }
+
+    /**
+     * Count an event for the API and the cache resource of the request, and expose it as the cache status of the
+     * request.
+     */
+    private void record(CacheEvent event) {
+        METRICS.increment((String) executionContext.getAttribute(ExecutionContext.ATTR_API),
+                cachePolicyConfiguration.getCacheName(), event);
+        executionContext.setAttribute(ATTR_CACHE_STATUS, event.name());
+    }
+
+    private static long contentLength(HttpHeaders headers) {
+        String contentLength = headers.getFirst(HttpHeaders.CONTENT_LENGTH);
+        if (contentLength == null) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException nfe) {
+            return -1;
+        }
+    }
+
     /**
      * Generate a unique identifier for the cache key.
      *
      * @param executionContext
      * @return
      */
-    private String hash(ExecutionContext executionContext) {
-        StringBuilder sb = new StringBuilder();
-        switch (cachePolicyConfiguration.getScope()) {
-            case APPLICATION:
-                sb.append(executionContext.getAttribute(ExecutionContext.ATTR_API)).append(KEY_SEPARATOR);
-                sb.append(executionContext.getAttribute(ExecutionContext.ATTR_APPLICATION)).append(KEY_SEPARATOR);
-                break;
-            case API:
-                sb.append(executionContext.getAttribute(ExecutionContext.ATTR_API)).append(KEY_SEPARATOR);
-                break;
-        }
-
-        sb.append(executionContext.request().path().hashCode()).append(KEY_SEPARATOR);
-
-        String key = cachePolicyConfiguration.getKey();
-        if (key != null && ! key.isEmpty()) {
-            key = executionContext.getTemplateEngine().convert(key);
-            sb.append(key);
-        } else {
-            // Remove latest separator
-            sb.deleteCharAt(sb.length() - 1);
+    String hash(ExecutionContext executionContext) {
+        CacheScope scope = cachePolicyConfiguration.getScope();
+        CacheKeyBuilder builder = CacheKeyBuilder.get()
+                .append(scope.name())
+                .append(executionContext.getAttribute(ExecutionContext.ATTR_API));
+
+        if (scope == CacheScope.APPLICATION) {
+            builder.append(executionContext.getAttribute(ExecutionContext.ATTR_APPLICATION));
+        }
+
+        builder.append(executionContext.request().path());
+
+        if (bodyDigest != null) {
+            builder.append(method(executionContext.request())).append(bodyDigest);
+        }
+
+        KeyTemplate keyTemplate = cachePolicyConfiguration.keyTemplate();
+        if (keyTemplate != null) {
+            builder.append(keyTemplate.evaluate(executionContext));
         }
 
-        return sb.toString();
+        return builder.build();
     }
 
     public long resolveTimeToLive(ProxyResponse response) {
+        return resolveTimeToLive(response.headers());
+    }
+
+    long resolveTimeToLive(HttpHeaders headers) {
+        return resolveTimeToLive(headers, cachePolicyConfiguration.getTimeToLiveSeconds());
+    }
+
+    /**
+     * Time to live (in seconds) from the response headers, if they are to be used, capped by the given maximum.
+     *
+     * @return -1 if the headers do not tell.
+     */
+    long resolveTimeToLive(HttpHeaders headers, long maxTimeToLive) {
         long timeToLive = -1;
         if (cachePolicyConfiguration.isUseResponseCacheHeaders()) {
-            timeToLive = timeToLiveFromResponse(response);
+            timeToLive = timeToLiveFromHeaders(headers);
         }
 
-        if (timeToLive != -1 && cachePolicyConfiguration.getTimeToLiveSeconds() < timeToLive) {
-            timeToLive = cachePolicyConfiguration.getTimeToLiveSeconds();
+        if (timeToLive != -1 && maxTimeToLive < timeToLive) {
+            timeToLive = maxTimeToLive;
         }
 
         return timeToLive;
     }
 
+    /**
+     * Time (in seconds) during which a stale response can be served while being revalidated: the
+     * <code>stale-while-revalidate</code> directive from the response, if any, is capped by the configuration.
+     */
+    long resolveStaleWhileRevalidate(HttpHeaders headers) {
+        long staleWhileRevalidate = cachePolicyConfiguration.getStaleWhileRevalidateSeconds();
+
+        if (staleWhileRevalidate > 0 && cachePolicyConfiguration.isUseResponseCacheHeaders()) {
+            CacheControl cacheControl = CacheControlUtil.parseCacheControl(headers.getFirst(HttpHeaders.CACHE_CONTROL));
+            if (cacheControl != null && cacheControl.getStaleWhileRevalidate() != -1
+                    && cacheControl.getStaleWhileRevalidate() < staleWhileRevalidate) {
+                staleWhileRevalidate = cacheControl.getStaleWhileRevalidate();
+            }
+        }
+
+        return Math.max(staleWhileRevalidate, 0);
+    }
+
+    /**
+     * Time (in seconds) during which a stale response can be served when the backend is failing: the
+     * <code>stale-if-error</code> directive from the response, if any, is capped by the configuration.
+     */
+    long resolveStaleIfError(HttpHeaders headers) {
+        long staleIfError = cachePolicyConfiguration.getStaleIfErrorSeconds();
+
+        if (staleIfError > 0 && cachePolicyConfiguration.isUseResponseCacheHeaders()) {
+            CacheControl cacheControl = CacheControlUtil.parseCacheControl(headers.getFirst(HttpHeaders.CACHE_CONTROL));
+            if (cacheControl != null && cacheControl.getStaleIfError() != -1
+                    && cacheControl.getStaleIfError() < staleIfError) {
+                staleIfError = cacheControl.getStaleIfError();
+            }
+        }
+
+        return Math.max(staleIfError, 0);
+    }
+
     public static long timeToLiveFromResponse(ProxyResponse response) {
+        return timeToLiveFromHeaders(response.headers());
+    }
+
+    static long timeToLiveFromHeaders(HttpHeaders headers) {
         long timeToLive = -1;
-            CacheControl cacheControl = CacheControlUtil.parseCacheControl(response.headers().getFirst(HttpHeaders.CACHE_CONTROL));
+            CacheControl cacheControl = CacheControlUtil.parseCacheControl(headers.getFirst(HttpHeaders.CACHE_CONTROL));
 
             if (cacheControl != null && cacheControl.getSMaxAge() != -1) {
                 timeToLive = cacheControl.getSMaxAge();
             } else if (cacheControl != null && cacheControl.getMaxAge() != -1) {
                 timeToLive = cacheControl.getMaxAge();
             } else {
-                Instant expiresAt = ExpiresUtil.parseExpires(response.headers().getFirst(HttpHeaders.EXPIRES));
+                Instant expiresAt = ExpiresUtil.parseExpires(headers.getFirst(HttpHeaders.EXPIRES));
                 if (expiresAt != null) {
                     long expiresInSeconds = (expiresAt.toEpochMilli() - System.currentTimeMillis()) / 1000;
                     timeToLive = (expiresInSeconds < 0) ? -1 : expiresInSeconds;
@@ -358,6 +1426,7 @@ public class CachePolicy {
 
     private enum CacheAction {
         REFRESH,
-        BY_PASS
+        BY_PASS,
+        PURGE
     }
 }
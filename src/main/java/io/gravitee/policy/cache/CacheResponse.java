@@ -17,12 +17,24 @@ package io.gravitee.policy.cache;
 
 import io.gravitee.common.http.HttpHeaders;
 import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.cache.codec.CacheResponseCodec;
+import io.gravitee.policy.cache.disk.DiskContent;
+import io.gravitee.policy.cache.offheap.OffHeapContent;
+import io.gravitee.policy.cache.util.BufferUtil;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
 
 /**
  * @author David BRASSELY (david.brassely at graviteesource.com)
  * @author GraviteeSource Team
  */
-public class CacheResponse {
+public class CacheResponse implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
 
     private int status;
 
@@ -30,6 +42,33 @@ public class CacheResponse {
 
     private Buffer content;
 
+    // Content moved out of the heap, in which case content is null
+    private transient OffHeapContent offHeapContent;
+
+    // Content written on disk, in which case content is null
+    private DiskContent diskContent;
+
+    // Soft expiry (epoch millis), the response is considered as fresh until this instant
+    private long expiresAt;
+
+    private long staleWhileRevalidate;
+
+    private long staleIfError;
+
+    // Instant (epoch millis) the response has been put in cache, 0 if unknown
+    private long storedAt;
+
+    // Time (in millis) taken to get the response from the backend and put it in cache, 0 if unknown
+    private long fillDuration;
+
+    // Validators used to conditionally revalidate the response
+    private String etag;
+
+    private String lastModified;
+
+    // Encoding applied by the policy to the stored content, null if the content is stored as received
+    private String contentEncoding;
+
     public Buffer getContent() {
         return content;
     }
@@ -38,6 +77,58 @@ public class CacheResponse {
         this.content = content;
     }
 
+    /**
+     * Read-only view over the content kept on heap, sharing the memory of its buffer.
+     *
+     * @return <code>null</code> if there is no content on heap.
+     */
+    public ByteBuffer contentView() {
+        Buffer content = this.content;
+        return (content != null) ? BufferUtil.view(content) : null;
+    }
+
+    public OffHeapContent getOffHeapContent() {
+        return offHeapContent;
+    }
+
+    public void setOffHeapContent(OffHeapContent offHeapContent) {
+        this.offHeapContent = offHeapContent;
+    }
+
+    /**
+     * Length of the stored content, wherever it is stored.
+     */
+    public int getContentLength() {
+        if (content != null) {
+            return content.length();
+        }
+
+        if (offHeapContent != null) {
+            return offHeapContent.length();
+        }
+
+        return (diskContent != null) ? diskContent.length() : 0;
+    }
+
+    public DiskContent getDiskContent() {
+        return diskContent;
+    }
+
+    public void setDiskContent(DiskContent diskContent) {
+        this.diskContent = diskContent;
+    }
+
+    /**
+     * Whether the content can still be read: off-heap and disk contents may have been given back in the meantime.
+     */
+    public boolean isContentAvailable() {
+        if (offHeapContent != null) {
+            return !offHeapContent.isReleased();
+        }
+
+        return diskContent == null || diskContent.isAvailable();
+    }
+
     public HttpHeaders getHeaders() {
         return headers;
     }
@@ -53,4 +144,166 @@ public class CacheResponse {
     public void setStatus(int status) {
         this.status = status;
     }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public long getStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    public void setStaleWhileRevalidate(long staleWhileRevalidate) {
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    public long getStaleIfError() {
+        return staleIfError;
+    }
+
+    public void setStaleIfError(long staleIfError) {
+        this.staleIfError = staleIfError;
+    }
+
+    public long getStoredAt() {
+        return storedAt;
+    }
+
+    public void setStoredAt(long storedAt) {
+        this.storedAt = storedAt;
+    }
+
+    public long getFillDuration() {
+        return fillDuration;
+    }
+
+    public void setFillDuration(long fillDuration) {
+        this.fillDuration = fillDuration;
+    }
+
+    /**
+     * Time (in millis) since the response has been put in cache, 0 if unknown.
+     */
+    public long getAge(long now) {
+        return (storedAt == 0) ? 0 : Math.max(now - storedAt, 0);
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public void setContentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    public boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * A response without soft expiry is always fresh.
+     */
+    public boolean isFresh(long now) {
+        return expiresAt == 0 || now < expiresAt;
+    }
+
+    /**
+     * Probabilistic early expiration (XFetch): whether a fresh response should be refreshed before its expiry. The
+     * closer to its expiry, and the longer to fill, the more likely the response is to be refreshed.
+     *
+     * @param beta the eagerness of the refresh, 1 being the optimal value when fill durations are stable.
+     * @param random a random number in <code>(0, 1]</code>.
+     */
+    public boolean isExpiringEarly(long now, double beta, double random) {
+        return expiresAt != 0 && now - fillDuration * beta * Math.log(random) >= expiresAt;
+    }
+
+    /**
+     * Whether the response can still be served while being revalidated in the background.
+     */
+    public boolean isStaleWhileRevalidate(long now) {
+        return expiresAt != 0 && now < expiresAt + staleWhileRevalidate * 1000;
+    }
+
+    /**
+     * Whether the response can still be served when the backend is failing.
+     */
+    public boolean isStaleIfError(long now) {
+        return expiresAt == 0 || now < expiresAt + staleIfError * 1000;
+    }
+
+    /**
+     * Copy of this response, sharing the same content, with an additional header.
+     */
+    public CacheResponse withHeader(String name, String value) {
+        CacheResponse copy = copy();
+        copy.headers.set(name, value);
+        return copy;
+    }
+
+    /**
+     * Copy of this response, sharing the same content, with the headers updated by those of a
+     * <code>304 Not Modified</code> response (RFC 7234, section 4.3.4).
+     */
+    public CacheResponse refresh(HttpHeaders notModifiedHeaders) {
+        CacheResponse copy = copy();
+        notModifiedHeaders.forEach((name, values) -> {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name) && !HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(name)) {
+                copy.headers.put(name, values);
+            }
+        });
+        return copy;
+    }
+
+    /**
+     * Cache resources relying on Java serialization (distributed or persistent caches) use the compact
+     * {@link CacheResponseCodec} format.
+     */
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        CacheResponseCodec.write(this, out);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        CacheResponseCodec.read(this, in);
+    }
+
+    private CacheResponse copy() {
+        CacheResponse copy = new CacheResponse();
+        copy.status = status;
+        copy.headers = (headers != null) ? new HttpHeaders(headers) : new HttpHeaders();
+        copy.content = content;
+        copy.offHeapContent = offHeapContent;
+        copy.diskContent = diskContent;
+        copy.expiresAt = expiresAt;
+        copy.staleWhileRevalidate = staleWhileRevalidate;
+        copy.staleIfError = staleIfError;
+        copy.storedAt = storedAt;
+        copy.fillDuration = fillDuration;
+        copy.etag = etag;
+        copy.lastModified = lastModified;
+        copy.contentEncoding = contentEncoding;
+        return copy;
+    }
 }
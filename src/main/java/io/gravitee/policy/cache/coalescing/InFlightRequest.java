@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.coalescing;
+
+import io.gravitee.gateway.api.handler.Handler;
+import io.gravitee.policy.cache.CacheResponse;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A backend call made by a leader request, on which concurrent requests for the same key are waiting.
+ *
+ * @author GraviteeSource Team
+ */
+public class InFlightRequest {
+
+    private final RequestCoalescer coalescer;
+    private final String key;
+    private final long startedAt = System.currentTimeMillis();
+
+    private final List<Follower> followers = new ArrayList<>();
+    private boolean done;
+
+    InFlightRequest(final RequestCoalescer coalescer, final String key) {
+        this.coalescer = coalescer;
+        this.key = key;
+    }
+
+    /**
+     * Called by the leader once the backend response has been put in cache.
+     */
+    public void complete(CacheResponse response) {
+        for (Follower follower : terminate()) {
+            follower.fire(response);
+        }
+    }
+
+    /**
+     * Called by the leader when the backend response can not be shared (failure, uncacheable status, ...).
+     * Followers are released and have to call the backend by themselves.
+     */
+    public void fail() {
+        complete(null);
+    }
+
+    boolean subscribe(Handler<CacheResponse> handler, long timeout) {
+        Follower follower = new Follower(handler);
+
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+
+            followers.add(follower);
+        }
+
+        follower.timeout = coalescer.scheduler().schedule(() -> {
+            synchronized (InFlightRequest.this) {
+                followers.remove(follower);
+            }
+            follower.fire(null);
+        }, timeout, TimeUnit.MILLISECONDS);
+
+        return true;
+    }
+
+    boolean isExpired(long timeout) {
+        return System.currentTimeMillis() - startedAt > timeout;
+    }
+
+    private List<Follower> terminate() {
+        List<Follower> released;
+
+        synchronized (this) {
+            if (done) {
+                return new ArrayList<>();
+            }
+
+            done = true;
+            released = new ArrayList<>(followers);
+            followers.clear();
+        }
+
+        coalescer.remove(key, this);
+        return released;
+    }
+
+    private static class Follower {
+        private final Handler<CacheResponse> handler;
+        // The context of the follower request, on which its handler must run
+        private final Context context = Vertx.currentContext();
+        private final AtomicBoolean fired = new AtomicBoolean();
+        private volatile ScheduledFuture<?> timeout;
+
+        Follower(final Handler<CacheResponse> handler) {
+            this.handler = handler;
+        }
+
+        void fire(CacheResponse response) {
+            if (fired.compareAndSet(false, true)) {
+                ScheduledFuture<?> timeout = this.timeout;
+                if (timeout != null) {
+                    timeout.cancel(false);
+                }
+
+                if (context == null || context == Vertx.currentContext()) {
+                    handler.handle(response);
+                } else {
+                    context.runOnContext(aVoid -> handler.handle(response));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.coalescing;
+
+import io.gravitee.gateway.api.handler.Handler;
+import io.gravitee.policy.cache.CacheResponse;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Single-flight registry: only the first cache miss for a given key (the leader) goes to the backend, concurrent
+ * misses for the same key wait for the leader response.
+ *
+ * @author GraviteeSource Team
+ */
+public class RequestCoalescer {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gio-policy-cache-coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ConcurrentMap<String, InFlightRequest> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Join the flight for the given key.
+     *
+     * @param key the cache key.
+     * @param timeout the maximum time (in milliseconds) to wait for the leader.
+     * @param follower the handler called with the leader response, or with <code>null</code> if the leader failed or
+     *                 did not answer in time. It is called on the Vert.x context of the caller, if any.
+     * @return the flight to complete if the caller is the leader, <code>null</code> if the caller has been registered
+     * as a follower.
+     */
+    public InFlightRequest join(String key, long timeout, Handler<CacheResponse> follower) {
+        return acquire(key, timeout, follower);
+    }
+
+    /**
+     * Take the lead for the given key, without waiting if a backend call is already in flight.
+     *
+     * @param key the cache key.
+     * @param timeout the maximum time (in milliseconds) a backend call is considered as in flight.
+     * @return the flight to complete if the caller is the leader, <code>null</code> if a backend call is already in
+     * flight for this key.
+     */
+    public InFlightRequest lead(String key, long timeout) {
+        return acquire(key, timeout, null);
+    }
+
+    private InFlightRequest acquire(String key, long timeout, Handler<CacheResponse> follower) {
+        while (true) {
+            InFlightRequest current = inFlight.get(key);
+
+            if (current == null) {
+                InFlightRequest flight = new InFlightRequest(this, key);
+                if (inFlight.putIfAbsent(key, flight) == null) {
+                    return flight;
+                }
+            } else if (current.isExpired(timeout)) {
+                // The leader never came back, release its followers and take the lead
+                current.fail();
+            } else if (follower == null || current.subscribe(follower, timeout)) {
+                return null;
+            }
+        }
+    }
+
+    void remove(String key, InFlightRequest flight) {
+        inFlight.remove(key, flight);
+    }
+
+    ScheduledExecutorService scheduler() {
+        return SCHEDULER;
+    }
+}
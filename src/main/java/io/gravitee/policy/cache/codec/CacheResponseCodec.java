@@ -0,0 +1,310 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.codec;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.cache.CacheResponse;
+import io.gravitee.policy.cache.disk.DiskContent;
+import io.gravitee.policy.cache.offheap.OffHeapContent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Versioned binary format of a {@link CacheResponse}, used by cache resources storing or transferring elements
+ * outside of the heap (see {@link CacheResponse#writeExternal(java.io.ObjectOutput)}).
+ *
+ * <pre>
+ * version      : byte
+ * status       : varint
+ * flags        : byte (validators, content encoding, content and disk content presence)
+ * expiresAt    : varlong
+ * stale windows: varlong (stale-while-revalidate), varlong (stale-if-error)
+ * storedAt     : varlong (since version 2)
+ * fillDuration : varlong (since version 3)
+ * etag, last-modified, content encoding: string, when present
+ * headers      : varint count, then (name, value) pairs, names being either an index in the table of common
+ *                header names or a string
+ * content      : varint length + bytes, when present
+ * disk content : string (store), varlong (id), varint (length), when the content is written on disk
+ * </pre>
+ *
+ * Strings are written as a varint length followed by their UTF-8 bytes.
+ *
+ * @author GraviteeSource Team
+ */
+public final class CacheResponseCodec {
+
+    static final byte VERSION = 3;
+
+    // Oldest version still readable
+    private static final byte MIN_VERSION = 1;
+
+    private static final int FLAG_ETAG = 1;
+    private static final int FLAG_LAST_MODIFIED = 1 << 1;
+    private static final int FLAG_CONTENT_ENCODING = 1 << 2;
+    private static final int FLAG_CONTENT = 1 << 3;
+    private static final int FLAG_DISK_CONTENT = 1 << 4;
+
+    // Header names written as their index in this table. Append only: the index is part of the format.
+    private static final String[] COMMON_HEADERS = {
+            HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH, HttpHeaders.CACHE_CONTROL, HttpHeaders.DATE,
+            HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED, HttpHeaders.EXPIRES, HttpHeaders.VARY,
+            HttpHeaders.CONTENT_ENCODING, HttpHeaders.CONTENT_LANGUAGE, HttpHeaders.SERVER, HttpHeaders.CONNECTION,
+            HttpHeaders.TRANSFER_ENCODING, HttpHeaders.AGE, HttpHeaders.PRAGMA, HttpHeaders.LOCATION,
+            HttpHeaders.ACCEPT_RANGES, HttpHeaders.KEEP_ALIVE, HttpHeaders.SET_COOKIE, HttpHeaders.LINK,
+            HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, HttpHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS,
+            HttpHeaders.ACCESS_CONTROL_ALLOW_HEADERS, HttpHeaders.ACCESS_CONTROL_ALLOW_METHODS,
+            HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, HttpHeaders.ACCESS_CONTROL_MAX_AGE,
+            HttpHeaders.CONTENT_DISPOSITION, HttpHeaders.WARNING, HttpHeaders.VIA, "X-Content-Type-Options",
+            "X-Frame-Options", "Strict-Transport-Security", "X-Request-Id", "Surrogate-Key", "Surrogate-Control"
+    };
+
+    private static final Map<String, Integer> COMMON_HEADER_INDEXES = new HashMap<>();
+
+    static {
+        for (int i = 0; i < COMMON_HEADERS.length; i++) {
+            COMMON_HEADER_INDEXES.put(COMMON_HEADERS[i].toLowerCase(Locale.ENGLISH), i);
+        }
+    }
+
+    private CacheResponseCodec() {}
+
+    public static byte[] encode(CacheResponse response) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(response.getContentLength() + 256);
+
+        try {
+            write(response, new DataOutputStream(bytes));
+        } catch (IOException ioe) {
+            throw new IllegalStateException("Unable to encode cached response", ioe);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    public static CacheResponse decode(byte[] bytes) {
+        CacheResponse response = new CacheResponse();
+
+        try {
+            read(response, new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException ioe) {
+            throw new IllegalStateException("Unable to decode cached response", ioe);
+        }
+
+        return response;
+    }
+
+    public static void write(CacheResponse response, DataOutput out) throws IOException {
+        byte[] body = body(response);
+
+        int flags = 0;
+        if (response.getEtag() != null) {
+            flags |= FLAG_ETAG;
+        }
+        if (response.getLastModified() != null) {
+            flags |= FLAG_LAST_MODIFIED;
+        }
+        if (response.getContentEncoding() != null) {
+            flags |= FLAG_CONTENT_ENCODING;
+        }
+        if (body != null) {
+            flags |= FLAG_CONTENT;
+        } else if (response.getDiskContent() != null) {
+            flags |= FLAG_DISK_CONTENT;
+        }
+
+        out.writeByte(VERSION);
+        writeVarLong(out, response.getStatus());
+        out.writeByte(flags);
+        writeVarLong(out, response.getExpiresAt());
+        writeVarLong(out, response.getStaleWhileRevalidate());
+        writeVarLong(out, response.getStaleIfError());
+        writeVarLong(out, response.getStoredAt());
+        writeVarLong(out, response.getFillDuration());
+
+        if (response.getEtag() != null) {
+            writeString(out, response.getEtag());
+        }
+        if (response.getLastModified() != null) {
+            writeString(out, response.getLastModified());
+        }
+        if (response.getContentEncoding() != null) {
+            writeString(out, response.getContentEncoding());
+        }
+
+        writeHeaders(out, response.getHeaders());
+
+        if (body != null) {
+            writeVarLong(out, body.length);
+            out.write(body);
+        } else if (response.getDiskContent() != null) {
+            DiskContent diskContent = response.getDiskContent();
+            writeString(out, diskContent.getStore());
+            writeVarLong(out, diskContent.getId());
+            writeVarLong(out, diskContent.length());
+        }
+    }
+
+    private static byte[] body(CacheResponse response) throws IOException {
+        if (response.getContent() != null) {
+            return response.getContent().getBytes();
+        }
+
+        OffHeapContent offHeapContent = response.getOffHeapContent();
+        if (offHeapContent == null) {
+            return null;
+        }
+
+        if (!offHeapContent.retain()) {
+            throw new IOException("Off-heap content of the cached response has already been released");
+        }
+
+        try {
+            return offHeapContent.getBytes();
+        } finally {
+            offHeapContent.release();
+        }
+    }
+
+    public static void read(CacheResponse response, DataInput in) throws IOException {
+        byte version = in.readByte();
+        if (version < MIN_VERSION || version > VERSION) {
+            throw new IOException("Unsupported cached response format version " + version);
+        }
+
+        response.setStatus((int) readVarLong(in));
+        int flags = in.readByte();
+        response.setExpiresAt(readVarLong(in));
+        response.setStaleWhileRevalidate(readVarLong(in));
+        response.setStaleIfError(readVarLong(in));
+        if (version >= 2) {
+            response.setStoredAt(readVarLong(in));
+        }
+        if (version >= 3) {
+            response.setFillDuration(readVarLong(in));
+        }
+
+        if ((flags & FLAG_ETAG) != 0) {
+            response.setEtag(readString(in));
+        }
+        if ((flags & FLAG_LAST_MODIFIED) != 0) {
+            response.setLastModified(readString(in));
+        }
+        if ((flags & FLAG_CONTENT_ENCODING) != 0) {
+            response.setContentEncoding(readString(in));
+        }
+
+        response.setHeaders(readHeaders(in));
+
+        if ((flags & FLAG_CONTENT) != 0) {
+            byte[] body = new byte[(int) readVarLong(in)];
+            in.readFully(body);
+            response.setContent(Buffer.buffer(body));
+        } else if ((flags & FLAG_DISK_CONTENT) != 0) {
+            response.setDiskContent(new DiskContent(readString(in), readVarLong(in), (int) readVarLong(in)));
+        }
+    }
+
+    private static void writeHeaders(DataOutput out, HttpHeaders headers) throws IOException {
+        if (headers == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+
+        int count = 0;
+        for (List<String> values : headers.values()) {
+            count += values.size();
+        }
+        writeVarLong(out, count);
+
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            Integer index = COMMON_HEADER_INDEXES.get(header.getKey().toLowerCase(Locale.ENGLISH));
+            for (String value : header.getValue()) {
+                if (index != null) {
+                    // 0 is reserved for literal names
+                    writeVarLong(out, index + 1);
+                } else {
+                    writeVarLong(out, 0);
+                    writeString(out, header.getKey());
+                }
+                writeString(out, value);
+            }
+        }
+    }
+
+    private static HttpHeaders readHeaders(DataInput in) throws IOException {
+        int count = (int) readVarLong(in);
+        HttpHeaders headers = new HttpHeaders(Math.max(count, 1));
+
+        for (int i = 0; i < count; i++) {
+            int index = (int) readVarLong(in);
+            String name = (index == 0) ? readString(in) : COMMON_HEADERS[index - 1];
+            headers.add(name, readString(in));
+        }
+
+        return headers;
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Unsigned LEB128 encoding: 7 bits per byte, the highest bit telling if more bytes follow.
+     */
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 63) {
+                throw new IOException("Malformed variable-length number");
+            }
+            b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        return value;
+    }
+}
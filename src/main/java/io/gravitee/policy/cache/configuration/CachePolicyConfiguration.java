@@ -16,6 +16,11 @@
 package io.gravitee.policy.cache.configuration;
 
 import io.gravitee.policy.api.PolicyConfiguration;
+import io.gravitee.policy.cache.key.KeyTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * @author David BRASSELY (david.brassely at graviteesource.com)
@@ -34,6 +39,112 @@ public class CachePolicyConfiguration implements PolicyConfiguration {
 
     private boolean useResponseCacheHeaders = false;
 
+    // Disabled by default
+    private long staleWhileRevalidateSeconds = 0;
+
+    // Disabled by default
+    private long staleIfErrorSeconds = 0;
+
+    // Disabled by default
+    private long revalidationWindowSeconds = 0;
+
+    // No limit by default
+    private long maxCacheableBodySize = 0;
+
+    private boolean compressContent = false;
+
+    private CompressionAlgorithm compressionAlgorithm = CompressionAlgorithm.GZIP;
+
+    // Default to 1 KB
+    private long compressionThreshold = 1024;
+
+    private List<String> compressibleContentTypes = Arrays.asList(
+            "text/*", "application/json", "application/*+json", "application/xml", "application/*+xml",
+            "application/javascript");
+
+    private boolean coalesceRequests = false;
+
+    // Default to 5 seconds
+    private long coalesceTimeoutMillis = 5000;
+
+    private boolean offHeapStorage = false;
+
+    private long offHeapMaxSize = 64 * 1024 * 1024;
+
+    private boolean nearCache = false;
+
+    private int nearCacheMaxEntries = 1000;
+
+    private long nearCacheMaxSize = 16 * 1024 * 1024;
+
+    private long nearCacheTimeToLiveSeconds = 5;
+
+    private boolean diskStorage = false;
+
+    private String diskDirectory = System.getProperty("java.io.tmpdir") + "/gravitee-policy-cache";
+
+    private long diskThreshold = 1024 * 1024;
+
+    private long diskSegmentSize = 64 * 1024 * 1024;
+
+    private long diskMaxSize = 1024 * 1024 * 1024;
+
+    private boolean useVaryHeader = true;
+
+    private boolean useRequestCacheHeaders = false;
+
+    // Default to the 2xx responses, cached for the time to live of the policy
+    private List<StatusRule> cacheableStatuses = Collections.singletonList(new StatusRule(200, 299, -1));
+
+    private boolean respectNoStore = true;
+
+    // Caching of requests keyed on their body is disabled by default
+    private List<String> requestBodyMethods = Collections.emptyList();
+
+    private List<String> requestBodyContentTypes = Arrays.asList(
+            "application/json", "application/*+json", "application/graphql");
+
+    // Default to 64 KB
+    private long maxRequestBodySize = 64 * 1024;
+
+    private List<String> prewarmPaths = Collections.emptyList();
+
+    private String prewarmFile;
+
+    private int prewarmConcurrency = 4;
+
+    private int prewarmRatePerSecond = 10;
+
+    // Credentials of the request starting the warm-up must not be replayed
+    private List<String> prewarmHeaders = Arrays.asList(
+            "Accept", "Accept-Charset", "Accept-Encoding", "Accept-Language");
+
+    private String snapshotFile;
+
+    private long snapshotIntervalSeconds = 60;
+
+    private int snapshotMaxEntries = 1000;
+
+    private String tagHeader;
+
+    private int maxTaggedKeys = 10000;
+
+    private String purgeSecret;
+
+    private int maxIndexedPaths = 100000;
+
+    private boolean earlyRefresh;
+
+    private double earlyRefreshBeta = 1.0;
+
+    private int timeToLiveJitterPercent;
+
+    // Compiled once, when first used
+    private volatile CacheabilityRules cacheabilityRules;
+
+    // Compiled once, when first used
+    private volatile KeyTemplate keyTemplate;
+
     public String getCacheName() {
         return cacheName;
     }
@@ -48,6 +159,7 @@ public class CachePolicyConfiguration implements PolicyConfiguration {
 
     public void setKey(String key) {
         this.key = key;
+        this.keyTemplate = null;
     }
 
     public CacheScope getScope() {
@@ -73,4 +185,377 @@ public class CachePolicyConfiguration implements PolicyConfiguration {
     public void setUseResponseCacheHeaders(boolean useResponseCacheHeaders) {
         this.useResponseCacheHeaders = useResponseCacheHeaders;
     }
+
+    public long getStaleWhileRevalidateSeconds() {
+        return staleWhileRevalidateSeconds;
+    }
+
+    public void setStaleWhileRevalidateSeconds(long staleWhileRevalidateSeconds) {
+        this.staleWhileRevalidateSeconds = staleWhileRevalidateSeconds;
+    }
+
+    public long getStaleIfErrorSeconds() {
+        return staleIfErrorSeconds;
+    }
+
+    public void setStaleIfErrorSeconds(long staleIfErrorSeconds) {
+        this.staleIfErrorSeconds = staleIfErrorSeconds;
+    }
+
+    public long getRevalidationWindowSeconds() {
+        return revalidationWindowSeconds;
+    }
+
+    public void setRevalidationWindowSeconds(long revalidationWindowSeconds) {
+        this.revalidationWindowSeconds = revalidationWindowSeconds;
+    }
+
+    public long getMaxCacheableBodySize() {
+        return maxCacheableBodySize;
+    }
+
+    public void setMaxCacheableBodySize(long maxCacheableBodySize) {
+        this.maxCacheableBodySize = maxCacheableBodySize;
+    }
+
+    public boolean isCompressContent() {
+        return compressContent;
+    }
+
+    public void setCompressContent(boolean compressContent) {
+        this.compressContent = compressContent;
+    }
+
+    public CompressionAlgorithm getCompressionAlgorithm() {
+        return compressionAlgorithm;
+    }
+
+    public void setCompressionAlgorithm(CompressionAlgorithm compressionAlgorithm) {
+        this.compressionAlgorithm = compressionAlgorithm;
+    }
+
+    public long getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(long compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public List<String> getCompressibleContentTypes() {
+        return compressibleContentTypes;
+    }
+
+    public void setCompressibleContentTypes(List<String> compressibleContentTypes) {
+        this.compressibleContentTypes = compressibleContentTypes;
+    }
+
+    public boolean isCoalesceRequests() {
+        return coalesceRequests;
+    }
+
+    public void setCoalesceRequests(boolean coalesceRequests) {
+        this.coalesceRequests = coalesceRequests;
+    }
+
+    public long getCoalesceTimeoutMillis() {
+        return coalesceTimeoutMillis;
+    }
+
+    public void setCoalesceTimeoutMillis(long coalesceTimeoutMillis) {
+        this.coalesceTimeoutMillis = coalesceTimeoutMillis;
+    }
+
+    public boolean isOffHeapStorage() {
+        return offHeapStorage;
+    }
+
+    public void setOffHeapStorage(boolean offHeapStorage) {
+        this.offHeapStorage = offHeapStorage;
+    }
+
+    public long getOffHeapMaxSize() {
+        return offHeapMaxSize;
+    }
+
+    public void setOffHeapMaxSize(long offHeapMaxSize) {
+        this.offHeapMaxSize = offHeapMaxSize;
+    }
+
+    public boolean isNearCache() {
+        return nearCache;
+    }
+
+    public void setNearCache(boolean nearCache) {
+        this.nearCache = nearCache;
+    }
+
+    public int getNearCacheMaxEntries() {
+        return nearCacheMaxEntries;
+    }
+
+    public void setNearCacheMaxEntries(int nearCacheMaxEntries) {
+        this.nearCacheMaxEntries = nearCacheMaxEntries;
+    }
+
+    public long getNearCacheMaxSize() {
+        return nearCacheMaxSize;
+    }
+
+    public void setNearCacheMaxSize(long nearCacheMaxSize) {
+        this.nearCacheMaxSize = nearCacheMaxSize;
+    }
+
+    public long getNearCacheTimeToLiveSeconds() {
+        return nearCacheTimeToLiveSeconds;
+    }
+
+    public void setNearCacheTimeToLiveSeconds(long nearCacheTimeToLiveSeconds) {
+        this.nearCacheTimeToLiveSeconds = nearCacheTimeToLiveSeconds;
+    }
+
+    public boolean isDiskStorage() {
+        return diskStorage;
+    }
+
+    public void setDiskStorage(boolean diskStorage) {
+        this.diskStorage = diskStorage;
+    }
+
+    public String getDiskDirectory() {
+        return diskDirectory;
+    }
+
+    public void setDiskDirectory(String diskDirectory) {
+        this.diskDirectory = diskDirectory;
+    }
+
+    public long getDiskThreshold() {
+        return diskThreshold;
+    }
+
+    public void setDiskThreshold(long diskThreshold) {
+        this.diskThreshold = diskThreshold;
+    }
+
+    public long getDiskSegmentSize() {
+        return diskSegmentSize;
+    }
+
+    public void setDiskSegmentSize(long diskSegmentSize) {
+        this.diskSegmentSize = diskSegmentSize;
+    }
+
+    public long getDiskMaxSize() {
+        return diskMaxSize;
+    }
+
+    public void setDiskMaxSize(long diskMaxSize) {
+        this.diskMaxSize = diskMaxSize;
+    }
+
+    public boolean isUseVaryHeader() {
+        return useVaryHeader;
+    }
+
+    public void setUseVaryHeader(boolean useVaryHeader) {
+        this.useVaryHeader = useVaryHeader;
+    }
+
+    public boolean isUseRequestCacheHeaders() {
+        return useRequestCacheHeaders;
+    }
+
+    public void setUseRequestCacheHeaders(boolean useRequestCacheHeaders) {
+        this.useRequestCacheHeaders = useRequestCacheHeaders;
+    }
+
+    public List<StatusRule> getCacheableStatuses() {
+        return cacheableStatuses;
+    }
+
+    public void setCacheableStatuses(List<StatusRule> cacheableStatuses) {
+        this.cacheableStatuses = cacheableStatuses;
+        this.cacheabilityRules = null;
+    }
+
+    public boolean isRespectNoStore() {
+        return respectNoStore;
+    }
+
+    public void setRespectNoStore(boolean respectNoStore) {
+        this.respectNoStore = respectNoStore;
+    }
+
+    public List<String> getRequestBodyMethods() {
+        return requestBodyMethods;
+    }
+
+    public void setRequestBodyMethods(List<String> requestBodyMethods) {
+        this.requestBodyMethods = requestBodyMethods;
+    }
+
+    public List<String> getRequestBodyContentTypes() {
+        return requestBodyContentTypes;
+    }
+
+    public void setRequestBodyContentTypes(List<String> requestBodyContentTypes) {
+        this.requestBodyContentTypes = requestBodyContentTypes;
+    }
+
+    public long getMaxRequestBodySize() {
+        return maxRequestBodySize;
+    }
+
+    public void setMaxRequestBodySize(long maxRequestBodySize) {
+        this.maxRequestBodySize = maxRequestBodySize;
+    }
+
+    public List<String> getPrewarmPaths() {
+        return prewarmPaths;
+    }
+
+    public void setPrewarmPaths(List<String> prewarmPaths) {
+        this.prewarmPaths = prewarmPaths;
+    }
+
+    public String getPrewarmFile() {
+        return prewarmFile;
+    }
+
+    public void setPrewarmFile(String prewarmFile) {
+        this.prewarmFile = prewarmFile;
+    }
+
+    public int getPrewarmConcurrency() {
+        return prewarmConcurrency;
+    }
+
+    public void setPrewarmConcurrency(int prewarmConcurrency) {
+        this.prewarmConcurrency = prewarmConcurrency;
+    }
+
+    public int getPrewarmRatePerSecond() {
+        return prewarmRatePerSecond;
+    }
+
+    public void setPrewarmRatePerSecond(int prewarmRatePerSecond) {
+        this.prewarmRatePerSecond = prewarmRatePerSecond;
+    }
+
+    public List<String> getPrewarmHeaders() {
+        return prewarmHeaders;
+    }
+
+    public void setPrewarmHeaders(List<String> prewarmHeaders) {
+        this.prewarmHeaders = prewarmHeaders;
+    }
+
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public void setSnapshotFile(String snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    public long getSnapshotIntervalSeconds() {
+        return snapshotIntervalSeconds;
+    }
+
+    public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) {
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+
+    public int getSnapshotMaxEntries() {
+        return snapshotMaxEntries;
+    }
+
+    public void setSnapshotMaxEntries(int snapshotMaxEntries) {
+        this.snapshotMaxEntries = snapshotMaxEntries;
+    }
+
+    public String getTagHeader() {
+        return tagHeader;
+    }
+
+    public void setTagHeader(String tagHeader) {
+        this.tagHeader = tagHeader;
+    }
+
+    public int getMaxTaggedKeys() {
+        return maxTaggedKeys;
+    }
+
+    public void setMaxTaggedKeys(int maxTaggedKeys) {
+        this.maxTaggedKeys = maxTaggedKeys;
+    }
+
+    public String getPurgeSecret() {
+        return purgeSecret;
+    }
+
+    public void setPurgeSecret(String purgeSecret) {
+        this.purgeSecret = purgeSecret;
+    }
+
+    public int getMaxIndexedPaths() {
+        return maxIndexedPaths;
+    }
+
+    public void setMaxIndexedPaths(int maxIndexedPaths) {
+        this.maxIndexedPaths = maxIndexedPaths;
+    }
+
+    public boolean isEarlyRefresh() {
+        return earlyRefresh;
+    }
+
+    public void setEarlyRefresh(boolean earlyRefresh) {
+        this.earlyRefresh = earlyRefresh;
+    }
+
+    public double getEarlyRefreshBeta() {
+        return earlyRefreshBeta;
+    }
+
+    public void setEarlyRefreshBeta(double earlyRefreshBeta) {
+        this.earlyRefreshBeta = earlyRefreshBeta;
+    }
+
+    public int getTimeToLiveJitterPercent() {
+        return timeToLiveJitterPercent;
+    }
+
+    public void setTimeToLiveJitterPercent(int timeToLiveJitterPercent) {
+        this.timeToLiveJitterPercent = timeToLiveJitterPercent;
+    }
+
+    /**
+     * The {@link #getCacheableStatuses() cacheable statuses}, compiled.
+     */
+    public CacheabilityRules cacheabilityRules() {
+        CacheabilityRules rules = cacheabilityRules;
+        if (rules == null) {
+            rules = CacheabilityRules.compile(cacheableStatuses);
+            cacheabilityRules = rules;
+        }
+        return rules;
+    }
+
+    /**
+     * The {@link #getKey() key}, compiled, or <code>null</code> if there is no key.
+     */
+    public KeyTemplate keyTemplate() {
+        if (key == null || key.isEmpty()) {
+            return null;
+        }
+
+        KeyTemplate template = keyTemplate;
+        if (template == null) {
+            template = KeyTemplate.compile(key);
+            keyTemplate = template;
+        }
+        return template;
+    }
 }
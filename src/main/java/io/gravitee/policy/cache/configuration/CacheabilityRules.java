@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.configuration;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link StatusRule}s compiled into a table indexed by status code, so that looking up the rule of a response is a
+ * single array access. When rules overlap, the first one wins.
+ *
+ * @author GraviteeSource Team
+ */
+public final class CacheabilityRules {
+
+    /**
+     * Returned by {@link #timeToLive(int)} for the responses which must not be put in cache.
+     */
+    public static final long NOT_CACHEABLE = -2;
+
+    /**
+     * Returned by {@link #timeToLive(int)} for the responses cached for the time to live of the policy.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = -1;
+
+    private static final int MIN_STATUS = 100;
+    private static final int MAX_STATUS = 599;
+
+    private final long[] timeToLives = new long[MAX_STATUS - MIN_STATUS + 1];
+
+    private CacheabilityRules(List<StatusRule> rules) {
+        Arrays.fill(timeToLives, NOT_CACHEABLE);
+
+        if (rules == null) {
+            return;
+        }
+
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            StatusRule rule = rules.get(i);
+            int from = Math.max(rule.getFrom(), MIN_STATUS);
+            int to = Math.min((rule.getTo() == 0) ? rule.getFrom() : rule.getTo(), MAX_STATUS);
+            long timeToLive = Math.max(rule.getTimeToLiveSeconds(), DEFAULT_TIME_TO_LIVE);
+            for (int status = from; status <= to; status++) {
+                timeToLives[status - MIN_STATUS] = timeToLive;
+            }
+        }
+    }
+
+    public static CacheabilityRules compile(List<StatusRule> rules) {
+        return new CacheabilityRules(rules);
+    }
+
+    /**
+     * The time to live (in seconds, 0 meaning forever) of the responses with the given status code,
+     * {@link #DEFAULT_TIME_TO_LIVE} to use the time to live of the policy, or {@link #NOT_CACHEABLE}.
+     */
+    public long timeToLive(int status) {
+        return (status < MIN_STATUS || status > MAX_STATUS) ? NOT_CACHEABLE : timeToLives[status - MIN_STATUS];
+    }
+
+    public boolean isCacheable(int status) {
+        return timeToLive(status) != NOT_CACHEABLE;
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.configuration;
+
+/**
+ * Makes the responses with a status code in <code>[from, to]</code> cacheable, for a given time.
+ *
+ * @author GraviteeSource Team
+ */
+public class StatusRule {
+
+    private int from;
+
+    private int to;
+
+    // Use the time to live of the policy by default
+    private long timeToLiveSeconds = -1;
+
+    public StatusRule() {
+    }
+
+    public StatusRule(final int from, final int to, final long timeToLiveSeconds) {
+        this.from = from;
+        this.to = to;
+        this.timeToLiveSeconds = timeToLiveSeconds;
+    }
+
+    public int getFrom() {
+        return from;
+    }
+
+    public void setFrom(int from) {
+        this.from = from;
+    }
+
+    public int getTo() {
+        return to;
+    }
+
+    public void setTo(int to) {
+        this.to = to;
+    }
+
+    public long getTimeToLiveSeconds() {
+        return timeToLiveSeconds;
+    }
+
+    public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+        this.timeToLiveSeconds = timeToLiveSeconds;
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.disk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Pointer to a cached content written on disk by a {@link DiskStore}. This is all the cache resource holds for such
+ * contents.
+ *
+ * <p>The pointer only makes sense for the gateway which wrote the content: other gateways sharing a distributed cache
+ * resource, or the same gateway after a restart, can not resolve it.</p>
+ *
+ * @author GraviteeSource Team
+ */
+public class DiskContent {
+
+    private final String store;
+    private final long id;
+    private final int length;
+
+    public DiskContent(final String store, final long id, final int length) {
+        this.store = store;
+        this.id = id;
+        this.length = length;
+    }
+
+    public String getStore() {
+        return store;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Open the content for reading, the reader is to be closed once done with it.
+     *
+     * @return <code>null</code> if the content is no longer available.
+     */
+    public DiskReader open() {
+        DiskStore diskStore = DiskStore.lookup(store);
+        return (diskStore != null) ? diskStore.open(id) : null;
+    }
+
+    public boolean isAvailable() {
+        DiskStore diskStore = DiskStore.lookup(store);
+        return diskStore != null && diskStore.contains(id);
+    }
+
+    public byte[] getBytes() {
+        try (DiskReader reader = open()) {
+            if (reader == null) {
+                return null;
+            }
+
+            ByteBuffer view = reader.view();
+            byte[] bytes = new byte[view.remaining()];
+            view.get(bytes);
+            return bytes;
+        }
+    }
+}
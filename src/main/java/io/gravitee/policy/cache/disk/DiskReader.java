@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.disk;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+
+/**
+ * Read access to a content written on disk. The segment holding the content is not filled again until the reader is
+ * closed.
+ *
+ * @author GraviteeSource Team
+ */
+public class DiskReader implements Closeable {
+
+    private final Segment segment;
+    private final ByteBuffer view;
+    private boolean closed;
+
+    DiskReader(final Segment segment, final ByteBuffer view) {
+        this.segment = segment;
+        this.view = view;
+    }
+
+    /**
+     * Read-only view over the content, not to be used once the reader is closed.
+     */
+    public ByteBuffer view() {
+        return view;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            segment.unpin();
+        }
+    }
+}
@@ -0,0 +1,387 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.disk;
+
+import io.gravitee.policy.cache.CacheResponse;
+import io.gravitee.policy.cache.resource.NearCache;
+import io.gravitee.resource.cache.Cache;
+import io.gravitee.resource.cache.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Writes the content of large cached responses to memory-mapped segment files, the cache resource only holding a
+ * {@link DiskContent} pointer.
+ *
+ * <p>Segments are filled one after the other. Once the total size of the segments reaches the configured maximum,
+ * the oldest segment is dropped along with the elements it contains. Segments mostly holding released contents are
+ * compacted: their remaining contents are moved to the current segment. Dropped segments are filled again once no
+ * reader holds them anymore, so that the files never exceed the maximum size, mapped or not. They are only deleted
+ * along with the directory of the store, when the store is garbage collected or when the gateway stops.</p>
+ *
+ * <p>As for {@link io.gravitee.policy.cache.offheap.OffHeapStore}, released contents are detected by checking tracked
+ * elements against the cache resource, at most once per {@link #SWEEP_INTERVAL_MS}. Writing, sweeping and compacting
+ * involve file I/O: {@link #store(Cache, Object, CacheResponse, long)} is not to be called from an event loop.</p>
+ *
+ * @author GraviteeSource Team
+ */
+public class DiskStore {
+
+    static final Logger LOGGER = LoggerFactory.getLogger(DiskStore.class);
+
+    static final long SWEEP_INTERVAL_MS = 1000;
+
+    // A segment is compacted once less than half of its content is still in use
+    private static final double COMPACTION_RATIO = 0.5;
+
+    private static final Map<String, StoreReference> STORES = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<DiskStore> COLLECTED = new ReferenceQueue<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                () -> STORES.values().forEach(reference -> delete(reference.directory)), "gio-cache-disk-cleanup"));
+    }
+
+    private final String id = UUID.randomUUID().toString();
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxSize;
+
+    // Oldest segment first, the last one being filled
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    // Segments to fill again, once no more read
+    private final Deque<Segment> dropped = new ArrayDeque<>();
+    private final Map<Long, Location> locations = new ConcurrentHashMap<>();
+    private final Map<Object, Long> keys = new HashMap<>();
+
+    private long size;
+    private long nextContentId;
+    private int nextSegmentId;
+    private long lastSweep = System.currentTimeMillis();
+
+    public DiskStore(final Path directory, final long segmentSize, final long maxSize) {
+        this.directory = directory.resolve(id);
+        this.segmentSize = (int) Math.min(Math.min(segmentSize, maxSize), Integer.MAX_VALUE);
+        this.maxSize = maxSize;
+
+        purge();
+        STORES.put(id, new StoreReference(this));
+    }
+
+    static DiskStore lookup(String id) {
+        StoreReference reference = STORES.get(id);
+        return (reference != null) ? reference.get() : null;
+    }
+
+    /**
+     * Delete the files of the stores garbage collected in the meantime.
+     */
+    private static void purge() {
+        StoreReference reference;
+        while ((reference = (StoreReference) COLLECTED.poll()) != null) {
+            STORES.remove(reference.id);
+            delete(reference.directory);
+        }
+    }
+
+    /**
+     * Write the content of a response about to be put in cache to disk.
+     *
+     * @param hardExpiry the instant (epoch millis) at which the element leaves the cache, 0 if it never expires.
+     * @return <code>false</code> if the content can not be written, it is then kept as is. Contents larger than a
+     * segment are never written.
+     */
+    public synchronized boolean store(Cache cache, Object key, CacheResponse response, long hardExpiry) {
+        long now = System.currentTimeMillis();
+        if (now - lastSweep >= SWEEP_INTERVAL_MS) {
+            sweep(cache, now);
+        }
+
+        DiskContent content = response.getDiskContent();
+        if (content == null) {
+            if (response.getContent() == null || response.getContent().length() > segmentSize) {
+                return false;
+            }
+
+            byte[] bytes = response.getContent().getBytes();
+            Location location;
+            try {
+                location = append(cache, ByteBuffer.wrap(bytes), true);
+            } catch (IOException ioe) {
+                LOGGER.warn("Unable to write the content for key {} to disk, keeping it in memory", key, ioe);
+                return false;
+            }
+
+            content = new DiskContent(id, nextContentId++, bytes.length);
+            locations.put(content.getId(), location);
+
+            response.setDiskContent(content);
+            response.setContent(null);
+        } else if (!locations.containsKey(content.getId())) {
+            return false;
+        }
+
+        Location location = locations.get(content.getId());
+        location.key = key;
+        location.hardExpiry = hardExpiry;
+        location.storedAt = now;
+
+        Long previous = keys.put(key, content.getId());
+        if (previous != null && previous != content.getId()) {
+            release(previous);
+        }
+
+        return true;
+    }
+
+    /**
+     * Open a content for reading, its segment being held until the reader is closed. Does not wait for writes.
+     *
+     * @return <code>null</code> if the content is no longer available.
+     */
+    DiskReader open(long contentId) {
+        Location location = locations.get(contentId);
+        if (location == null) {
+            return null;
+        }
+
+        location.segment.pin();
+        // Released in between, the segment may already be filled again
+        if (locations.get(contentId) != location) {
+            location.segment.unpin();
+            return null;
+        }
+
+        return new DiskReader(location.segment, location.segment.view(location.offset, location.length));
+    }
+
+    boolean contains(long contentId) {
+        return locations.containsKey(contentId);
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    synchronized void sweep(Cache cache, long now) {
+        lastSweep = now;
+
+        Iterator<Map.Entry<Long, Location>> ite = locations.entrySet().iterator();
+        while (ite.hasNext()) {
+            Map.Entry<Long, Location> entry = ite.next();
+            Location location = entry.getValue();
+            // Recently written contents may not be put in cache yet
+            if (location.key != null && ((location.hardExpiry != 0 && now >= location.hardExpiry)
+                    || (now - location.storedAt >= SWEEP_INTERVAL_MS && !isCached(cache, location.key, entry.getKey())))) {
+                release(entry.getKey());
+            }
+        }
+
+        compact(cache);
+    }
+
+    private void compact(Cache cache) {
+        for (Segment segment : new ArrayList<>(segments)) {
+            if (segment == segments.peekLast()) {
+                break;
+            }
+
+            if (segment.live() < segment.position() * COMPACTION_RATIO) {
+                List<Map.Entry<Long, Location>> moved = new ArrayList<>();
+                locations.forEach((contentId, location) -> {
+                    if (location.segment == segment) {
+                        moved.add(new HashMap.SimpleEntry<>(contentId, location));
+                    }
+                });
+
+                try {
+                    for (Map.Entry<Long, Location> entry : moved) {
+                        Location location = entry.getValue();
+                        Location relocated = append(cache, segment.view(location.offset, location.length), false);
+                        relocated.key = location.key;
+                        relocated.hardExpiry = location.hardExpiry;
+                        relocated.storedAt = location.storedAt;
+                        if (locations.replace(entry.getKey(), location, relocated)) {
+                            segment.release(location.length);
+                        } else {
+                            relocated.segment.release(relocated.length);
+                        }
+                    }
+                } catch (IOException ioe) {
+                    LOGGER.warn("Unable to compact cache segment {}", segment, ioe);
+                    return;
+                }
+
+                if (segment.live() == 0) {
+                    drop(segment);
+                }
+            }
+        }
+    }
+
+    private Location append(Cache cache, ByteBuffer content, boolean evict) throws IOException {
+        int length = content.remaining();
+        Segment current = segments.peekLast();
+
+        if (current == null || current.remaining() < length) {
+            current = nextSegment(cache, evict);
+            segments.addLast(current);
+        }
+
+        return new Location(current, current.append(content), length);
+    }
+
+    /**
+     * A dropped segment no more read, or a new one if the maximum size allows it. Otherwise, the oldest segments are
+     * dropped, if allowed to evict their elements.
+     */
+    private Segment nextSegment(Cache cache, boolean evict) throws IOException {
+        while (true) {
+            Iterator<Segment> ite = dropped.iterator();
+            while (ite.hasNext()) {
+                Segment segment = ite.next();
+                if (!segment.isPinned()) {
+                    ite.remove();
+                    segment.reset();
+                    return segment;
+                }
+            }
+
+            if (size + segmentSize <= maxSize) {
+                Files.createDirectories(directory);
+                Segment segment = Segment.create(directory.resolve("segment-" + nextSegmentId++), segmentSize);
+                size += segmentSize;
+                return segment;
+            }
+
+            if (!evict || segments.isEmpty()) {
+                throw new IOException("Maximum size of the disk cache reached");
+            }
+            evict(cache, segments.peekFirst());
+        }
+    }
+
+    /**
+     * Drop the oldest segment to make room, the elements it contains are evicted from the cache.
+     */
+    private void evict(Cache cache, Segment segment) {
+        List<Long> evicted = new ArrayList<>();
+        locations.forEach((contentId, location) -> {
+            if (location.segment == segment) {
+                evicted.add(contentId);
+            }
+        });
+
+        for (Long contentId : evicted) {
+            Location location = locations.get(contentId);
+            release(contentId);
+            if (location.key != null) {
+                cache.evict(location.key);
+            }
+        }
+
+        LOGGER.debug("Cache segment {} dropped, {} elements evicted", segment, evicted.size());
+        drop(segment);
+    }
+
+    private void drop(Segment segment) {
+        segments.remove(segment);
+        dropped.addLast(segment);
+    }
+
+    private void release(long contentId) {
+        Location location = locations.remove(contentId);
+        if (location != null) {
+            location.segment.release(location.length);
+            if (location.key != null) {
+                keys.remove(location.key, contentId);
+            }
+        }
+    }
+
+    private boolean isCached(Cache cache, Object key, long contentId) {
+        Element cached = NearCache.peek(cache, key);
+        if (cached == null || !(cached.value() instanceof CacheResponse)) {
+            return false;
+        }
+
+        DiskContent content = ((CacheResponse) cached.value()).getDiskContent();
+        return content != null && id.equals(content.getStore()) && content.getId() == contentId;
+    }
+
+    private static void delete(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ioe) {
+                    LOGGER.warn("Unable to delete cache file {}", file, ioe);
+                }
+            });
+        } catch (NoSuchFileException nsfe) {
+            // Nothing has been written
+        } catch (IOException ioe) {
+            LOGGER.warn("Unable to delete cache directory {}", directory, ioe);
+        }
+    }
+
+    private static class StoreReference extends WeakReference<DiskStore> {
+        private final String id;
+        private final Path directory;
+
+        StoreReference(final DiskStore store) {
+            super(store, COLLECTED);
+            this.id = store.id;
+            this.directory = store.directory;
+        }
+    }
+
+    private static class Location {
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+
+        // The element holding the content, when it has been stored and when it leaves the cache
+        private Object key;
+        private long storedAt;
+        private long hardExpiry;
+
+        Location(final Segment segment, final int offset, final int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.disk;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Append-only file of a {@link DiskStore}, mapped in memory. Once dropped, a segment is filled again from the start,
+ * but only after the readers of its previous contents are done with them.
+ *
+ * @author GraviteeSource Team
+ */
+class Segment {
+
+    private final Path file;
+    private final MappedByteBuffer mapping;
+
+    // Readers holding a view over a content of the segment
+    private final AtomicInteger readers = new AtomicInteger();
+
+    // Guarded by the disk store
+    private int position;
+    private long live;
+
+    private Segment(final Path file, final MappedByteBuffer mapping) {
+        this.file = file;
+        this.mapping = mapping;
+    }
+
+    static Segment create(Path file, int capacity) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(capacity);
+            // The mapping remains valid once the file is closed
+            MappedByteBuffer mapping = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            return new Segment(file, mapping);
+        }
+    }
+
+    int capacity() {
+        return mapping.capacity();
+    }
+
+    int remaining() {
+        return capacity() - position;
+    }
+
+    int position() {
+        return position;
+    }
+
+    long live() {
+        return live;
+    }
+
+    /**
+     * @return the offset of the appended content.
+     */
+    int append(ByteBuffer content) {
+        int offset = position;
+        ByteBuffer target = mapping.duplicate();
+        target.position(offset);
+        target.put(content);
+        position += target.position() - offset;
+        live += target.position() - offset;
+        return offset;
+    }
+
+    void release(int length) {
+        live -= length;
+    }
+
+    /**
+     * Start filling the segment again, its previous contents having all been released.
+     */
+    void reset() {
+        position = 0;
+        live = 0;
+    }
+
+    void pin() {
+        readers.incrementAndGet();
+    }
+
+    void unpin() {
+        readers.decrementAndGet();
+    }
+
+    boolean isPinned() {
+        return readers.get() > 0;
+    }
+
+    ByteBuffer view(int offset, int length) {
+        ByteBuffer view = mapping.asReadOnlyBuffer();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice();
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+}
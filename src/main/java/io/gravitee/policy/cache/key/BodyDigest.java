@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.key;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.cache.util.BufferUtil;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * SHA-256 digest of a request body, updated with each chunk as it is read, straight from the native buffer of the
+ * gateway. The chunks are only held by the policy until the element is looked up in cache, to be sent to the backend
+ * on a miss, and dropped on a hit: the size of the body is bounded by the <code>maxRequestBodySize</code> setting.
+ *
+ * @author GraviteeSource Team
+ */
+public class BodyDigest {
+
+    private final MessageDigest digest;
+    private long length;
+
+    public BodyDigest() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            // SHA-256 is required from all Java platforms
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    public void update(Buffer chunk) {
+        ByteBuffer bytes = BufferUtil.view(chunk);
+        length += bytes.remaining();
+        digest.update(bytes);
+    }
+
+    /**
+     * Number of bytes digested so far.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * The digest, encoded in URL-safe base64. The digest can not be updated anymore.
+     */
+    public String digest() {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+    }
+}
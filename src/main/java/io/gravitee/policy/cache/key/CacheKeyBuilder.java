@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.key;
+
+import io.gravitee.policy.cache.util.MurmurHash3;
+
+/**
+ * Builds the key of a cached element from its parts (scope, API, application, path, custom key, ...): the parts are
+ * written, length-prefixed, into a buffer reused by the thread, which is hashed with
+ * {@link MurmurHash3#hash128x64(byte[], int, int, long, long[])}. The key is the 128-bit hash, encoded in
+ * {@link #KEY_LENGTH} URL-safe base64 characters.
+ *
+ * <p>Length prefixes make the key material unambiguous: <code>("ab", "c")</code> and <code>("a", "bc")</code> are
+ * hashed differently.</p>
+ *
+ * @author GraviteeSource Team
+ */
+public final class CacheKeyBuilder {
+
+    public static final int KEY_LENGTH = 22;
+
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<CacheKeyBuilder> BUILDERS = ThreadLocal.withInitial(CacheKeyBuilder::new);
+
+    private byte[] buffer = new byte[512];
+    private int length;
+    private final long[] hash = new long[2];
+    private final char[] key = new char[KEY_LENGTH];
+
+    private CacheKeyBuilder() {}
+
+    /**
+     * The builder of the current thread, ready to build a new key. A builder must not be shared with another thread.
+     */
+    public static CacheKeyBuilder get() {
+        CacheKeyBuilder builder = BUILDERS.get();
+        builder.length = 0;
+        if (builder.buffer.length > MAX_RETAINED_CAPACITY) {
+            builder.buffer = new byte[512];
+        }
+        return builder;
+    }
+
+    /**
+     * Append a part of the key, <code>null</code> being distinct from any string.
+     */
+    public CacheKeyBuilder append(CharSequence part) {
+        if (part == null) {
+            writeVarInt(0);
+            return this;
+        }
+
+        int chars = part.length();
+        writeVarInt(chars + 1);
+        ensureCapacity(chars * 3);
+        for (int i = 0; i < chars; i++) {
+            writeChar(part.charAt(i));
+        }
+        return this;
+    }
+
+    public CacheKeyBuilder append(Object part) {
+        return append((part != null) ? part.toString() : null);
+    }
+
+    public String build() {
+        MurmurHash3.hash128x64(buffer, 0, length, 0, hash);
+
+        // 2 x 64 bits = 21 x 6 bits + 2 bits
+        long h1 = hash[0];
+        long h2 = hash[1];
+        for (int i = 0; i < 10; i++) {
+            key[i] = ALPHABET[(int) (h1 & 0x3f)];
+            h1 >>>= 6;
+        }
+        key[10] = ALPHABET[(int) ((h1 & 0xf) | ((h2 & 0x3) << 4))];
+        h2 >>>= 2;
+        for (int i = 11; i < KEY_LENGTH; i++) {
+            key[i] = ALPHABET[(int) (h2 & 0x3f)];
+            h2 >>>= 6;
+        }
+
+        return new String(key);
+    }
+
+    /**
+     * UTF-16 code units are written one by one, each one on 1 to 3 bytes (as with UTF-8 for the basic multilingual
+     * plane): the key material only needs to be unambiguous, not to be valid UTF-8.
+     */
+    private void writeChar(char c) {
+        if (c < 0x80) {
+            buffer[length++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[length++] = (byte) (0xc0 | (c >> 6));
+            buffer[length++] = (byte) (0x80 | (c & 0x3f));
+        } else {
+            buffer[length++] = (byte) (0xe0 | (c >> 12));
+            buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            buffer[length++] = (byte) (0x80 | (c & 0x3f));
+        }
+    }
+
+    private void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7f) != 0) {
+            buffer[length++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    private void ensureCapacity(int required) {
+        if (length + required > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length << 1, length + required)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.key;
+
+import io.gravitee.el.TemplateContext;
+import io.gravitee.el.TemplateEngine;
+import io.gravitee.el.spel.SpelTemplateContext;
+import io.gravitee.gateway.api.ExecutionContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.common.LiteralExpression;
+import org.springframework.expression.common.TemplateParserContext;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+import java.util.regex.Pattern;
+
+/**
+ * The custom key of the policy configuration, parsed once into its literal and expression parts, then evaluated
+ * against each request. Keys without any expression are returned as is, without going through the template engine.
+ *
+ * <p>Parsing follows the rules of the gateway template engine: expressions are written <code>{#...}</code>,
+ * <code>{T(...)...}</code> or <code>{(...)}</code>, any other brace being a literal. These rules are those of the
+ * declared version of the expression language. When the template engine of the request is not the SpEL one, the key
+ * is evaluated by the template engine as before.</p>
+ *
+ * @author GraviteeSource Team
+ */
+public final class KeyTemplate {
+
+    // Same pre-processing as the gateway template engine: braces not opening an expression are literals
+    private static final Pattern LITERAL_BRACE = Pattern.compile("\\{([^#|T|(])");
+    private static final String LITERAL_BRACE_SUBSTITUTE = "{'{'}$1";
+
+    private static final TemplateParserContext PARSER_CONTEXT = new TemplateParserContext("{", "}");
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser();
+
+    private final String template;
+    private final String literal;
+    private final Expression expression;
+
+    private KeyTemplate(final String template, final String literal, final Expression expression) {
+        this.template = template;
+        this.literal = literal;
+        this.expression = expression;
+    }
+
+    /**
+     * Parse the given key. The result is meant to be kept with the configuration the key comes from, see
+     * {@link io.gravitee.policy.cache.configuration.CachePolicyConfiguration#keyTemplate()}.
+     */
+    public static KeyTemplate compile(String template) {
+        try {
+            Expression expression = PARSER.parseExpression(
+                    LITERAL_BRACE.matcher(template).replaceAll(LITERAL_BRACE_SUBSTITUTE), PARSER_CONTEXT);
+            if (expression instanceof LiteralExpression) {
+                return new KeyTemplate(template, expression.getExpressionString(), null);
+            }
+
+            return new KeyTemplate(template, null, expression);
+        } catch (ParseException pe) {
+            // Left to the template engine, which reports the error for each request as it always did
+            return new KeyTemplate(template, null, null);
+        }
+    }
+
+    public boolean isLiteral() {
+        return literal != null;
+    }
+
+    /**
+     * Evaluate the key for the request, the template engine of the request being only used for non-literal keys.
+     */
+    public String evaluate(ExecutionContext executionContext) {
+        return (literal != null) ? literal : evaluate(executionContext.getTemplateEngine());
+    }
+
+    String evaluate(TemplateEngine templateEngine) {
+        if (literal != null) {
+            return literal;
+        }
+
+        TemplateContext context = templateEngine.getTemplateContext();
+        if (expression != null && context instanceof SpelTemplateContext) {
+            return expression.getValue(((SpelTemplateContext) context).getContext(), String.class);
+        }
+
+        return templateEngine.getValue(template, String.class);
+    }
+}
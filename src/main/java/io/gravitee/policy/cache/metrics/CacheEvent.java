@@ -0,0 +1,54 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.metrics;
+
+/**
+ * Outcomes counted by the cache metrics.
+ *
+ * @author GraviteeSource Team
+ */
+public enum CacheEvent {
+
+    /**
+     * The response has been served from the cache, fresh or stale.
+     */
+    HIT,
+
+    /**
+     * No usable element in cache, the backend has been called.
+     */
+    MISS,
+
+    /**
+     * The client asked to by-pass the cache.
+     */
+    BYPASS,
+
+    /**
+     * The client asked to refresh the cached element.
+     */
+    REFRESH,
+
+    /**
+     * The backend response has not been put in cache because of its status code.
+     */
+    UNCACHEABLE,
+
+    /**
+     * The backend response has not been put in cache because of the size of its content.
+     */
+    OVERSIZED
+}
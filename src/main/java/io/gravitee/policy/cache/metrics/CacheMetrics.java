@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms of a cache policy for an API.
+ *
+ * @author GraviteeSource Team
+ */
+public class CacheMetrics {
+
+    private final LongAdder[] counters = new LongAdder[CacheEvent.values().length];
+    private final Histogram fillLatency = new Histogram();
+    private final Histogram bodySize = new Histogram();
+
+    // Cache resources in use with these metrics
+    private final AtomicInteger users = new AtomicInteger();
+
+    public CacheMetrics() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    public void increment(CacheEvent event) {
+        counters[event.ordinal()].increment();
+    }
+
+    public long count(CacheEvent event) {
+        return counters[event.ordinal()].sum();
+    }
+
+    /**
+     * Time from the backend call to the response being put in cache, in microseconds.
+     */
+    public Histogram getFillLatency() {
+        return fillLatency;
+    }
+
+    /**
+     * Size of the contents put in cache (after compression), in bytes.
+     */
+    public Histogram getBodySize() {
+        return bodySize;
+    }
+
+    void acquire() {
+        users.incrementAndGet();
+    }
+
+    /**
+     * @return <code>true</code> if no cache resource uses these metrics anymore.
+     */
+    boolean release() {
+        return users.decrementAndGet() <= 0;
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.metrics;
+
+/**
+ * Receives the metrics of the cache policies, identified by their API and the name of their cache resource.
+ *
+ * <p>The registry in use is looked up with the {@link java.util.ServiceLoader}: an implementation bridging to a
+ * monitoring system can be provided by declaring it in <code>META-INF/services</code>. When none is declared,
+ * metrics are kept in memory by a {@link StripedCacheMetricsRegistry}.</p>
+ *
+ * <p>Implementations are called on the request path, from any thread: they must be thread-safe and must not
+ * block.</p>
+ *
+ * @author GraviteeSource Team
+ */
+public interface CacheMetricsRegistry {
+
+    void increment(String api, String cacheName, CacheEvent event);
+
+    void recordFillLatency(String api, String cacheName, long latencyMicros);
+
+    void recordBodySize(String api, String cacheName, long bytes);
+
+    /**
+     * A cache resource of the API, with the given name, is being used by the policy.
+     */
+    default void acquire(String api, String cacheName) {}
+
+    /**
+     * A cache resource given to {@link #acquire(String, String)} has been stopped: its metrics may be dropped once no
+     * other cache resource of the API with the same name is in use.
+     */
+    default void release(String api, String cacheName) {}
+
+    static CacheMetricsRegistry getInstance() {
+        return CacheMetricsRegistryHolder.INSTANCE;
+    }
+}
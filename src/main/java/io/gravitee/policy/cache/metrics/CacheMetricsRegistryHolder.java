@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.metrics;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * @author GraviteeSource Team
+ */
+final class CacheMetricsRegistryHolder {
+
+    static final CacheMetricsRegistry INSTANCE = load();
+
+    private CacheMetricsRegistryHolder() {}
+
+    private static CacheMetricsRegistry load() {
+        Iterator<CacheMetricsRegistry> registries = ServiceLoader.load(CacheMetricsRegistry.class,
+                CacheMetricsRegistry.class.getClassLoader()).iterator();
+        return registries.hasNext() ? registries.next() : new StripedCacheMetricsRegistry();
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.metrics;
+
+import io.gravitee.policy.cache.resource.CacheAttachments;
+
+/**
+ * Attached to a cache resource to tell the metrics registry when the resource is used by the policy of an API, and
+ * when it has been stopped, so that the metrics of undeployed APIs do not accumulate.
+ *
+ * @author GraviteeSource Team
+ */
+public class CacheMetricsUsage implements CacheAttachments.Releasable {
+
+    private final CacheMetricsRegistry registry;
+    private final String api;
+    private final String cacheName;
+
+    public CacheMetricsUsage(final CacheMetricsRegistry registry, final String api, final String cacheName) {
+        this.registry = registry;
+        this.api = api;
+        this.cacheName = cacheName;
+        registry.acquire(api, cacheName);
+    }
+
+    @Override
+    public void release() {
+        registry.release(api, cacheName);
+    }
+}
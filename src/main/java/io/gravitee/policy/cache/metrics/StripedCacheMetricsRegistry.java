@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+/**
+ * In-memory {@link CacheMetricsRegistry}. Counters and histogram buckets are {@link java.util.concurrent.atomic.LongAdder}s
+ * and lookups are lock-free once the metrics of an API have been created.
+ *
+ * @author GraviteeSource Team
+ */
+public class StripedCacheMetricsRegistry implements CacheMetricsRegistry {
+
+    private final ConcurrentMap<String, ConcurrentMap<String, CacheMetrics>> metrics = new ConcurrentHashMap<>();
+
+    @Override
+    public void increment(String api, String cacheName, CacheEvent event) {
+        metrics(api, cacheName).increment(event);
+    }
+
+    @Override
+    public void recordFillLatency(String api, String cacheName, long latencyMicros) {
+        metrics(api, cacheName).getFillLatency().record(latencyMicros);
+    }
+
+    @Override
+    public void recordBodySize(String api, String cacheName, long bytes) {
+        metrics(api, cacheName).getBodySize().record(bytes);
+    }
+
+    public CacheMetrics metrics(String api, String cacheName) {
+        String apiKey = String.valueOf(api);
+        String cacheKey = String.valueOf(cacheName);
+
+        // Look up before computing: computeIfAbsent may lock the bin even when the mapping exists
+        ConcurrentMap<String, CacheMetrics> apiMetrics = metrics.get(apiKey);
+        if (apiMetrics == null) {
+            apiMetrics = metrics.computeIfAbsent(apiKey, key -> new ConcurrentHashMap<>());
+        }
+
+        CacheMetrics cacheMetrics = apiMetrics.get(cacheKey);
+        if (cacheMetrics == null) {
+            cacheMetrics = apiMetrics.computeIfAbsent(cacheKey, key -> new CacheMetrics());
+        }
+
+        return cacheMetrics;
+    }
+
+    /**
+     * Visit the metrics of each cache resource of an API.
+     */
+    public void forEach(String api, BiConsumer<String, CacheMetrics> consumer) {
+        Map<String, CacheMetrics> apiMetrics = metrics.get(String.valueOf(api));
+        if (apiMetrics != null) {
+            apiMetrics.forEach(consumer);
+        }
+    }
+
+    @Override
+    public void acquire(String api, String cacheName) {
+        metrics.compute(String.valueOf(api), (key, apiMetrics) -> {
+            ConcurrentMap<String, CacheMetrics> acquired = (apiMetrics != null) ? apiMetrics : new ConcurrentHashMap<>();
+            acquired.computeIfAbsent(String.valueOf(cacheName), cacheKey -> new CacheMetrics()).acquire();
+            return acquired;
+        });
+    }
+
+    @Override
+    public void release(String api, String cacheName) {
+        metrics.computeIfPresent(String.valueOf(api), (key, apiMetrics) -> {
+            apiMetrics.computeIfPresent(String.valueOf(cacheName),
+                    (cacheKey, cacheMetrics) -> cacheMetrics.release() ? null : cacheMetrics);
+            return apiMetrics.isEmpty() ? null : apiMetrics;
+        });
+    }
+}
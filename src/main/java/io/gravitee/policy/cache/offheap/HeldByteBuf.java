@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.offheap;
+
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.buffer.UnpooledDirectByteBuf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Netty buffer over a part of an off-heap region, keeping the holder of the region reachable for as long as the
+ * buffer, or any buffer derived from it, is.
+ *
+ * @author GraviteeSource Team
+ */
+class HeldByteBuf extends UnpooledDirectByteBuf {
+
+    // Only referenced to be kept reachable
+    private final Object holder;
+
+    HeldByteBuf(final ByteBuffer region, final Object holder) {
+        super(UnpooledByteBufAllocator.DEFAULT, region, region.remaining());
+        this.holder = holder;
+    }
+}
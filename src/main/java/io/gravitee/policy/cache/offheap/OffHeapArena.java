@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.offheap;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded pool of direct memory. Chunks are power-of-two sized (from {@link #MIN_CHUNK_SIZE} to the slab size),
+ * carved from large direct slabs and recycled through one free list per size class once released. Contents larger
+ * than a slab get a dedicated direct buffer.
+ *
+ * <p>The budget bounds both the chunks in use and the direct memory actually allocated: once no more slab can be
+ * allocated, free chunks of larger size classes are split to serve smaller ones, and the remainder of a slab is
+ * recycled as free chunks before moving to the next one.</p>
+ *
+ * @author GraviteeSource Team
+ */
+public class OffHeapArena {
+
+    static final int MIN_CHUNK_SIZE = 256;
+
+    private final long budget;
+    private final int slabSize;
+    private final AtomicLong reserved = new AtomicLong();
+
+    // Direct memory allocated: slabs, and dedicated buffers still in use
+    private long allocated;
+
+    // Free chunks, by size class (index = log2(chunk size))
+    private final List<Deque<ByteBuffer>> freeChunks;
+
+    private ByteBuffer slab;
+
+    // References released once their holder is garbage collected
+    private final Set<HeldReference> held = ConcurrentHashMap.newKeySet();
+    private final ReferenceQueue<Object> unreachable = new ReferenceQueue<>();
+
+    public OffHeapArena(final long budget, final int slabSize) {
+        this.budget = budget;
+        // A slab larger than the budget could never be allocated
+        int maxSlabSize = (int) Math.min(Integer.highestOneBit(slabSize), Long.highestOneBit(Math.max(budget, 1)));
+        this.slabSize = Math.max(maxSlabSize, MIN_CHUNK_SIZE);
+
+        int sizeClasses = Integer.numberOfTrailingZeros(this.slabSize) + 1;
+        this.freeChunks = new ArrayList<>(sizeClasses);
+        for (int i = 0; i < sizeClasses; i++) {
+            freeChunks.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Copy the given bytes in direct memory.
+     *
+     * @return the handle on the off-heap region, or <code>null</code> if the byte budget is exhausted.
+     */
+    public OffHeapContent allocate(byte[] bytes) {
+        reclaim();
+
+        int chunkSize = chunkSize(bytes.length);
+        if (!reserve(chunkSize)) {
+            return null;
+        }
+
+        ByteBuffer chunk = chunk(chunkSize);
+        if (chunk == null) {
+            // No more direct memory to allocate, and no free chunk large enough
+            reserved.addAndGet(-chunkSize);
+            return null;
+        }
+
+        chunk.put(bytes);
+        chunk.flip();
+
+        return new OffHeapContent(this, chunk, chunkSize);
+    }
+
+    public long reserved() {
+        return reserved.get();
+    }
+
+    public synchronized long allocated() {
+        return allocated;
+    }
+
+    public long budget() {
+        return budget;
+    }
+
+    void releaseWhenUnreachable(OffHeapContent content, Object holder) {
+        held.add(new HeldReference(content, holder, unreachable));
+    }
+
+    /**
+     * Release the references whose holder has been garbage collected.
+     */
+    void reclaim() {
+        Reference<?> reference;
+        while ((reference = unreachable.poll()) != null) {
+            if (held.remove(reference)) {
+                ((HeldReference) reference).content.release();
+            }
+        }
+    }
+
+    synchronized void free(ByteBuffer chunk, int chunkSize) {
+        if (chunkSize <= slabSize) {
+            chunk.clear();
+            freeChunks.get(sizeClass(chunkSize)).push(chunk);
+        } else {
+            // Dedicated buffers are reclaimed by the garbage collector
+            allocated -= chunkSize;
+        }
+
+        reserved.addAndGet(-chunkSize);
+    }
+
+    private boolean reserve(int chunkSize) {
+        while (true) {
+            long current = reserved.get();
+            if (current + chunkSize > budget) {
+                return false;
+            }
+            if (reserved.compareAndSet(current, current + chunkSize)) {
+                return true;
+            }
+        }
+    }
+
+    private synchronized ByteBuffer chunk(int chunkSize) {
+        if (chunkSize > slabSize) {
+            if (allocated + chunkSize > budget) {
+                return null;
+            }
+            allocated += chunkSize;
+            return ByteBuffer.allocateDirect(chunkSize);
+        }
+
+        ByteBuffer chunk = freeChunks.get(sizeClass(chunkSize)).poll();
+        if (chunk != null) {
+            return chunk;
+        }
+
+        if (slab == null || slab.remaining() < chunkSize) {
+            chunk = split(chunkSize);
+            if (chunk != null || allocated + slabSize > budget) {
+                return chunk;
+            }
+
+            if (slab != null) {
+                recycle(slab);
+            }
+            slab = ByteBuffer.allocateDirect(slabSize);
+            allocated += slabSize;
+        }
+
+        chunk = slice(slab, slab.position(), chunkSize);
+        slab.position(slab.position() + chunkSize);
+        return chunk;
+    }
+
+    /**
+     * Take a free chunk of the smallest larger size class, and split it in halves down to the requested size.
+     */
+    private ByteBuffer split(int chunkSize) {
+        for (int sizeClass = sizeClass(chunkSize) + 1; sizeClass < freeChunks.size(); sizeClass++) {
+            ByteBuffer chunk = freeChunks.get(sizeClass).poll();
+            if (chunk == null) {
+                continue;
+            }
+
+            int size = 1 << sizeClass;
+            while (size > chunkSize) {
+                size >>= 1;
+                freeChunks.get(sizeClass(size)).push(slice(chunk, size, size));
+                chunk = slice(chunk, 0, size);
+            }
+            return chunk;
+        }
+
+        return null;
+    }
+
+    /**
+     * Give the remainder of a slab to the free lists, as the largest chunks it can hold.
+     */
+    private void recycle(ByteBuffer slab) {
+        while (slab.remaining() >= MIN_CHUNK_SIZE) {
+            int size = Integer.highestOneBit(slab.remaining());
+            freeChunks.get(sizeClass(size)).push(slice(slab, slab.position(), size));
+            slab.position(slab.position() + size);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + length);
+        view.position(offset);
+        return view.slice();
+    }
+
+    private static int sizeClass(int chunkSize) {
+        return Integer.numberOfTrailingZeros(chunkSize);
+    }
+
+    private static int chunkSize(int length) {
+        if (length <= MIN_CHUNK_SIZE) {
+            return MIN_CHUNK_SIZE;
+        }
+
+        int chunkSize = Integer.highestOneBit(length);
+        return (chunkSize == length) ? chunkSize : chunkSize << 1;
+    }
+
+    private static class HeldReference extends WeakReference<Object> {
+        private final OffHeapContent content;
+
+        HeldReference(final OffHeapContent content, final Object holder, final ReferenceQueue<Object> queue) {
+            super(holder, queue);
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.offheap;
+
+import io.netty.buffer.ByteBuf;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small on-heap handle on a cached content stored in an {@link OffHeapArena}.
+ *
+ * <p>The handle is reference counted: the cache owns one reference, and each response being replayed from the region
+ * holds another one. The region goes back to the arena as soon as the last reference is released. As the network
+ * writes the replayed chunks after the response is over, a response gives its reference back through
+ * {@link #releaseWhenUnreachable(Object)} once it has handed chunks over.</p>
+ *
+ * @author GraviteeSource Team
+ */
+public class OffHeapContent {
+
+    private final OffHeapArena arena;
+    private final ByteBuffer region;
+    private final int chunkSize;
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    OffHeapContent(final OffHeapArena arena, final ByteBuffer region, final int chunkSize) {
+        this.arena = arena;
+        this.region = region;
+        this.chunkSize = chunkSize;
+    }
+
+    public int length() {
+        return region.limit();
+    }
+
+    /**
+     * Read-only view over the region, to be used between {@link #retain()} and {@link #release()}.
+     */
+    public ByteBuffer view() {
+        return region.asReadOnlyBuffer();
+    }
+
+    /**
+     * Netty buffer over a part of the region, for the network to write it without copy. The buffer keeps the given
+     * holder reachable.
+     */
+    public ByteBuf wrap(int offset, int length, Object holder) {
+        ByteBuffer part = region.duplicate();
+        part.position(offset);
+        part.limit(offset + length);
+        return new HeldByteBuf(part.slice(), holder).asReadOnly();
+    }
+
+    public byte[] getBytes() {
+        byte[] bytes = new byte[length()];
+        view().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * @return <code>false</code> if the region has already been released.
+     */
+    public boolean retain() {
+        while (true) {
+            int current = references.get();
+            if (current == 0) {
+                return false;
+            }
+            if (references.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        while (true) {
+            int current = references.get();
+            if (current == 0) {
+                return;
+            }
+            if (references.compareAndSet(current, current - 1)) {
+                if (current == 1) {
+                    arena.free(region, chunkSize);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Release a reference once the given holder has been garbage collected, that is once the buffers wrapped for it
+     * are no longer referenced.
+     */
+    public void releaseWhenUnreachable(Object holder) {
+        arena.releaseWhenUnreachable(this, holder);
+    }
+
+    public boolean isReleased() {
+        return references.get() == 0;
+    }
+}
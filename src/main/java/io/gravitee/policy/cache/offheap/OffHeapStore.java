@@ -0,0 +1,143 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.offheap;
+
+import io.gravitee.policy.cache.CacheResponse;
+import io.gravitee.policy.cache.resource.NearCache;
+import io.gravitee.resource.cache.Cache;
+import io.gravitee.resource.cache.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Moves the content of cached responses to an {@link OffHeapArena} and gives the regions back once their element
+ * expired, has been evicted or replaced from the cache resource.
+ *
+ * <p>Cache resources do not notify about evictions: tracked elements are checked against the cache resource at most
+ * once per {@link #SWEEP_INTERVAL_MS}, and whenever the arena is full.</p>
+ *
+ * @author GraviteeSource Team
+ */
+public class OffHeapStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapStore.class);
+
+    static final long SWEEP_INTERVAL_MS = 1000;
+
+    private static final int SLAB_SIZE = 1024 * 1024;
+
+    private final OffHeapArena arena;
+    private final Map<Object, Tracked> tracked = new ConcurrentHashMap<>();
+    private volatile long lastSweep = System.currentTimeMillis();
+
+    public OffHeapStore(final long budget) {
+        this.arena = new OffHeapArena(budget, SLAB_SIZE);
+    }
+
+    /**
+     * Move the content of a response about to be put in cache off the heap.
+     *
+     * @param hardExpiry the instant (epoch millis) at which the element leaves the cache, 0 if it never expires.
+     * @return <code>false</code> if there is not enough off-heap memory left, the content is then kept on the heap.
+     */
+    public boolean store(Cache cache, Object key, CacheResponse response, long hardExpiry) {
+        long now = System.currentTimeMillis();
+        if (now - lastSweep >= SWEEP_INTERVAL_MS) {
+            sweep(cache, now);
+        }
+
+        OffHeapContent content = response.getOffHeapContent();
+        if (content == null) {
+            if (response.getContent() == null) {
+                return true;
+            }
+
+            byte[] bytes = response.getContent().getBytes();
+            content = arena.allocate(bytes);
+            if (content == null) {
+                sweep(cache, now);
+                content = arena.allocate(bytes);
+            }
+            if (content == null) {
+                LOGGER.debug("Off-heap budget of {} bytes exhausted, keeping content for key {} on heap", arena.budget(), key);
+                return false;
+            }
+
+            response.setOffHeapContent(content);
+            response.setContent(null);
+        }
+
+        Tracked previous = tracked.put(key, new Tracked(content, hardExpiry));
+        if (previous != null && previous.content != content) {
+            previous.content.release();
+        }
+
+        return true;
+    }
+
+    /**
+     * Release the content of an element explicitly evicted from the cache resource.
+     */
+    public void evict(Object key) {
+        Tracked previous = tracked.remove(key);
+        if (previous != null) {
+            previous.content.release();
+        }
+    }
+
+    public OffHeapArena arena() {
+        return arena;
+    }
+
+    void sweep(Cache cache, long now) {
+        lastSweep = now;
+
+        Iterator<Map.Entry<Object, Tracked>> ite = tracked.entrySet().iterator();
+        while (ite.hasNext()) {
+            Map.Entry<Object, Tracked> entry = ite.next();
+            Tracked element = entry.getValue();
+
+            if ((element.hardExpiry != 0 && now >= element.hardExpiry) || !isCached(cache, entry.getKey(), element)) {
+                if (tracked.remove(entry.getKey(), element)) {
+                    element.content.release();
+                }
+            }
+        }
+    }
+
+    private static boolean isCached(Cache cache, Object key, Tracked element) {
+        Element cached = NearCache.peek(cache, key);
+        if (cached == null || !(cached.value() instanceof CacheResponse)) {
+            return false;
+        }
+
+        return ((CacheResponse) cached.value()).getOffHeapContent() == element.content;
+    }
+
+    private static class Tracked {
+        private final OffHeapContent content;
+        private final long hardExpiry;
+
+        Tracked(final OffHeapContent content, final long hardExpiry) {
+            this.content = content;
+            this.hardExpiry = hardExpiry;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.prewarm;
+
+import io.gravitee.gateway.api.handler.Handler;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fills an empty cache by requesting a list of paths in background, with at most a given number of warm-up requests
+ * in flight and a given number of warm-up requests started per second.
+ *
+ * <p>A prewarmer is attached to its cache resource, so the paths are requested once for each cache resource: after a
+ * gateway start or an API redeployment.</p>
+ *
+ * <p>The prewarmer only paces the warm-up requests on a thread of its own: they are sent from the Vert.x context of the
+ * request which started the warm-up, as the endpoint invoker expects.</p>
+ *
+ * @author GraviteeSource Team
+ */
+public class CachePrewarmer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachePrewarmer.class);
+
+    // Time after which a warm-up request which did not complete gives its slot to the next one
+    static final long WARMUP_TIMEOUT_MILLIS = 30_000;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gio-policy-cache-prewarmer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ScheduledExecutorService scheduler;
+    private final int concurrency;
+    private final long intervalNanos;
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    // Guarded by this
+    private final Queue<String> pending = new ArrayDeque<>();
+    private Warmup warmup;
+    private Context context;
+    private int inFlight;
+    private int warmed;
+    private long nextSlot;
+    private boolean scheduled;
+    private boolean done;
+
+    public CachePrewarmer(final int concurrency, final int ratePerSecond) {
+        this(SCHEDULER, concurrency, ratePerSecond);
+    }
+
+    CachePrewarmer(final ScheduledExecutorService scheduler, final int concurrency, final int ratePerSecond) {
+        this.scheduler = scheduler;
+        this.concurrency = Math.max(concurrency, 1);
+        this.intervalNanos = (ratePerSecond > 0) ? TimeUnit.SECONDS.toNanos(1) / ratePerSecond : 0;
+        this.nextSlot = System.nanoTime();
+    }
+
+    /**
+     * Request the given paths, and those listed in the given file, in background. Only the first call starts the
+     * warm-up, the following ones are ignored.
+     *
+     * @param paths the paths to request.
+     * @param file a file listing the paths to request, one per line (blank lines and lines starting with
+     *             <code>#</code> are ignored). May be <code>null</code>.
+     * @param warmup the warm-up request, called for each path.
+     * @return <code>false</code> if the warm-up has already been started.
+     */
+    public boolean start(Collection<String> paths, String file, Warmup warmup) {
+        if (!started.compareAndSet(false, true)) {
+            return false;
+        }
+
+        Context context = Vertx.currentContext();
+        scheduler.execute(() -> {
+            Set<String> all = load(paths, file);
+            LOGGER.info("Warming up the cache with {} paths", all.size());
+
+            synchronized (this) {
+                this.pending.addAll(all);
+                this.warmup = warmup;
+                this.context = context;
+            }
+            dispatch();
+        });
+
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> once all the paths have been requested.
+     */
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    static Set<String> load(Collection<String> paths, String file) {
+        Set<String> all = new LinkedHashSet<>();
+        if (paths != null) {
+            paths.forEach(path -> add(all, path));
+        }
+
+        if (file != null && !file.isEmpty()) {
+            try {
+                List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+                lines.forEach(line -> add(all, line));
+            } catch (IOException ioe) {
+                LOGGER.warn("Unable to read the paths to warm the cache up from {}", file, ioe);
+            }
+        }
+
+        return all;
+    }
+
+    private static void add(Set<String> paths, String path) {
+        if (path != null) {
+            path = path.trim();
+            if (!path.isEmpty() && !path.startsWith("#")) {
+                paths.add(path);
+            }
+        }
+    }
+
+    private synchronized void dispatch() {
+        while (inFlight < concurrency && !pending.isEmpty()) {
+            long now = System.nanoTime();
+            if (now - nextSlot < 0) {
+                if (!scheduled) {
+                    scheduled = true;
+                    scheduler.schedule(this::dispatchLater, nextSlot - now, TimeUnit.NANOSECONDS);
+                }
+                return;
+            }
+
+            nextSlot = now + intervalNanos;
+            inFlight++;
+            String path = pending.poll();
+            Warmup current = warmup;
+            if (context != null) {
+                context.runOnContext(aVoid -> warm(current, path));
+            } else {
+                scheduler.execute(() -> warm(current, path));
+            }
+        }
+
+        if (inFlight == 0 && pending.isEmpty() && warmup != null) {
+            LOGGER.info("Cache warmed up with {} paths", warmed);
+            // Do not keep the context of the request which started the warm-up
+            warmup = null;
+            context = null;
+            done = true;
+        }
+    }
+
+    private void dispatchLater() {
+        synchronized (this) {
+            scheduled = false;
+        }
+        dispatch();
+    }
+
+    private void warm(Warmup current, String path) {
+        AtomicBoolean completed = new AtomicBoolean();
+        Handler<Void> release = aVoid -> {
+            if (completed.compareAndSet(false, true)) {
+                synchronized (this) {
+                    inFlight--;
+                    warmed++;
+                }
+                dispatch();
+            }
+        };
+
+        ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+            LOGGER.debug("Warm-up request for path {} did not complete in time", path);
+            release.handle(null);
+        }, WARMUP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+        try {
+            LOGGER.debug("Warming up the cache with path {}", path);
+            current.warm(path, aVoid -> {
+                timeout.cancel(false);
+                release.handle(null);
+            });
+        } catch (RuntimeException re) {
+            LOGGER.warn("Unable to warm the cache up with path {}", path, re);
+            timeout.cancel(false);
+            release.handle(null);
+        }
+    }
+
+    /**
+     * A warm-up request, going through the policy as a request for the given path would.
+     */
+    @FunctionalInterface
+    public interface Warmup {
+
+        /**
+         * @param path the path to request, relative to the context path of the API, with its query string if any.
+         * @param done the handler to call once the response has been consumed (or the request failed).
+         */
+        void warm(String path, Handler<Void> done);
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.prewarm;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.common.util.MultiValueMap;
+import io.gravitee.el.TemplateEngine;
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.gateway.api.Request;
+import io.gravitee.gateway.api.Response;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Execution context of a {@link WarmupRequest}. A warm-up request only gets the API of the request which started the
+ * warm-up, not its application, so that nothing is put in cache on behalf of the client of that request. A revalidation
+ * also gets the application and plan of the request it fetches again, so that its response is put in cache under the
+ * same key. Components are looked up from the context of the original request, which is otherwise left untouched: the
+ * background request may outlive it.
+ *
+ * @author GraviteeSource Team
+ */
+public class WarmupExecutionContext implements ExecutionContext {
+
+    // Attributes of the original request needed to reach the backend
+    private static final String[] INHERITED_ATTRIBUTES = {
+            ATTR_API, ATTR_CONTEXT_PATH
+    };
+
+    // Attributes of the original request also needed to put a revalidated response under the same key, at the same
+    // endpoint
+    private static final String[] REVALIDATION_ATTRIBUTES = {
+            ATTR_APPLICATION, ATTR_PLAN, ATTR_SUBSCRIPTION_ID, ATTR_REQUEST_ENDPOINT, ATTR_RESOLVED_PATH
+    };
+
+    private final ExecutionContext origin;
+    private final WarmupRequest request;
+    private final Map<String, Object> attributes = new HashMap<>();
+    private TemplateEngine templateEngine;
+
+    public WarmupExecutionContext(final ExecutionContext origin, final String target,
+                                  final Collection<String> allowedHeaders) {
+        this(origin, new WarmupRequest(origin.request(), target, allowedHeaders));
+    }
+
+    private WarmupExecutionContext(final ExecutionContext origin, final WarmupRequest request, final String... attributes) {
+        this.origin = origin;
+        this.request = request;
+
+        inherit(origin, INHERITED_ATTRIBUTES);
+        inherit(origin, attributes);
+    }
+
+    /**
+     * Context of a background request fetching again the response of the given request, detached from it.
+     */
+    public static WarmupExecutionContext revalidation(final ExecutionContext origin) {
+        Request request = origin.request();
+        String uri = request.uri();
+        int queryStart = (uri == null) ? -1 : uri.indexOf('?');
+        String path = (request.pathInfo() != null) ? request.pathInfo() : request.path();
+        String target = (queryStart == -1) ? path : path + uri.substring(queryStart);
+
+        return new WarmupExecutionContext(origin, new WarmupRequest(request, target, request.method()), REVALIDATION_ATTRIBUTES);
+    }
+
+    private void inherit(ExecutionContext origin, String[] inherited) {
+        for (String attribute : inherited) {
+            Object value = origin.getAttribute(attribute);
+            if (value != null) {
+                attributes.put(attribute, value);
+            }
+        }
+    }
+
+    @Override
+    public Request request() {
+        return request;
+    }
+
+    @Override
+    public Response response() {
+        // Nobody is waiting for the response of a background request
+        return null;
+    }
+
+    @Override
+    public <T> T getComponent(Class<T> componentClass) {
+        return origin.getComponent(componentClass);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * A template engine of its own, the key of the policy being evaluated against the warm-up request.
+     */
+    @Override
+    public TemplateEngine getTemplateEngine() {
+        if (templateEngine == null) {
+            templateEngine = TemplateEngine.templateEngine();
+            templateEngine.getTemplateContext().setVariable("request", new EvaluableRequest(request));
+            templateEngine.getTemplateContext().setVariable("context", new EvaluableContext(attributes));
+        }
+        return templateEngine;
+    }
+
+    /**
+     * Bean view of the warm-up request, exposing the same properties as the request of the gateway does.
+     */
+    public static class EvaluableRequest {
+        private final Request request;
+
+        EvaluableRequest(final Request request) {
+            this.request = request;
+        }
+
+        public String getId() {
+            return request.id();
+        }
+
+        public String getTransactionId() {
+            return request.transactionId();
+        }
+
+        public String getUri() {
+            return request.uri();
+        }
+
+        public String getPath() {
+            return request.path();
+        }
+
+        public String getPathInfo() {
+            return request.pathInfo();
+        }
+
+        public String getContextPath() {
+            return request.contextPath();
+        }
+
+        public MultiValueMap<String, String> getParams() {
+            return request.parameters();
+        }
+
+        public HttpHeaders getHeaders() {
+            return request.headers();
+        }
+
+        public String getMethod() {
+            return request.rawMethod();
+        }
+
+        public String getScheme() {
+            return request.scheme();
+        }
+
+        public long getTimestamp() {
+            return request.timestamp();
+        }
+
+        public String getRemoteAddress() {
+            return request.remoteAddress();
+        }
+
+        public String getLocalAddress() {
+            return request.localAddress();
+        }
+    }
+
+    /**
+     * Bean view of the attributes of the warm-up request, without their prefix.
+     */
+    public static class EvaluableContext {
+        private final Map<String, Object> attributes;
+
+        EvaluableContext(final Map<String, Object> attributes) {
+            this.attributes = attributes;
+        }
+
+        public Map<String, Object> getAttributes() {
+            Map<String, Object> evaluable = new HashMap<>();
+            attributes.forEach((name, value) -> evaluable.put(name.startsWith(ATTR_PREFIX)
+                    ? name.substring(ATTR_PREFIX.length()) : name, value));
+            return evaluable;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.prewarm;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.common.http.HttpMethod;
+import io.gravitee.common.http.HttpVersion;
+import io.gravitee.common.util.LinkedMultiValueMap;
+import io.gravitee.common.util.MultiValueMap;
+import io.gravitee.gateway.api.Request;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.handler.Handler;
+import io.gravitee.gateway.api.stream.ReadStream;
+import io.gravitee.reporter.api.http.Metrics;
+
+import javax.net.ssl.SSLSession;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Request made by the policy in background, to warm the cache up or to revalidate a cached element, for a path of the
+ * API the request which started it belongs to. A revalidation gets the headers of that request, except those making it
+ * conditional or carrying a body, while a warm-up request only gets the headers it is allowed to.
+ *
+ * @author GraviteeSource Team
+ */
+public class WarmupRequest implements Request {
+
+    // Headers of the original request not sent with warm-up requests
+    private static final List<String> EXCLUDED_HEADERS = Arrays.asList(
+            HttpHeaders.CONTENT_LENGTH, HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_ENCODING,
+            HttpHeaders.TRANSFER_ENCODING, HttpHeaders.IF_MATCH, HttpHeaders.IF_NONE_MATCH,
+            HttpHeaders.IF_MODIFIED_SINCE, HttpHeaders.IF_UNMODIFIED_SINCE, "If-Range", "Range",
+            HttpHeaders.CACHE_CONTROL, HttpHeaders.PRAGMA);
+
+    private final Request origin;
+    private final String id = UUID.randomUUID().toString();
+    private final long timestamp = System.currentTimeMillis();
+    private final HttpMethod method;
+    private final String contextPath;
+    private final String pathInfo;
+    private final String query;
+    private final MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+    private final HttpHeaders headers = new HttpHeaders();
+    private final Metrics metrics;
+
+    /**
+     * @param origin the request which started the warm-up.
+     * @param target the path to request, relative to the context path of the API, with its query string if any.
+     * @param allowedHeaders the headers of the original request to send, any other one (credentials, cookies, ...)
+     *                       being left out.
+     */
+    public WarmupRequest(final Request origin, final String target, final Collection<String> allowedHeaders) {
+        this(origin, target, HttpMethod.GET,
+                name -> allowedHeaders != null && allowedHeaders.stream().anyMatch(name::equalsIgnoreCase));
+    }
+
+    public WarmupRequest(final Request origin, final String target, final HttpMethod method) {
+        this(origin, target, method, name -> true);
+    }
+
+    private WarmupRequest(final Request origin, final String target, final HttpMethod method,
+                          final Predicate<String> allowed) {
+        this.origin = origin;
+        this.method = method;
+        this.contextPath = contextPath(origin);
+
+        int queryStart = target.indexOf('?');
+        String path = (queryStart == -1) ? target : target.substring(0, queryStart);
+        this.pathInfo = path.startsWith("/") ? path : '/' + path;
+        this.query = (queryStart == -1) ? null : target.substring(queryStart + 1);
+        parseQuery(query, parameters);
+
+        origin.headers().forEach((name, values) -> {
+            if (allowed.test(name) && EXCLUDED_HEADERS.stream().noneMatch(name::equalsIgnoreCase)) {
+                headers.put(name, values);
+            }
+        });
+
+        this.metrics = Metrics.on(timestamp).build();
+        metrics.setRequestId(id);
+        metrics.setTransactionId(id);
+    }
+
+    /**
+     * The context path of the API, without its trailing slash.
+     */
+    private static String contextPath(Request origin) {
+        String path = origin.path();
+        String pathInfo = origin.pathInfo();
+        String contextPath = (path != null && pathInfo != null && path.endsWith(pathInfo))
+                ? path.substring(0, path.length() - pathInfo.length()) : origin.contextPath();
+
+        if (contextPath == null) {
+            return "";
+        }
+        return contextPath.endsWith("/") ? contextPath.substring(0, contextPath.length() - 1) : contextPath;
+    }
+
+    private static void parseQuery(String query, MultiValueMap<String, String> parameters) {
+        if (query == null || query.isEmpty()) {
+            return;
+        }
+
+        for (String parameter : query.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int separator = parameter.indexOf('=');
+            String name = (separator == -1) ? parameter : parameter.substring(0, separator);
+            String value = (separator == -1) ? "" : parameter.substring(separator + 1);
+            parameters.add(decode(name), decode(value));
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public String transactionId() {
+        return id;
+    }
+
+    @Override
+    public String uri() {
+        return (query == null) ? path() : path() + '?' + query;
+    }
+
+    @Override
+    public String path() {
+        return contextPath + pathInfo;
+    }
+
+    @Override
+    public String pathInfo() {
+        return pathInfo;
+    }
+
+    @Override
+    public String contextPath() {
+        return origin.contextPath();
+    }
+
+    @Override
+    public MultiValueMap<String, String> parameters() {
+        return parameters;
+    }
+
+    @Override
+    public HttpHeaders headers() {
+        return headers;
+    }
+
+    @Override
+    public HttpMethod method() {
+        return method;
+    }
+
+    @Override
+    public String rawMethod() {
+        return method.name();
+    }
+
+    @Override
+    public String scheme() {
+        return origin.scheme();
+    }
+
+    @Override
+    public HttpVersion version() {
+        return origin.version();
+    }
+
+    @Override
+    public long timestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String remoteAddress() {
+        // Background requests are made by the gateway itself
+        return origin.localAddress();
+    }
+
+    @Override
+    public String localAddress() {
+        return origin.localAddress();
+    }
+
+    @Override
+    public SSLSession sslSession() {
+        return null;
+    }
+
+    @Override
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public boolean ended() {
+        return true;
+    }
+
+    @Override
+    public ReadStream<Buffer> bodyHandler(Handler<Buffer> bodyHandler) {
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+        endHandler.handle(null);
+        return this;
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.proxy;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.handler.Handler;
+import io.gravitee.gateway.api.stream.ReadStream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Request body read by the policy before the backend is called: the chunks received until then are held (not copied)
+ * and replayed once the backend invoker plugs its end handler, the following chunks being passed through.
+ *
+ * @author GraviteeSource Team
+ */
+public class BufferedReadStream implements ReadStream<Buffer> {
+
+    private List<Buffer> chunks = new ArrayList<>();
+    private boolean ended;
+    private Handler<Buffer> bodyHandler;
+    private Handler<Void> endHandler;
+
+    /**
+     * Hand a chunk of the request body, either held or passed through.
+     */
+    public void write(Buffer chunk) {
+        if (chunks != null) {
+            chunks.add(chunk);
+        } else if (bodyHandler != null) {
+            bodyHandler.handle(chunk);
+        }
+    }
+
+    public void end() {
+        ended = true;
+        if (chunks == null && endHandler != null) {
+            endHandler.handle(null);
+        }
+    }
+
+    /**
+     * Drop the chunks held so far, when the request is answered without its body. The end of the stream is still
+     * signaled.
+     */
+    public void discard() {
+        if (chunks != null) {
+            chunks.clear();
+        }
+    }
+
+    @Override
+    public ReadStream<Buffer> bodyHandler(Handler<Buffer> bodyHandler) {
+        this.bodyHandler = bodyHandler;
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+
+        List<Buffer> held = chunks;
+        if (held != null) {
+            chunks = null;
+            if (bodyHandler != null) {
+                held.forEach(bodyHandler::handle);
+            }
+            if (ended) {
+                endHandler.handle(null);
+            }
+        }
+        return this;
+    }
+}
@@ -16,12 +16,22 @@
 package io.gravitee.policy.cache.proxy;
 
 import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.common.http.HttpStatusCode;
 import io.gravitee.gateway.api.buffer.Buffer;
 import io.gravitee.gateway.api.handler.Handler;
 import io.gravitee.gateway.api.proxy.ProxyConnection;
 import io.gravitee.gateway.api.proxy.ProxyResponse;
 import io.gravitee.gateway.api.stream.ReadStream;
 import io.gravitee.policy.cache.CacheResponse;
+import io.gravitee.policy.cache.disk.DiskReader;
+import io.gravitee.policy.cache.offheap.OffHeapContent;
+import io.gravitee.policy.cache.util.Blocking;
+import io.gravitee.policy.cache.util.CompressionUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
 
 /**
  * @author David BRASSELY (david.brassely at graviteesource.com)
@@ -29,11 +39,34 @@ import io.gravitee.policy.cache.CacheResponse;
  */
 public class CacheProxyConnection implements ProxyConnection {
 
+    // Size of the chunks in which the cached content is replayed to the client
+    static final int CHUNK_SIZE = 64 * 1024;
+
     private Handler<ProxyResponse> proxyResponseHandler;
-    private final CacheResponse response;
+    private final String acceptEncoding;
+    private final CacheProxyResponse proxyResponse;
+    private boolean handedOver;
 
     public CacheProxyConnection(final CacheResponse response) {
-        this.response = response;
+        this(response, null);
+    }
+
+    /**
+     * @param acceptEncoding the <code>Accept-Encoding</code> header of the client: a compressed content is sent as is
+     *                       to the clients accepting its encoding, and decompressed for the others.
+     */
+    public CacheProxyConnection(final CacheResponse response, final String acceptEncoding) {
+        this.acceptEncoding = acceptEncoding;
+        // The cache may give the off-heap or disk content back at any time, it is held from now on
+        this.proxyResponse = new CacheProxyResponse(response);
+    }
+
+    /**
+     * Whether the content is still available, the cache may have given it back since the response has been looked
+     * up. The connection must not be used otherwise.
+     */
+    public boolean isContentAvailable() {
+        return !proxyResponse.released;
     }
 
     @Override
@@ -43,7 +76,27 @@ public class CacheProxyConnection implements ProxyConnection {
 
     @Override
     public void end() {
-        proxyResponseHandler.handle(new CacheProxyResponse(response));
+        handedOver = true;
+        if (proxyResponse.encoding == null) {
+            proxyResponseHandler.handle(proxyResponse);
+            return;
+        }
+
+        Blocking.execute(proxyResponse::decode, aVoid -> proxyResponseHandler.handle(proxyResponse), throwable -> {
+            proxyResponse.discard();
+            proxyResponseHandler.handle(proxyResponse);
+        });
+    }
+
+    /**
+     * Give the held content back, when the response is not to be sent after all.
+     */
+    @Override
+    public ProxyConnection cancel() {
+        if (!handedOver) {
+            proxyResponse.release();
+        }
+        return this;
     }
 
     @Override
@@ -52,24 +105,111 @@ public class CacheProxyConnection implements ProxyConnection {
         return this;
     }
 
+    /**
+     * Replays the cached content as a stream of {@link #CHUNK_SIZE} chunks, stopping as soon as the stream is paused
+     * (ie. the client write queue is full) and going on once resumed: the memory held for a slow client is bounded by
+     * the chunk size, whatever the size of the content.
+     */
     class CacheProxyResponse implements ProxyResponse {
         private Handler<Buffer> bodyHandler;
         private Handler<Void> endHandler;
 
         private final CacheResponse cacheResponse;
+        private HttpHeaders headers;
+
+        // View over the content to replay, wherever it is stored
+        private ByteBuffer content;
+        // Off-heap or disk content retained until sent to the client
+        private OffHeapContent offHeapContent;
+        private DiskReader diskReader;
+        // Referenced by the chunks wrapping the off-heap content, which is retained until they are all unreachable
+        private Object holder;
+        private boolean released;
+        // Encoding of the content to decode before replaying it, if any
+        private String encoding;
+
+        private boolean paused;
+        private boolean replaying;
+        private boolean ended;
 
         CacheProxyResponse(final CacheResponse cacheResponse) {
             this.cacheResponse = cacheResponse;
+
+            // The cache may have given the off-heap or disk content back since the lookup
+            OffHeapContent offHeapContent = cacheResponse.getOffHeapContent();
+            if (offHeapContent != null) {
+                this.released = !offHeapContent.retain();
+                if (!released) {
+                    this.offHeapContent = offHeapContent;
+                    this.content = offHeapContent.view();
+                }
+            } else if (cacheResponse.getDiskContent() != null) {
+                this.diskReader = cacheResponse.getDiskContent().open();
+                this.released = diskReader == null;
+                if (!released) {
+                    this.content = diskReader.view();
+                }
+            } else {
+                this.content = cacheResponse.contentView();
+                this.released = false;
+            }
+
+            String contentEncoding = cacheResponse.getContentEncoding();
+            if (released) {
+                this.headers = new HttpHeaders();
+            } else if (contentEncoding == null || content == null) {
+                this.headers = cacheResponse.getHeaders();
+            } else if (CompressionUtil.accepts(acceptEncoding, contentEncoding)) {
+                this.headers = new HttpHeaders(cacheResponse.getHeaders());
+                this.headers.set(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+                this.headers.set(HttpHeaders.CONTENT_LENGTH, Integer.toString(content.remaining()));
+                this.headers.remove(HttpHeaders.TRANSFER_ENCODING);
+
+                // Not the same bytes as the representation the backend has tagged
+                String etag = this.headers.getFirst(HttpHeaders.ETAG);
+                if (etag != null && !etag.startsWith("W/")) {
+                    this.headers.set(HttpHeaders.ETAG, "W/" + etag);
+                }
+                varyOnAcceptEncoding(headers);
+            } else {
+                // Decoded by decode(), before the response is handed over
+                this.encoding = contentEncoding;
+                this.headers = new HttpHeaders(cacheResponse.getHeaders());
+                varyOnAcceptEncoding(headers);
+            }
+        }
+
+        /**
+         * Decompress the content for a client not accepting its encoding.
+         */
+        Void decode() {
+            byte[] compressed = new byte[content.remaining()];
+            content.get(compressed);
+            release();
+
+            this.content = ByteBuffer.wrap(CompressionUtil.decompress(compressed, encoding));
+            this.encoding = null;
+            return null;
+        }
+
+        /**
+         * Give up on a content which can not be replayed.
+         */
+        void discard() {
+            release();
+            this.released = true;
+            this.headers = new HttpHeaders();
         }
 
         @Override
         public int status() {
-            return cacheResponse.getStatus();
+            // The content could not be decoded
+            return (released) ? HttpStatusCode.SERVICE_UNAVAILABLE_503 : cacheResponse.getStatus();
         }
 
         @Override
         public HttpHeaders headers() {
-            return cacheResponse.getHeaders();
+            return headers;
         }
 
         @Override
@@ -84,14 +224,94 @@ public class CacheProxyConnection implements ProxyConnection {
             return this;
         }
 
+        @Override
+        public ReadStream<Buffer> pause() {
+            paused = true;
+            return this;
+        }
+
         @Override
         public ReadStream<Buffer> resume() {
-            if (cacheResponse.getContent() != null) {
-                bodyHandler.handle(cacheResponse.getContent());
+            paused = false;
+
+            // Resumed from the body handler, the replay loop goes on by itself
+            if (replaying || ended) {
+                return this;
+            }
+
+            replaying = true;
+            try {
+                while (!paused && content != null && content.hasRemaining()) {
+                    bodyHandler.handle(nextChunk());
+                }
+            } catch (RuntimeException ex) {
+                release();
+                throw ex;
+            } finally {
+                replaying = false;
+            }
+
+            if (!paused) {
+                ended = true;
+                release();
+                endHandler.handle(null);
             }
 
-            endHandler.handle(null);
             return this;
         }
+
+        private Buffer nextChunk() {
+            int length = Math.min(CHUNK_SIZE, content.remaining());
+
+            // Disk segments are filled again once closed, while the network may still write the chunks
+            if (diskReader != null) {
+                byte[] chunk = new byte[length];
+                content.get(chunk);
+                return Buffer.buffer(chunk);
+            }
+
+            ByteBuffer view = content.slice();
+            view.limit(length);
+
+            ByteBuf nativeBuffer;
+            if (offHeapContent != null) {
+                if (holder == null) {
+                    holder = new Object();
+                }
+                nativeBuffer = offHeapContent.wrap(content.position(), length, holder);
+            } else {
+                nativeBuffer = Unpooled.wrappedBuffer(view);
+            }
+
+            content.position(content.position() + length);
+            return new ContentChunk(view, nativeBuffer);
+        }
+
+        /**
+         * Shared caches downstream have to keep apart the compressed and the identity representations.
+         */
+        private void varyOnAcceptEncoding(HttpHeaders headers) {
+            String vary = headers.getFirst(HttpHeaders.VARY);
+            if (vary == null || !vary.toLowerCase(Locale.ENGLISH).contains(HttpHeaders.ACCEPT_ENCODING.toLowerCase(Locale.ENGLISH))) {
+                headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+        }
+
+        private void release() {
+            content = null;
+            if (offHeapContent != null) {
+                if (holder != null) {
+                    offHeapContent.releaseWhenUnreachable(holder);
+                    holder = null;
+                } else {
+                    offHeapContent.release();
+                }
+                offHeapContent = null;
+            }
+            if (diskReader != null) {
+                diskReader.close();
+                diskReader = null;
+            }
+        }
     }
-}
\ No newline at end of file
+}
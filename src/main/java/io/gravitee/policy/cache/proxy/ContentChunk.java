@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.proxy;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.netty.buffer.ByteBuf;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Chunk of a cached content replayed to the client, a view over the stored bytes: its native Netty buffer is written
+ * to the network without copying them. The bytes are only copied if the chunk is read as a whole or appended to.
+ *
+ * @author GraviteeSource Team
+ */
+class ContentChunk implements Buffer {
+
+    // Read-only view over the bytes of the chunk
+    private final ByteBuffer view;
+    private final ByteBuf nativeBuffer;
+
+    // Copy of the bytes, once the chunk has been appended to
+    private Buffer copy;
+
+    ContentChunk(final ByteBuffer view, final ByteBuf nativeBuffer) {
+        this.view = view;
+        this.nativeBuffer = nativeBuffer;
+    }
+
+    @Override
+    public Buffer appendBuffer(Buffer buffer) {
+        return copy().appendBuffer(buffer);
+    }
+
+    @Override
+    public Buffer appendBuffer(Buffer buffer, int length) {
+        return copy().appendBuffer(buffer, length);
+    }
+
+    @Override
+    public Buffer appendString(String str, String enc) {
+        return copy().appendString(str, enc);
+    }
+
+    @Override
+    public Buffer appendString(String str) {
+        return copy().appendString(str);
+    }
+
+    @Override
+    public String toString() {
+        return (copy != null) ? copy.toString() : toString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString(String enc) {
+        return (copy != null) ? copy.toString(enc) : toString(Charset.forName(enc));
+    }
+
+    @Override
+    public String toString(Charset enc) {
+        return (copy != null) ? copy.toString(enc) : enc.decode(view.duplicate()).toString();
+    }
+
+    @Override
+    public byte[] getBytes() {
+        if (copy != null) {
+            return copy.getBytes();
+        }
+
+        byte[] bytes = new byte[view.remaining()];
+        view.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public int length() {
+        return (copy != null) ? copy.length() : view.remaining();
+    }
+
+    @Override
+    public Object getNativeBuffer() {
+        return (copy != null) ? copy.getNativeBuffer() : nativeBuffer;
+    }
+
+    private Buffer copy() {
+        if (copy == null) {
+            copy = Buffer.buffer(getBytes());
+        }
+        return copy;
+    }
+}
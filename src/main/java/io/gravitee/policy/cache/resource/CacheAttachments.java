@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.resource;
+
+import io.gravitee.resource.cache.Cache;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * State shared by all the policy instances using the same cache resource (a new policy instance is created for each
+ * request). The state follows the lifecycle of the cache: it is dropped once the cache resource has been stopped and
+ * garbage collected, when the policy next looks up attachments.
+ *
+ * <p>Lookups do not lock: the attachments are kept in a concurrent map, keyed by a weak reference to their cache.
+ * Attachments which are {@link Releasable} are told when they are dropped.</p>
+ *
+ * <p>Attachments must not hold a reference to the cache they are attached to. State attached to a {@link NearCache} is
+ * attached to its cache resource.</p>
+ *
+ * @author GraviteeSource Team
+ */
+public final class CacheAttachments {
+
+    private static final ConcurrentMap<Key, Map<Class<?>, Object>> ATTACHMENTS = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Cache> RELEASED = new ReferenceQueue<>();
+
+    private CacheAttachments() {}
+
+    @SuppressWarnings("unchecked")
+    public static <T> T get(Cache cache, Class<T> type, Supplier<T> factory) {
+        Cache owner = owner(cache);
+        Map<Class<?>, Object> attachments = ATTACHMENTS.get(new Lookup(owner));
+        if (attachments == null) {
+            reclaim();
+            attachments = ATTACHMENTS.computeIfAbsent(new CacheReference(owner, RELEASED), c -> new ConcurrentHashMap<>());
+        }
+
+        Object attachment = attachments.get(type);
+        return (T) ((attachment != null) ? attachment : attachments.computeIfAbsent(type, t -> factory.get()));
+    }
+
+    public static <T> T get(Cache cache, Class<T> type) {
+        Map<Class<?>, Object> attachments = ATTACHMENTS.get(new Lookup(owner(cache)));
+        return (attachments != null) ? type.cast(attachments.get(type)) : null;
+    }
+
+    /**
+     * Drop the attachments of the caches which have been garbage collected.
+     */
+    static void reclaim() {
+        Reference<? extends Cache> reference;
+        while ((reference = RELEASED.poll()) != null) {
+            Map<Class<?>, Object> attachments = ATTACHMENTS.remove(reference);
+            if (attachments != null) {
+                attachments.values().stream()
+                        .filter(Releasable.class::isInstance)
+                        .forEach(attachment -> ((Releasable) attachment).release());
+            }
+        }
+    }
+
+    /**
+     * An attachment holding state outside of its cache, to be released with it.
+     */
+    public interface Releasable {
+
+        /**
+         * Called once the cache the attachment belongs to has been garbage collected.
+         */
+        void release();
+    }
+
+    private static Cache owner(Cache cache) {
+        return (cache instanceof NearCache) ? ((NearCache) cache).getDelegate() : cache;
+    }
+
+    /**
+     * A cache, compared by identity.
+     */
+    private interface Key {
+        Cache cache();
+    }
+
+    private static boolean equals(Key key, Object other) {
+        if (key == other) {
+            return true;
+        }
+        Cache cache = key.cache();
+        return cache != null && other instanceof Key && cache == ((Key) other).cache();
+    }
+
+    private static final class Lookup implements Key {
+        private final Cache cache;
+
+        Lookup(final Cache cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public Cache cache() {
+            return cache;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(cache);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return CacheAttachments.equals(this, other);
+        }
+    }
+
+    private static final class CacheReference extends WeakReference<Cache> implements Key {
+        private final int hashCode;
+
+        CacheReference(final Cache cache, final ReferenceQueue<Cache> queue) {
+            super(cache, queue);
+            this.hashCode = System.identityHashCode(cache);
+        }
+
+        @Override
+        public Cache cache() {
+            return get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return CacheAttachments.equals(this, other);
+        }
+    }
+}
@@ -18,11 +18,15 @@ package io.gravitee.policy.cache.resource;
 import io.gravitee.policy.cache.CacheResponse;
 import io.gravitee.resource.cache.Element;
 
+import java.io.Serializable;
+
 /**
  * @author David BRASSELY (david.brassely at graviteesource.com)
  * @author GraviteeSource Team
  */
-public class CacheElement implements Element {
+public class CacheElement implements Element, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final String key;
 
@@ -30,6 +34,8 @@ public class CacheElement implements Element {
 
     private int timeToLive = 0;
 
+    private int staleTimeToLive = 0;
+
     public CacheElement(String key, CacheResponse response) {
         this.key = key;
         this.response = response;
@@ -43,6 +49,31 @@ public class CacheElement implements Element {
         this.timeToLive = timeToLive;
     }
 
+    public int getStaleTimeToLive() {
+        return staleTimeToLive;
+    }
+
+    /**
+     * Time during which the element is kept in cache after its soft expiry, to be served while stale.
+     */
+    public void setStaleTimeToLive(int staleTimeToLive) {
+        this.staleTimeToLive = staleTimeToLive;
+    }
+
+    /**
+     * The soft expiry of the element: once passed, the element is stale and must be revalidated.
+     */
+    public long getSoftExpiry() {
+        return response.getExpiresAt();
+    }
+
+    /**
+     * The hard expiry of the element: once passed, the element is removed from the cache.
+     */
+    public long getHardExpiry() {
+        return (timeToLive == 0) ? 0 : response.getExpiresAt() + staleTimeToLive * 1000L;
+    }
+
     @Override
     public Object key() {
         return key;
@@ -55,6 +86,6 @@ public class CacheElement implements Element {
 
     @Override
     public int timeToLive() {
-        return timeToLive;
+        return (timeToLive == 0) ? 0 : timeToLive + staleTimeToLive;
     }
 }
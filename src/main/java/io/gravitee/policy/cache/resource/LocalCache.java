@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.resource;
+
+import io.gravitee.policy.cache.CacheResponse;
+import io.gravitee.resource.cache.Element;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process tier of a {@link NearCache}, bounded in number of elements and in content size. Elements are kept for a
+ * short time only and the oldest ones are evicted first when a bound is reached.
+ *
+ * @author GraviteeSource Team
+ */
+public class LocalCache {
+
+    // Queue length under which dead entries are not pruned
+    private static final int MIN_PRUNED_QUEUE = 64;
+
+    private final int maxEntries;
+    private final long maxSize;
+    private final long timeToLive;
+
+    private final Map<Object, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * @param timeToLive time to live of the elements (in milliseconds).
+     */
+    public LocalCache(final int maxEntries, final long maxSize, final long timeToLive) {
+        this.maxEntries = maxEntries;
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+    }
+
+    public Element get(Object key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (System.currentTimeMillis() >= entry.expiresAt) {
+            remove(key, entry);
+            return null;
+        }
+
+        return entry.element;
+    }
+
+    public void put(Element element) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + timeToLive;
+        if (element instanceof CacheElement) {
+            long hardExpiry = ((CacheElement) element).getHardExpiry();
+            if (hardExpiry != 0) {
+                expiresAt = Math.min(expiresAt, hardExpiry);
+            }
+        }
+
+        long weight = weight(element);
+        if (expiresAt <= now || weight > maxSize) {
+            evict(element.key());
+            return;
+        }
+
+        Entry entry = new Entry(element, weight, expiresAt);
+        Entry previous = entries.put(element.key(), entry);
+        if (previous != null) {
+            release(previous);
+        }
+
+        count.incrementAndGet();
+        size.addAndGet(weight);
+        insertionOrder.offer(entry);
+        queued.incrementAndGet();
+
+        // Drop the replaced or expired elements, then the oldest ones while a bound is exceeded
+        Entry oldest;
+        while ((oldest = insertionOrder.peek()) != null && (count.get() > maxEntries || size.get() > maxSize
+                || now >= oldest.expiresAt || entries.get(oldest.element.key()) != oldest)) {
+            if (insertionOrder.remove(oldest)) {
+                queued.decrementAndGet();
+                remove(oldest.element.key(), oldest);
+            }
+        }
+
+        // Replaced, evicted or expired elements stay queued behind a long-lived oldest one: prune them once they
+        // outnumber the live ones
+        if (queued.get() > 2 * Math.max(count.get(), MIN_PRUNED_QUEUE)) {
+            prune();
+        }
+    }
+
+    public void evict(Object key) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            release(previous);
+        }
+    }
+
+    public void clear() {
+        entries.keySet().forEach(this::evict);
+    }
+
+    public int size() {
+        return count.get();
+    }
+
+    int queued() {
+        return queued.get();
+    }
+
+    private void prune() {
+        insertionOrder.removeIf(entry -> {
+            if (entries.get(entry.element.key()) == entry) {
+                return false;
+            }
+            queued.decrementAndGet();
+            return true;
+        });
+    }
+
+    private void remove(Object key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            release(entry);
+        }
+    }
+
+    private void release(Entry entry) {
+        count.decrementAndGet();
+        size.addAndGet(-entry.weight);
+    }
+
+    private static long weight(Element element) {
+        Object value = element.value();
+        return (value instanceof CacheResponse) ? ((CacheResponse) value).getContentLength() : 0;
+    }
+
+    private static class Entry {
+        private final Element element;
+        private final long weight;
+        private final long expiresAt;
+
+        Entry(final Element element, final long weight, final long expiresAt) {
+            this.element = element;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.resource;
+
+import io.gravitee.resource.cache.Cache;
+import io.gravitee.resource.cache.Element;
+
+/**
+ * Two-tier cache: elements are looked up in an in-process {@link LocalCache} before the cache resource, which may be
+ * remote. The local tier is filled on both puts and cache resource hits.
+ *
+ * <p>Elements refreshed or evicted from the cache resource by another gateway remain in the local tier until they
+ * expire from it, so its time to live should be kept short.</p>
+ *
+ * @author GraviteeSource Team
+ */
+public class NearCache implements Cache {
+
+    private final LocalCache local;
+    private final Cache delegate;
+
+    public NearCache(final LocalCache local, final Cache delegate) {
+        this.local = local;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public Element get(Object key) {
+        Element element = local.get(key);
+        if (element != null) {
+            return element;
+        }
+
+        element = delegate.get(key);
+        if (element != null) {
+            local.put(element);
+        }
+
+        return element;
+    }
+
+    /**
+     * Look an element up in either tier, without filling the local tier on a cache resource hit. Used to check whether
+     * a content is still referenced by the cache, which must not move elements around.
+     */
+    public Element peek(Object key) {
+        Element element = local.get(key);
+        return (element != null) ? element : delegate.get(key);
+    }
+
+    /**
+     * Look an element up in the given cache, through {@link #peek(Object)} when it is a near cache.
+     */
+    public static Element peek(Cache cache, Object key) {
+        return (cache instanceof NearCache) ? ((NearCache) cache).peek(key) : cache.get(key);
+    }
+
+    @Override
+    public void put(Element element) {
+        delegate.put(element);
+        local.put(element);
+    }
+
+    @Override
+    public void evict(Object key) {
+        local.evict(key);
+        delegate.evict(key);
+    }
+
+    @Override
+    public void clear() {
+        local.clear();
+        delegate.clear();
+    }
+
+    /**
+     * The cache resource backing this cache.
+     */
+    public Cache getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.resource;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Index of the keys of the cached elements by the path of their request, to purge all the elements under a path
+ * without going through the whole cache. Each key is indexed with a single tag: its path.
+ *
+ * <p>Paths are purged with a pattern: <code>*</code> matches any character but <code>/</code>, <code>**</code> matches
+ * any character, and a trailing <code>*</code> matches any character too, so that <code>/v2/catalog/*</code> purges
+ * everything under <code>/v2/catalog/</code>. A pattern without wildcard purges its own path only.</p>
+ *
+ * @author GraviteeSource Team
+ */
+public class PathIndex extends TagIndex {
+
+    public PathIndex(final int maxKeys) {
+        super(maxKeys);
+    }
+
+    /**
+     * Index the element put in cache under the given key with the path of its request.
+     *
+     * @return the keys dropped from the index to keep it bounded, whose elements must be evicted from the cache.
+     */
+    public List<String> index(String key, String path, long hardExpiry) {
+        return index(key, Collections.singleton(path), hardExpiry);
+    }
+
+    /**
+     * Drop the keys whose path matches the given pattern from the index.
+     *
+     * @return the dropped keys, whose elements must be evicted from the cache.
+     */
+    public Set<String> purge(String pattern) {
+        int wildcard = pattern.indexOf('*');
+        if (wildcard == -1) {
+            return purge(pattern, pattern::equals);
+        }
+
+        // Only the paths starting with the literal part of the pattern are matched against it
+        String prefix = pattern.substring(0, wildcard);
+        if (wildcard == pattern.length() - 1) {
+            return purge(prefix, path -> true);
+        }
+
+        Pattern glob = compile(pattern);
+        return purge(prefix, path -> glob.matcher(path).matches());
+    }
+
+    static Pattern compile(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        int literal = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            if (pattern.charAt(i) != '*') {
+                continue;
+            }
+
+            if (i > literal) {
+                regex.append(Pattern.quote(pattern.substring(literal, i)));
+            }
+            if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '*') {
+                regex.append(".*");
+                i++;
+            } else {
+                regex.append((i == pattern.length() - 1) ? ".*" : "[^/]*");
+            }
+            literal = i + 1;
+        }
+        if (literal < pattern.length()) {
+            regex.append(Pattern.quote(pattern.substring(literal)));
+        }
+
+        return Pattern.compile(regex.toString());
+    }
+}
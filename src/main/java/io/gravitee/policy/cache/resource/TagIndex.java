@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.resource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Index of the keys of the cached elements by tag (surrogate key), to purge all the elements carrying a tag.
+ *
+ * <p>The index is bounded: once <code>maxKeys</code> keys are indexed, indexing a new key drops the oldest indexed one,
+ * which must then be evicted from the cache. This way, a tagged element is never left in cache without being indexed.
+ * Keys of expired elements are dropped as they are found.</p>
+ *
+ * @author GraviteeSource Team
+ */
+public class TagIndex {
+
+    private final int maxKeys;
+
+    // Tags of each indexed key, oldest indexed first
+    private final LinkedHashMap<String, Tagged> keys = new LinkedHashMap<>();
+    private final NavigableMap<String, Set<String>> keysByTag = new TreeMap<>();
+
+    public TagIndex(final int maxKeys) {
+        this.maxKeys = Math.max(maxKeys, 1);
+    }
+
+    /**
+     * Parse the values of a tag header: tags are separated by spaces (or commas).
+     */
+    public static Set<String> parse(Collection<String> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Set<String> tags = new LinkedHashSet<>();
+        for (String value : values) {
+            for (String tag : value.split("[\\s,]+")) {
+                if (!tag.isEmpty()) {
+                    tags.add(tag);
+                }
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * Index the element put in cache under the given key with its tags, in place of its previous tags.
+     *
+     * @param hardExpiry the time the element is removed from the cache, 0 if it is kept forever.
+     * @return the keys dropped from the index to keep it bounded, whose elements must be evicted from the cache.
+     */
+    public synchronized List<String> index(String key, Set<String> tags, long hardExpiry) {
+        remove(key);
+        if (tags.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> dropped = Collections.emptyList();
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Tagged>> oldest = keys.entrySet().iterator();
+        while (keys.size() >= maxKeys) {
+            Map.Entry<String, Tagged> eldest = oldest.next();
+            oldest.remove();
+            unindex(eldest.getKey(), eldest.getValue());
+            if (!eldest.getValue().isExpired(now)) {
+                if (dropped.isEmpty()) {
+                    dropped = new ArrayList<>();
+                }
+                dropped.add(eldest.getKey());
+            }
+        }
+
+        keys.put(key, new Tagged(tags, hardExpiry));
+        for (String tag : tags) {
+            keysByTag.computeIfAbsent(tag, t -> new HashSet<>()).add(key);
+        }
+
+        return dropped;
+    }
+
+    /**
+     * Drop the given key from the index if its element has expired.
+     */
+    public synchronized void expire(String key, long now) {
+        Tagged tagged = keys.get(key);
+        if (tagged != null && tagged.isExpired(now)) {
+            remove(key);
+        }
+    }
+
+    /**
+     * Drop the keys carrying any of the given tags from the index.
+     *
+     * @return the dropped keys, whose elements must be evicted from the cache.
+     */
+    public synchronized Set<String> purge(Collection<String> tags) {
+        Set<String> purged = new HashSet<>();
+        for (String tag : tags) {
+            Set<String> tagged = keysByTag.get(tag);
+            if (tagged != null) {
+                purged.addAll(tagged);
+            }
+        }
+
+        purged.forEach(this::remove);
+        return purged;
+    }
+
+    /**
+     * Drop the keys carrying a tag starting with the given prefix and matching the given filter from the index. Only
+     * the tags starting with the prefix are looked at.
+     *
+     * @return the dropped keys, whose elements must be evicted from the cache.
+     */
+    protected synchronized Set<String> purge(String prefix, Predicate<String> filter) {
+        Set<String> purged = new HashSet<>();
+        keysByTag.subMap(prefix, true, prefix + Character.MAX_VALUE, true).forEach((tag, tagged) -> {
+            if (filter.test(tag)) {
+                purged.addAll(tagged);
+            }
+        });
+
+        purged.forEach(this::remove);
+        return purged;
+    }
+
+    public synchronized int size() {
+        return keys.size();
+    }
+
+    private void remove(String key) {
+        Tagged tagged = keys.remove(key);
+        if (tagged != null) {
+            unindex(key, tagged);
+        }
+    }
+
+    private void unindex(String key, Tagged tagged) {
+        for (String tag : tagged.tags) {
+            Set<String> tagKeys = keysByTag.get(tag);
+            if (tagKeys != null && tagKeys.remove(key) && tagKeys.isEmpty()) {
+                keysByTag.remove(tag);
+            }
+        }
+    }
+
+    private static class Tagged {
+        private final Set<String> tags;
+        private final long hardExpiry;
+
+        Tagged(final Set<String> tags, final long hardExpiry) {
+            this.tags = tags;
+            this.hardExpiry = hardExpiry;
+        }
+
+        boolean isExpired(long now) {
+            return hardExpiry != 0 && hardExpiry <= now;
+        }
+    }
+}
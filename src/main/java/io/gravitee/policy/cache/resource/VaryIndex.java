@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.resource;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Put in cache under the primary key of responses carrying a <code>Vary</code> header, in place of a response: it
+ * holds the names of the request headers selecting the variant. The variants themselves are put in cache under a
+ * secondary key, built from the primary key and the values of these headers.
+ *
+ * @author GraviteeSource Team
+ */
+public class VaryIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<String> headerNames;
+
+    public VaryIndex(final List<String> headerNames) {
+        this.headerNames = new ArrayList<>(headerNames);
+    }
+
+    /**
+     * The names of the selecting headers, lower-cased and sorted.
+     */
+    public List<String> getHeaderNames() {
+        return headerNames;
+    }
+
+    /**
+     * @author GraviteeSource Team
+     */
+    public static class Element implements io.gravitee.resource.cache.Element, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String key;
+        private final VaryIndex index;
+        private final int timeToLive;
+
+        public Element(final String key, final VaryIndex index, final int timeToLive) {
+            this.key = key;
+            this.index = index;
+            this.timeToLive = timeToLive;
+        }
+
+        @Override
+        public Object key() {
+            return key;
+        }
+
+        @Override
+        public Object value() {
+            return index;
+        }
+
+        @Override
+        public int timeToLive() {
+            return timeToLive;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.snapshot;
+
+import io.gravitee.gateway.api.handler.Handler;
+import io.gravitee.policy.cache.CacheResponse;
+import io.gravitee.policy.cache.codec.CacheResponseCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * File holding a copy of cached elements, written and read one element at a time.
+ *
+ * <pre>
+ * magic        : int
+ * version      : byte
+ * elements     : byte (1: an element follows, 0: end of the snapshot), then
+ *     key          : string
+ *     hardExpiry   : long (epoch millis, 0 for elements kept forever)
+ *     staleTTL     : int (seconds)
+ *     primary key  : string, empty when the element is not a variant
+ *     vary headers : short count, then strings (names of the headers selecting the variant)
+ *     response     : int length, then the response in the {@link CacheResponseCodec} format
+ * </pre>
+ *
+ * Strings are written in modified UTF-8 ({@link java.io.DataOutput#writeUTF(String)}).
+ *
+ * @author GraviteeSource Team
+ */
+public final class CacheSnapshot {
+
+    private static final int MAGIC = 0x47504353;
+
+    static final byte VERSION = 1;
+
+    private CacheSnapshot() {}
+
+    /**
+     * Open a new snapshot, replacing the given file once {@link Writer#commit() committed}.
+     */
+    public static Writer write(Path file) throws IOException {
+        return new Writer(file);
+    }
+
+    /**
+     * Read the entries of the given snapshot, one at a time.
+     *
+     * @return the number of entries read.
+     */
+    public static int read(Path file, Handler<Entry> handler) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a cache snapshot: " + file);
+            }
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported cache snapshot format version " + version);
+            }
+
+            int count = 0;
+            while (in.readByte() != 0) {
+                String key = in.readUTF();
+                long hardExpiry = in.readLong();
+                int staleTimeToLive = in.readInt();
+                String primaryKey = in.readUTF();
+
+                int varyCount = in.readShort();
+                List<String> vary = (varyCount == 0) ? Collections.emptyList() : new ArrayList<>(varyCount);
+                for (int i = 0; i < varyCount; i++) {
+                    vary.add(in.readUTF());
+                }
+
+                byte[] response = new byte[in.readInt()];
+                in.readFully(response);
+
+                handler.handle(new Entry(key, hardExpiry, staleTimeToLive, primaryKey.isEmpty() ? null : primaryKey,
+                        vary, CacheResponseCodec.decode(response)));
+                count++;
+            }
+
+            return count;
+        }
+    }
+
+    /**
+     * @author GraviteeSource Team
+     */
+    public static class Writer implements Closeable {
+        private final Path file;
+        private final Path temporary;
+        private final DataOutputStream out;
+        private int count;
+        private boolean committed;
+
+        private Writer(final Path file) throws IOException {
+            this.file = file;
+            this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)));
+
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+        }
+
+        public void append(Entry entry) throws IOException {
+            byte[] response = CacheResponseCodec.encode(entry.getResponse());
+
+            out.writeByte(1);
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getHardExpiry());
+            out.writeInt(entry.getStaleTimeToLive());
+            out.writeUTF((entry.getPrimaryKey() != null) ? entry.getPrimaryKey() : "");
+            out.writeShort(entry.getVary().size());
+            for (String name : entry.getVary()) {
+                out.writeUTF(name);
+            }
+            out.writeInt(response.length);
+            out.write(response);
+            count++;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        /**
+         * Complete the snapshot, which replaces the previous one at once: a snapshot being read is never a partial one.
+         */
+        public void commit() throws IOException {
+            out.writeByte(0);
+            out.close();
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        /**
+         * Discard the snapshot if it has not been committed, the previous one being left as is.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                out.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    /**
+     * @author GraviteeSource Team
+     */
+    public static class Entry {
+        private final String key;
+        private final long hardExpiry;
+        private final int staleTimeToLive;
+        private final String primaryKey;
+        private final List<String> vary;
+        private final CacheResponse response;
+
+        public Entry(final String key, final long hardExpiry, final int staleTimeToLive, final String primaryKey,
+                     final List<String> vary, final CacheResponse response) {
+            this.key = key;
+            this.hardExpiry = hardExpiry;
+            this.staleTimeToLive = staleTimeToLive;
+            this.primaryKey = primaryKey;
+            this.vary = vary;
+            this.response = response;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * The time (epoch millis) the element is removed from the cache, 0 if it is kept forever.
+         */
+        public long getHardExpiry() {
+            return hardExpiry;
+        }
+
+        public int getStaleTimeToLive() {
+            return staleTimeToLive;
+        }
+
+        /**
+         * The key of the {@link io.gravitee.policy.cache.resource.VaryIndex} leading to the element when it is a
+         * variant, <code>null</code> otherwise.
+         */
+        public String getPrimaryKey() {
+            return primaryKey;
+        }
+
+        public List<String> getVary() {
+            return vary;
+        }
+
+        public CacheResponse getResponse() {
+            return response;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.snapshot;
+
+import io.gravitee.policy.cache.CacheResponse;
+import io.gravitee.policy.cache.resource.CacheElement;
+import io.gravitee.policy.cache.resource.VaryIndex;
+import io.gravitee.resource.cache.Cache;
+import io.gravitee.resource.cache.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Periodically writes the most accessed elements of a cache to a {@link CacheSnapshot}, and loads the last snapshot
+ * back when the cache starts, so that a restarted gateway does not start with an empty cache.
+ *
+ * <p>Snapshots are written and loaded in background, on a thread of their own. Elements whose content is written on
+ * disk are not part of snapshots, the files holding such contents being local to a gateway run.</p>
+ *
+ * @author GraviteeSource Team
+ */
+public class CacheSnapshotter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheSnapshotter.class);
+
+    // Number of tracked keys, for each element written in the snapshot
+    private static final int TRACKED_KEYS_RATIO = 4;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gio-policy-cache-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path file;
+    private final long intervalSeconds;
+    private final int maxEntries;
+    private final HotKeys hotKeys;
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    public CacheSnapshotter(final Path file, final long intervalSeconds, final int maxEntries) {
+        this.file = file;
+        this.intervalSeconds = Math.max(intervalSeconds, 1);
+        this.maxEntries = maxEntries;
+        this.hotKeys = new HotKeys(maxEntries * TRACKED_KEYS_RATIO);
+    }
+
+    public HotKeys hotKeys() {
+        return hotKeys;
+    }
+
+    /**
+     * Load the last snapshot in the given cache, then periodically write a new one. Only the first call starts the
+     * snapshotter, the following ones are ignored.
+     *
+     * <p>The cache is not kept from being released: snapshots stop as soon as it is.</p>
+     */
+    public void start(Cache cache) {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+
+        WeakReference<Cache> reference = new WeakReference<>(cache);
+        SCHEDULER.execute(() -> {
+            Cache loaded = reference.get();
+            if (loaded != null) {
+                load(loaded);
+            }
+        });
+
+        ScheduledFuture<?>[] task = new ScheduledFuture<?>[1];
+        task[0] = SCHEDULER.scheduleWithFixedDelay(() -> {
+            Cache snapshotted = reference.get();
+            if (snapshotted == null) {
+                LOGGER.debug("Cache released, stop writing snapshots to {}", file);
+                task[0].cancel(false);
+            } else {
+                write(snapshotted);
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Put the elements of the snapshot in the cache, except the expired ones and those already in cache.
+     *
+     * @return the number of elements put in cache.
+     */
+    int load(Cache cache) {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        int[] loaded = new int[1];
+        try {
+            long now = System.currentTimeMillis();
+            int read = CacheSnapshot.read(file, entry -> {
+                if (load(cache, entry, now)) {
+                    loaded[0]++;
+                }
+            });
+            LOGGER.info("{} elements loaded in cache from the {} elements of snapshot {}", loaded[0], read, file);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to load cache snapshot {}, {} elements loaded", file, loaded[0], e);
+        }
+
+        return loaded[0];
+    }
+
+    private static boolean load(Cache cache, CacheSnapshot.Entry entry, long now) {
+        int timeToLive = 0;
+        int staleTimeToLive = 0;
+
+        if (entry.getHardExpiry() != 0) {
+            // Remaining time to live, the stale part of it coming last
+            long remaining = (entry.getHardExpiry() - now + 999) / 1000;
+            if (remaining <= 0) {
+                return false;
+            }
+            staleTimeToLive = (int) Math.min(entry.getStaleTimeToLive(), remaining - 1);
+            timeToLive = (int) remaining - staleTimeToLive;
+        }
+
+        if (cache.get(entry.getKey()) != null) {
+            return false;
+        }
+
+        CacheElement element = new CacheElement(entry.getKey(), entry.getResponse());
+        element.setTimeToLive(timeToLive);
+        element.setStaleTimeToLive(staleTimeToLive);
+        cache.put(element);
+
+        if (entry.getPrimaryKey() != null) {
+            // Put after the variant, so that the index never leads to a variant not put in cache yet
+            cache.put(new VaryIndex.Element(entry.getPrimaryKey(), new VaryIndex(entry.getVary()), element.timeToLive()));
+        }
+
+        return true;
+    }
+
+    /**
+     * Write the most accessed elements still in cache to a new snapshot.
+     *
+     * @return the number of elements written.
+     */
+    int write(Cache cache) {
+        List<HotKeys.Key> hottest = hotKeys.hottest(maxEntries);
+        hotKeys.decay();
+
+        long now = System.currentTimeMillis();
+        try (CacheSnapshot.Writer writer = CacheSnapshot.write(file)) {
+            for (HotKeys.Key key : hottest) {
+                CacheSnapshot.Entry entry = entry(cache, key, now);
+                if (entry != null) {
+                    try {
+                        writer.append(entry);
+                    } catch (IllegalStateException ise) {
+                        // The content has been released in the meantime
+                        LOGGER.debug("Element {} not written to cache snapshot {}", key.getKey(), file, ise);
+                    }
+                }
+            }
+            writer.commit();
+
+            LOGGER.debug("{} elements written to cache snapshot {}", writer.count(), file);
+            return writer.count();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to write cache snapshot {}", file, e);
+            return 0;
+        }
+    }
+
+    private static CacheSnapshot.Entry entry(Cache cache, HotKeys.Key key, long now) {
+        Element element = cache.get(key.getKey());
+        if (!(element instanceof CacheElement)) {
+            return null;
+        }
+
+        CacheElement cached = (CacheElement) element;
+        CacheResponse response = (CacheResponse) cached.value();
+        long hardExpiry = cached.getHardExpiry();
+        if ((hardExpiry != 0 && hardExpiry <= now) || response.getDiskContent() != null
+                || !response.isContentAvailable()) {
+            return null;
+        }
+
+        List<String> vary = Collections.emptyList();
+        if (key.getPrimaryKey() != null) {
+            Element index = cache.get(key.getPrimaryKey());
+            if (index == null || !(index.value() instanceof VaryIndex)) {
+                return null;
+            }
+            vary = ((VaryIndex) index.value()).getHeaderNames();
+        }
+
+        return new CacheSnapshot.Entry(key.getKey(), hardExpiry, cached.getStaleTimeToLive(), key.getPrimaryKey(),
+                vary, response);
+    }
+}
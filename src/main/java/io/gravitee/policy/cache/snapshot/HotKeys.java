@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.snapshot;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Access counts of the keys of a cache, to rank them by frequency. The number of tracked keys is bounded: once full,
+ * new keys are ignored until {@link #decay()} forgets the keys no longer accessed.
+ *
+ * @author GraviteeSource Team
+ */
+public class HotKeys {
+
+    private static final Comparator<Key> HOTTEST_FIRST = Comparator.comparingLong(Key::getHits).reversed();
+
+    private final int capacity;
+    private final ConcurrentMap<String, Key> keys = new ConcurrentHashMap<>();
+
+    public HotKeys(final int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Count an access to the element put in cache under the given key.
+     *
+     * @param key the key of the element.
+     * @param primaryKey the key of the {@link io.gravitee.policy.cache.resource.VaryIndex} leading to the element when
+     *                   it is a variant, <code>null</code> otherwise.
+     */
+    public void touch(String key, String primaryKey) {
+        Key counted = keys.get(key);
+        if (counted == null) {
+            if (keys.size() >= capacity) {
+                return;
+            }
+            counted = keys.computeIfAbsent(key, k -> new Key(k, primaryKey));
+        }
+
+        counted.hits.incrementAndGet();
+    }
+
+    /**
+     * The most accessed keys, hottest first.
+     */
+    public List<Key> hottest(int count) {
+        List<Key> hottest = new ArrayList<>(keys.values());
+        hottest.sort(HOTTEST_FIRST);
+        return (hottest.size() > count) ? hottest.subList(0, count) : hottest;
+    }
+
+    /**
+     * Halve the access counts, so that the ranking follows the recent accesses, and forget the keys not accessed since
+     * the last decays.
+     */
+    public void decay() {
+        keys.values().removeIf(key -> key.hits.updateAndGet(hits -> hits >> 1) == 0);
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * @author GraviteeSource Team
+     */
+    public static class Key {
+        private final String key;
+        private final String primaryKey;
+        private final AtomicLong hits = new AtomicLong();
+
+        Key(final String key, final String primaryKey) {
+            this.key = key;
+            this.primaryKey = primaryKey;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getPrimaryKey() {
+            return primaryKey;
+        }
+
+        public long getHits() {
+            return hits.get();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import io.gravitee.gateway.api.handler.Handler;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocking parts of the policy (compression, file I/O, ...) off the Vert.x event loop.
+ *
+ * @author GraviteeSource Team
+ */
+public final class Blocking {
+
+    private Blocking() {}
+
+    /**
+     * Run the task on a worker thread when called from an event loop, the handlers being then called back on the
+     * context of the caller. Otherwise, the task and the handlers run on the calling thread.
+     *
+     * @param task the blocking task.
+     * @param resultHandler the handler of the result of the task.
+     * @param failureHandler the handler of the failure of the task.
+     */
+    public static <T> void execute(Supplier<T> task, Handler<T> resultHandler, Handler<Throwable> failureHandler) {
+        Context context = Vertx.currentContext();
+        if (context == null || !context.isEventLoopContext()) {
+            T result;
+            try {
+                result = task.get();
+            } catch (RuntimeException ex) {
+                failureHandler.handle(ex);
+                return;
+            }
+            resultHandler.handle(result);
+            return;
+        }
+
+        context.<T>executeBlocking(future -> future.complete(task.get()), false, result -> {
+            if (result.succeeded()) {
+                resultHandler.handle(result.result());
+            } else {
+                failureHandler.handle(result.cause());
+            }
+        });
+    }
+}
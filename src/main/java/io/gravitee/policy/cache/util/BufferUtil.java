@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.netty.buffer.ByteBuf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author GraviteeSource Team
+ */
+public final class BufferUtil {
+
+    private BufferUtil() {}
+
+    /**
+     * Read-only view over the bytes of a buffer. The memory is shared with the native Netty or Vert.x buffer of the
+     * gateway, the bytes are only copied for other buffer implementations.
+     */
+    public static ByteBuffer view(Buffer buffer) {
+        Object nativeBuffer = buffer.getNativeBuffer();
+        if (nativeBuffer instanceof io.vertx.core.buffer.Buffer) {
+            nativeBuffer = ((io.vertx.core.buffer.Buffer) nativeBuffer).getByteBuf();
+        }
+
+        ByteBuffer view = (nativeBuffer instanceof ByteBuf)
+                ? ((ByteBuf) nativeBuffer).nioBuffer()
+                : ByteBuffer.wrap(buffer.getBytes());
+        return view.asReadOnlyBuffer();
+    }
+}
@@ -17,10 +17,9 @@ package io.gravitee.policy.cache.util;
 
 import io.gravitee.policy.cache.CacheControl;
 
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.Iterator;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
 
 /**
  * @author David BRASSELY (david.brassely at graviteesource.com)
@@ -28,19 +27,29 @@ import java.util.regex.Pattern;
  */
 public final class CacheControlUtil {
 
+    // Delta-seconds greater than this are considered as this value (RFC 7234, section 1.2.1)
+    private static final long MAX_DELTA_SECONDS = 2147483648L;
+
+    private static final HeaderMemo<CacheControl> MEMO = new HeaderMemo<>(256, CacheControlUtil::parse);
+
     private CacheControlUtil() {}
 
     /**
-     * Parse the Cache-Control header
+     * Parse the Cache-Control header.
+     *
+     * <p>Recently parsed values are memoized: the returned instance is shared and must not be modified.</p>
      */
     public static CacheControl parseCacheControl(String cacheControlHeader) {
         if (cacheControlHeader == null) {
             return null;
         }
 
-        CacheControlParser parser = new CacheControlParser(cacheControlHeader);
+        return MEMO.get(cacheControlHeader);
+    }
+
+    private static CacheControl parse(String cacheControlHeader) {
         CacheControl cacheControl = new CacheControl();
-        for (Directive directive : parser) {
+        scan(cacheControlHeader, (directive, header, valueStart, valueEnd) -> {
             switch (directive) {
                 case NOCACHE:
                     cacheControl.setNoCache(true);
@@ -61,32 +70,171 @@ public final class CacheControlUtil {
                     cacheControl.setPrivate(true);
                     break;
                 case MAXAGE:
-                    cacheControl.setMaxAge(Long.parseLong(parser.getValue(directive)));
+                    cacheControl.setMaxAge(deltaSeconds(header, valueStart, valueEnd));
                     break;
                 case SMAXAGE:
-                    cacheControl.setSMaxAge(Long.parseLong(parser.getValue(directive)));
+                    cacheControl.setSMaxAge(deltaSeconds(header, valueStart, valueEnd));
+                    break;
+                case STALEWHILEREVALIDATE:
+                    cacheControl.setStaleWhileRevalidate(deltaSeconds(header, valueStart, valueEnd));
+                    break;
+                case STALEIFERROR:
+                    cacheControl.setStaleIfError(deltaSeconds(header, valueStart, valueEnd));
+                    break;
+                case MAXSTALE:
+                    // Without value, any staleness is accepted
+                    cacheControl.setMaxStale((valueStart < 0) ? MAX_DELTA_SECONDS : deltaSeconds(header, valueStart, valueEnd));
+                    break;
+                case MINFRESH:
+                    cacheControl.setMinFresh(deltaSeconds(header, valueStart, valueEnd));
+                    break;
+                case ONLYIFCACHED:
+                    cacheControl.setOnlyIfCached(true);
+                    break;
+                default:
                     break;
             }
-        }
+        });
 
         return cacheControl;
     }
 
+    /**
+     * Single pass over the directives of a Cache-Control header, directive values being either tokens or quoted
+     * strings. Unknown directives are skipped.
+     */
+    static void scan(String header, DirectiveHandler handler) {
+        int length = header.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = header.charAt(i);
+            if (c == ',' || isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            int nameStart = i;
+            while (i < length && (c = header.charAt(i)) != '=' && c != ',') {
+                i++;
+            }
+            int nameEnd = trimEnd(header, nameStart, i);
+
+            int valueStart = -1;
+            int valueEnd = -1;
+            if (i < length && header.charAt(i) == '=') {
+                i++;
+                while (i < length && isWhitespace(header.charAt(i))) {
+                    i++;
+                }
+
+                if (i < length && header.charAt(i) == '"') {
+                    valueStart = ++i;
+                    while (i < length && (c = header.charAt(i)) != '"') {
+                        i += (c == '\\') ? 2 : 1;
+                    }
+                    valueEnd = Math.min(i, length);
+                } else {
+                    valueStart = i;
+                    while (i < length && header.charAt(i) != ',') {
+                        i++;
+                    }
+                    valueEnd = trimEnd(header, valueStart, i);
+                }
+            }
+
+            // Anything after the value, up to the next directive, is ignored
+            while (i < length && header.charAt(i) != ',') {
+                i++;
+            }
+
+            Directive directive = Directive.select(header, nameStart, nameEnd);
+            if (directive != Directive.UNKNOWN) {
+                handler.handle(directive, header, valueStart, valueEnd);
+            }
+        }
+    }
+
+    /**
+     * @return the delta-seconds value, or -1 if there is no value or if it is not a number.
+     */
+    private static long deltaSeconds(String header, int start, int end) {
+        if (start < 0 || start == end) {
+            return -1;
+        }
+
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = header.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            if (value < MAX_DELTA_SECONDS) {
+                value = value * 10 + (c - '0');
+            }
+        }
+
+        return Math.min(value, MAX_DELTA_SECONDS);
+    }
+
+    private static int trimEnd(String header, int start, int end) {
+        while (end > start && isWhitespace(header.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    @FunctionalInterface
+    interface DirectiveHandler {
+        /**
+         * @param valueStart the index of the directive value in the header, -1 if the directive has no value.
+         */
+        void handle(Directive directive, String header, int valueStart, int valueEnd);
+    }
+
     /**
      * Cache Control Directives
      */
     public enum Directive {
         MAXAGE, MAXSTALE, MINFRESH, NOCACHE, NOSTORE, NOTRANSFORM, ONLYIFCACHED, MUSTREVALIDATE, PRIVATE,
-        PROXYREVALIDATE, PUBLIC, SMAXAGE, UNKNOWN;
+        PROXYREVALIDATE, PUBLIC, SMAXAGE, STALEWHILEREVALIDATE, STALEIFERROR, UNKNOWN;
+
+        private static final Directive[] DIRECTIVES = values();
 
         public static Directive select(String d) {
-            try {
-                d = d.toUpperCase().replaceAll("-", "");
-                return Directive.valueOf(d);
-            } catch (Exception e) {
+            return select(d, 0, d.length());
+        }
+
+        /**
+         * Case insensitive lookup of the directive named by <code>d[start, end[</code>, dashes being ignored.
+         */
+        static Directive select(String d, int start, int end) {
+            for (Directive directive : DIRECTIVES) {
+                if (directive != UNKNOWN && directive.matches(d, start, end)) {
+                    return directive;
+                }
             }
             return UNKNOWN;
         }
+
+        private boolean matches(String d, int start, int end) {
+            String name = name();
+            int n = 0;
+            for (int i = start; i < end; i++) {
+                char c = d.charAt(i);
+                if (c == '-') {
+                    continue;
+                }
+                if (n == name.length() || Character.toUpperCase(c) != name.charAt(n++)) {
+                    return false;
+                }
+            }
+            return n == name.length();
+        }
     }
 
     /**
@@ -94,22 +242,11 @@ public final class CacheControlUtil {
      */
     public static class CacheControlParser implements Iterable<Directive> {
 
-        private static final String REGEX =
-                "\\s*([\\w\\-]+)\\s*(=)?\\s*(\\d+|\"([^\"\\\\]*(\\\\.[^\"\\\\]*)*)+\")?\\s*";
-
-        private static final Pattern pattern = Pattern.compile(REGEX);
-
-        private HashMap<Directive, String> values = new HashMap<>();
+        private final Map<Directive, String> values = new EnumMap<>(Directive.class);
 
         public CacheControlParser(String value) {
-            Matcher matcher = pattern.matcher(value);
-            while (matcher.find()) {
-                String d = matcher.group(1);
-                Directive directive = Directive.select(d);
-                if (directive != Directive.UNKNOWN) {
-                    values.put(directive, matcher.group(3));
-                }
-            }
+            scan(value, (directive, header, valueStart, valueEnd) ->
+                    values.put(directive, (valueStart < 0) ? null : header.substring(valueStart, valueEnd)));
         }
 
         public String getValue(Directive directive) {
@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import io.gravitee.policy.cache.configuration.CompressionAlgorithm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * @author GraviteeSource Team
+ */
+public final class CompressionUtil {
+
+    private CompressionUtil() {}
+
+    public static byte[] compress(byte[] content, CompressionAlgorithm algorithm) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(content.length / 4, 64));
+        try (OutputStream out = (algorithm == CompressionAlgorithm.GZIP) ?
+                new GZIPOutputStream(compressed) : new DeflaterOutputStream(compressed)) {
+            out.write(content);
+        } catch (IOException ioe) {
+            throw new IllegalStateException("Unable to compress content", ioe);
+        }
+
+        return compressed.toByteArray();
+    }
+
+    public static byte[] decompress(byte[] content, String contentEncoding) {
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream(content.length * 4);
+        try (InputStream in = CompressionAlgorithm.GZIP.getContentEncoding().equals(contentEncoding) ?
+                new GZIPInputStream(new ByteArrayInputStream(content)) :
+                new InflaterInputStream(new ByteArrayInputStream(content))) {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                decompressed.write(chunk, 0, read);
+            }
+        } catch (IOException ioe) {
+            throw new IllegalStateException("Unable to decompress content", ioe);
+        }
+
+        return decompressed.toByteArray();
+    }
+
+    /**
+     * Whether the <code>Accept-Encoding</code> header of a request allows the given content coding.
+     */
+    public static boolean accepts(String acceptEncoding, String contentEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        boolean wildcard = false;
+        for (String coding : acceptEncoding.split(",")) {
+            int params = coding.indexOf(';');
+            String name = ((params == -1) ? coding : coding.substring(0, params)).trim();
+            boolean rejected = params != -1 && isZeroQuality(coding.substring(params + 1));
+
+            if (name.equalsIgnoreCase(contentEncoding)) {
+                return !rejected;
+            } else if (name.equals("*")) {
+                wildcard = !rejected;
+            }
+        }
+
+        return wildcard;
+    }
+
+    /**
+     * Whether a <code>Content-Type</code> matches one of the given media types. Media types may contain a single
+     * <code>*</code> wildcard (<code>text/*</code>, <code>application/*+json</code>).
+     */
+    public static boolean matches(String contentType, List<String> mediaTypes) {
+        if (contentType == null || mediaTypes == null) {
+            return false;
+        }
+
+        int params = contentType.indexOf(';');
+        String mediaType = ((params == -1) ? contentType : contentType.substring(0, params)).trim().toLowerCase(Locale.ENGLISH);
+
+        for (String candidate : mediaTypes) {
+            String pattern = candidate.trim().toLowerCase(Locale.ENGLISH);
+            int wildcard = pattern.indexOf('*');
+            if (wildcard == -1) {
+                if (pattern.equals(mediaType)) {
+                    return true;
+                }
+            } else {
+                String prefix = pattern.substring(0, wildcard);
+                String suffix = pattern.substring(wildcard + 1);
+                if (mediaType.length() >= prefix.length() + suffix.length()
+                        && mediaType.startsWith(prefix) && mediaType.endsWith(suffix)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isZeroQuality(String params) {
+        for (String param : params.split(";")) {
+            String[] parts = param.trim().split("=");
+            if (parts.length == 2 && parts[0].trim().equalsIgnoreCase("q")) {
+                try {
+                    return Double.parseDouble(parts[1].trim()) == 0;
+                } catch (NumberFormatException nfe) {
+                    return false;
+                }
+            }
+        }
+
+        return false;
+    }
+}
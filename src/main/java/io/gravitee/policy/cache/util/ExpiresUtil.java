@@ -17,6 +17,8 @@ package io.gravitee.policy.cache.util;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -33,17 +35,93 @@ public final class ExpiresUtil {
     private final static DateTimeFormatter EXPIRES_HEADER_FORMATTER =
             DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss z").withLocale(Locale.ENGLISH);
 
+    private static final String[] DAYS = { "Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun" };
+
+    private static final String[] MONTHS = {
+            "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"
+    };
+
+    private static final HeaderMemo<Instant> MEMO = new HeaderMemo<>(256, ExpiresUtil::parse);
+
     private ExpiresUtil() {}
 
+    /**
+     * Parse the Expires header. Recently parsed values are memoized.
+     */
     public static Instant parseExpires(String expires) {
         if (expires == null) {
             return null;
         }
 
+        return MEMO.get(expires);
+    }
+
+    private static Instant parse(String expires) {
+        Instant instant = parseRfc1123(expires);
+        if (instant != null) {
+            return instant;
+        }
+
+        // Not the fixed-length form, let the formatter decide
         try {
             return LocalDateTime.parse(expires, EXPIRES_HEADER_FORMATTER).toInstant(ZoneOffset.UTC);
         } catch (DateTimeParseException dtpe) {
             return null;
         }
     }
+
+    /**
+     * Hand-written parser of the fixed-length form of RFC 1123 dates (<code>Thu, 01 Dec 1994 16:00:00 GMT</code>).
+     *
+     * @return <code>null</code> if the value does not have this exact form.
+     */
+    static Instant parseRfc1123(String value) {
+        if (value.length() != 29 || value.charAt(3) != ',' || value.charAt(4) != ' ' || value.charAt(7) != ' '
+                || value.charAt(11) != ' ' || value.charAt(16) != ' ' || value.charAt(19) != ':'
+                || value.charAt(22) != ':' || value.charAt(25) != ' ' || !value.startsWith("GMT", 26)) {
+            return null;
+        }
+
+        int dayOfWeek = indexOf(DAYS, value, 0);
+        int month = indexOf(MONTHS, value, 8) + 1;
+        int day = digits(value, 5, 2);
+        int year = digits(value, 12, 4);
+        int hour = digits(value, 17, 2);
+        int minute = digits(value, 20, 2);
+        int second = digits(value, 23, 2);
+        if (dayOfWeek < 0 || month == 0 || year < 0 || day < 1 || day > Month.of(month).length(Year.isLeap(year))
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+
+        LocalDateTime dateTime = LocalDateTime.of(year, month, day, hour, minute, second);
+
+        // As the formatter, reject dates whose day of week does not match
+        if (dateTime.getDayOfWeek().ordinal() != dayOfWeek) {
+            return null;
+        }
+
+        return dateTime.toInstant(ZoneOffset.UTC);
+    }
+
+    private static int indexOf(String[] names, String value, int offset) {
+        for (int i = 0; i < names.length; i++) {
+            if (value.startsWith(names[i], offset)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int digits(String value, int offset, int count) {
+        int result = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
 }
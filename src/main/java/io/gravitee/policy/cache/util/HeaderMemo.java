@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Small bounded memo of parsed header values: backends tend to send the same few values again and again. Parsed
+ * values are shared and must not be modified. The memo is simply emptied once full.
+ *
+ * @author GraviteeSource Team
+ */
+final class HeaderMemo<V> {
+
+    private static final Object NULL = new Object();
+
+    private final int capacity;
+    private final Function<String, V> parser;
+    private final Map<String, Object> values = new ConcurrentHashMap<>();
+
+    HeaderMemo(final int capacity, final Function<String, V> parser) {
+        this.capacity = capacity;
+        this.parser = parser;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(String header) {
+        Object value = values.get(header);
+        if (value == null) {
+            V parsed = parser.apply(header);
+            // Unusually long values are likely to be unique
+            if (header.length() <= 256) {
+                if (values.size() >= capacity) {
+                    values.clear();
+                }
+                values.put(header, (parsed != null) ? parsed : NULL);
+            }
+            return parsed;
+        }
+
+        return (value == NULL) ? null : (V) value;
+    }
+}
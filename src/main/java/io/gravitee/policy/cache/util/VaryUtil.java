@@ -0,0 +1,151 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+/**
+ * Helpers for the <code>Vary</code> response header (RFC 7231, section 7.1.4) and the request headers it selects.
+ *
+ * @author GraviteeSource Team
+ */
+public final class VaryUtil {
+
+    private static final HeaderMemo<List<String>> MEMO = new HeaderMemo<>(256, VaryUtil::parse);
+
+    private VaryUtil() {}
+
+    /**
+     * Parse the <code>Vary</code> header.
+     *
+     * @return the names of the selecting headers, lower-cased and sorted, empty if the response does not vary, or
+     * <code>null</code> if it varies on <code>*</code> (it can not be selected from the request headers). The returned
+     * list is shared and immutable.
+     */
+    public static List<String> parseVary(String vary) {
+        if (vary == null) {
+            return Collections.emptyList();
+        }
+
+        return MEMO.get(vary);
+    }
+
+    private static List<String> parse(String vary) {
+        TreeSet<String> names = new TreeSet<>();
+        for (String name : vary.split(",")) {
+            name = name.trim();
+            if (name.equals("*")) {
+                return null;
+            }
+            if (!name.isEmpty()) {
+                names.add(name.toLowerCase(Locale.ENGLISH));
+            }
+        }
+
+        return names.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(names));
+    }
+
+    /**
+     * Normalize the values of a selecting request header, so that semantically equivalent requests select the same
+     * variant: the values are combined into a single comma-separated list, and the whitespace around separators is
+     * removed. The values of the <code>Accept*</code> headers are also lower-cased (they are case-insensitive), the
+     * codings of <code>Accept-Encoding</code> being sorted and the refused ones (<code>q=0</code>) dropped.
+     *
+     * @return the normalized value, <code>null</code> if the header is absent.
+     */
+    public static String normalize(String name, List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+
+        boolean caseInsensitive = name.regionMatches(true, 0, "accept", 0, 6);
+        boolean acceptEncoding = name.equalsIgnoreCase("accept-encoding");
+
+        List<String> tokens = new ArrayList<>();
+        for (String value : values) {
+            int start = 0;
+            for (int i = 0; i <= value.length(); i++) {
+                if (i == value.length() || value.charAt(i) == ',') {
+                    String token = compact(value, start, i);
+                    if (!token.isEmpty()) {
+                        if (caseInsensitive) {
+                            token = token.toLowerCase(Locale.ENGLISH);
+                        }
+                        if (!acceptEncoding || !refused(token)) {
+                            tokens.add(token);
+                        }
+                    }
+                    start = i + 1;
+                }
+            }
+        }
+
+        if (acceptEncoding) {
+            Collections.sort(tokens);
+        }
+
+        return String.join(",", tokens);
+    }
+
+    /**
+     * Copy a token without its surrounding whitespace, nor the whitespace around its <code>;</code> and
+     * <code>=</code> separators.
+     */
+    private static String compact(String value, int start, int end) {
+        StringBuilder token = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c == ' ' || c == '\t') {
+                continue;
+            }
+            // Keep the whitespace between two words
+            if (i > start && isWhitespace(value.charAt(i - 1)) && token.length() > 0
+                    && !isSeparator(token.charAt(token.length() - 1)) && !isSeparator(c)) {
+                token.append(' ');
+            }
+            token.append(c);
+        }
+        return token.toString();
+    }
+
+    private static boolean refused(String coding) {
+        int q = coding.indexOf(";q=");
+        if (q < 0) {
+            return false;
+        }
+
+        String qvalue = coding.substring(q + 3);
+        for (int i = 0; i < qvalue.length(); i++) {
+            char c = qvalue.charAt(i);
+            if (c != '0' && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ';' || c == '=';
+    }
+}
@@ -0,0 +1,628 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.common.http.HttpMethod;
+import io.gravitee.common.http.HttpStatusCode;
+import io.gravitee.common.util.LinkedMultiValueMap;
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.gateway.api.Invoker;
+import io.gravitee.gateway.api.Request;
+import io.gravitee.gateway.api.Response;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.api.PolicyChain;
+import io.gravitee.policy.cache.configuration.CachePolicyConfiguration;
+import io.gravitee.policy.cache.configuration.StatusRule;
+import io.gravitee.policy.cache.key.CacheKeyBuilder;
+import io.gravitee.policy.cache.metrics.CacheEvent;
+import io.gravitee.policy.cache.metrics.CacheMetrics;
+import io.gravitee.policy.cache.metrics.CacheMetricsRegistry;
+import io.gravitee.policy.cache.metrics.StripedCacheMetricsRegistry;
+import io.gravitee.policy.cache.prewarm.CachePrewarmer;
+import io.gravitee.policy.cache.proxy.BufferedReadStream;
+import io.gravitee.policy.cache.resource.CacheAttachments;
+import io.gravitee.policy.cache.resource.CacheElement;
+import io.gravitee.policy.cache.support.FakeBackend;
+import io.gravitee.policy.cache.support.InMemoryCache;
+import io.gravitee.resource.api.ResourceManager;
+import io.gravitee.resource.cache.CacheResource;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author GraviteeSource Team
+ */
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class CacheInvokerTest {
+
+    @Mock
+    private ExecutionContext executionContext;
+
+    @Mock
+    private Request request;
+
+    @Mock
+    private Response response;
+
+    @Mock
+    private PolicyChain policyChain;
+
+    private final Map<String, Object> attributes = new HashMap<>();
+    private final HttpHeaders requestHeaders = new HttpHeaders();
+    private final InMemoryCache cache = new InMemoryCache();
+    private final FakeBackend backend = new FakeBackend();
+    private final CachePolicyConfiguration configuration = new CachePolicyConfiguration();
+
+    @Before
+    public void init() {
+        configuration.setCacheName("my-cache");
+        configuration.setScope(io.gravitee.policy.cache.configuration.CacheScope.API);
+
+        CacheResource cacheResource = mock(CacheResource.class);
+        when(cacheResource.getCache()).thenReturn(cache);
+        ResourceManager resourceManager = mock(ResourceManager.class);
+        when(resourceManager.getResource("my-cache", CacheResource.class)).thenReturn(cacheResource);
+
+        when(request.id()).thenReturn("request-id");
+        when(request.method()).thenReturn(HttpMethod.GET);
+        when(request.path()).thenReturn("/products");
+        when(request.headers()).thenReturn(requestHeaders);
+        when(request.parameters()).thenReturn(new LinkedMultiValueMap<>());
+
+        when(executionContext.request()).thenReturn(request);
+        when(executionContext.getComponent(ResourceManager.class)).thenReturn(resourceManager);
+        when(executionContext.getAttribute(anyString())).thenAnswer(invocation -> attributes.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(executionContext).setAttribute(anyString(), any());
+
+        attributes.put(ExecutionContext.ATTR_API, "my-api");
+    }
+
+    @Test
+    public void shouldServeSecondCallFromCache() {
+        backend.reply(200, headers(), "hello", " world");
+
+        ClientResponse first = call();
+        ClientResponse second = call();
+
+        Assert.assertEquals(200, first.status);
+        Assert.assertEquals("hello world", first.body.toString());
+        Assert.assertEquals("hello world", second.body.toString());
+        Assert.assertEquals(1, backend.requests().size());
+    }
+
+    @Test
+    public void shouldNotCacheOversizedBody() {
+        configuration.setMaxCacheableBodySize(8);
+        backend.reply(200, headers(), "hello", " world")
+                .reply(200, headers(), "hello", " world");
+
+        ClientResponse first = call();
+        ClientResponse second = call();
+
+        Assert.assertEquals("hello world", first.body.toString());
+        Assert.assertEquals("hello world", second.body.toString());
+        Assert.assertEquals(2, backend.requests().size());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldNotCacheBodyDeclaredAsOversized() {
+        configuration.setMaxCacheableBodySize(8);
+        HttpHeaders headers = headers();
+        headers.set(HttpHeaders.CONTENT_LENGTH, "11");
+        backend.reply(200, headers, "hello", " world");
+
+        Assert.assertEquals("hello world", call().body.toString());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldNotTrustDeclaredLengthToSizeFillBuffer() {
+        HttpHeaders headers = headers();
+        headers.set(HttpHeaders.CONTENT_LENGTH, "2000000000");
+        backend.reply(200, headers, "hello");
+
+        Assert.assertEquals("hello", call().body.toString());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldServeStaleOnBackendError() {
+        configuration.setTimeToLiveSeconds(10);
+        configuration.setStaleIfErrorSeconds(60);
+        backend.reply(200, headers(), "cached")
+                .reply(503, headers(), "unavailable")
+                .fail(new RuntimeException("Connection refused"));
+
+        call();
+        age(20_000);
+
+        ClientResponse onError = call();
+        Assert.assertEquals(200, onError.status);
+        Assert.assertEquals("cached", onError.body.toString());
+        Assert.assertNotNull(onError.headers.getFirst(HttpHeaders.WARNING));
+
+        ClientResponse onFailure = call();
+        Assert.assertEquals("cached", onFailure.body.toString());
+    }
+
+    @Test
+    public void shouldRevalidateWithValidators() {
+        configuration.setTimeToLiveSeconds(10);
+        configuration.setRevalidationWindowSeconds(60);
+        HttpHeaders headers = headers();
+        headers.set(HttpHeaders.ETAG, "\"v1\"");
+        backend.reply(200, headers, "cached")
+                .reply(304, new HttpHeaders());
+
+        call();
+        age(20_000);
+
+        ClientResponse revalidated = call();
+        Assert.assertEquals(200, revalidated.status);
+        Assert.assertEquals("cached", revalidated.body.toString());
+        Assert.assertEquals("\"v1\"", backend.requests().get(1).getFirst(HttpHeaders.IF_NONE_MATCH));
+    }
+
+    @Test
+    public void shouldServeCompressedContentOnlyToCapableClients() {
+        configuration.setCompressContent(true);
+        configuration.setCompressionThreshold(0);
+        String content = "{\"items\":[{\"id\":1},{\"id\":2},{\"id\":3},{\"id\":4},{\"id\":5}]}";
+        backend.reply(200, headers(), content);
+
+        call();
+        Assert.assertEquals("gzip", ((CacheResponse) cache.get(key()).value()).getContentEncoding());
+
+        ClientResponse identity = call();
+        Assert.assertEquals(content, identity.body.toString());
+        Assert.assertNull(identity.headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+
+        requestHeaders.set(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+        ClientResponse gzip = call();
+        Assert.assertEquals("gzip", gzip.headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assert.assertNotEquals(content, gzip.body.toString());
+    }
+
+    @Test
+    public void shouldServeContentStoredOffHeap() {
+        configuration.setOffHeapStorage(true);
+        backend.reply(200, headers(), "hello", " world");
+
+        call();
+        CacheResponse cached = (CacheResponse) cache.get(key()).value();
+        Assert.assertNull(cached.getContent());
+        Assert.assertNotNull(cached.getOffHeapContent());
+
+        Assert.assertEquals("hello world", call().body.toString());
+        Assert.assertEquals(1, backend.requests().size());
+    }
+
+    @Test
+    public void shouldServeContentStoredOnDisk() throws IOException {
+        configuration.setDiskStorage(true);
+        configuration.setDiskThreshold(8);
+        configuration.setDiskDirectory(Files.createTempDirectory("cache").toString());
+        backend.reply(200, headers(), "hello", " world");
+
+        call();
+        CacheResponse cached = (CacheResponse) cache.get(key()).value();
+        Assert.assertNull(cached.getContent());
+        Assert.assertNotNull(cached.getDiskContent());
+
+        Assert.assertEquals("hello world", call().body.toString());
+        Assert.assertEquals(1, backend.requests().size());
+    }
+
+    @Test
+    public void shouldCacheVariants() {
+        HttpHeaders headers = headers();
+        headers.set(HttpHeaders.VARY, "Accept-Language");
+        backend.reply(200, headers, "bonjour")
+                .reply(200, headers, "hello");
+
+        requestHeaders.set(HttpHeaders.ACCEPT_LANGUAGE, "fr");
+        Assert.assertEquals("bonjour", call().body.toString());
+        requestHeaders.set(HttpHeaders.ACCEPT_LANGUAGE, "en");
+        Assert.assertEquals("hello", call().body.toString());
+
+        requestHeaders.set(HttpHeaders.ACCEPT_LANGUAGE, " FR ");
+        Assert.assertEquals("bonjour", call().body.toString());
+        requestHeaders.set(HttpHeaders.ACCEPT_LANGUAGE, "en");
+        Assert.assertEquals("hello", call().body.toString());
+        Assert.assertEquals(2, backend.requests().size());
+    }
+
+    @Test
+    public void shouldNotCacheResponseVaryingOnEverything() {
+        HttpHeaders headers = headers();
+        headers.set(HttpHeaders.VARY, "*");
+        backend.reply(200, headers, "hello");
+
+        Assert.assertEquals("hello", call().body.toString());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldAnswerOnlyIfCachedWithoutCallingBackend() {
+        configuration.setUseRequestCacheHeaders(true);
+        requestHeaders.set(HttpHeaders.CACHE_CONTROL, "only-if-cached");
+
+        Assert.assertEquals(504, call().status);
+        Assert.assertTrue(backend.requests().isEmpty());
+
+        requestHeaders.remove(HttpHeaders.CACHE_CONTROL);
+        backend.reply(200, headers(), "cached");
+        call();
+
+        requestHeaders.set(HttpHeaders.CACHE_CONTROL, "only-if-cached");
+        ClientResponse cached = call();
+        Assert.assertEquals(200, cached.status);
+        Assert.assertEquals("cached", cached.body.toString());
+        Assert.assertEquals(1, backend.requests().size());
+    }
+
+    @Test
+    public void shouldHonorRequestFreshnessDirectives() {
+        configuration.setUseRequestCacheHeaders(true);
+        configuration.setTimeToLiveSeconds(10);
+        configuration.setStaleIfErrorSeconds(120);
+        backend.reply(200, headers(), "v1")
+                .reply(200, headers(), "v2");
+
+        call();
+        age(30_000);
+
+        requestHeaders.set(HttpHeaders.CACHE_CONTROL, "max-stale=60");
+        ClientResponse stale = call();
+        Assert.assertEquals("v1", stale.body.toString());
+        Assert.assertNotNull(stale.headers.getFirst(HttpHeaders.WARNING));
+        Assert.assertEquals(1, backend.requests().size());
+
+        requestHeaders.set(HttpHeaders.CACHE_CONTROL, "max-stale=10");
+        Assert.assertEquals("v2", call().body.toString());
+
+        requestHeaders.set(HttpHeaders.CACHE_CONTROL, "min-fresh=60");
+        backend.reply(200, headers(), "v3");
+        Assert.assertEquals("v3", call().body.toString());
+        Assert.assertEquals(3, backend.requests().size());
+    }
+
+    @Test
+    public void shouldCacheMissingResourcesBriefly() {
+        configuration.setCacheableStatuses(Arrays.asList(new StatusRule(200, 299, -1), new StatusRule(404, 404, 30)));
+        backend.reply(404, headers(), "not found");
+
+        Assert.assertEquals(404, call().status);
+        Assert.assertEquals(404, call().status);
+        Assert.assertEquals(1, backend.requests().size());
+
+        CacheElement element = (CacheElement) cache.get(key());
+        Assert.assertEquals(30, element.getTimeToLive());
+    }
+
+    @Test
+    public void shouldCapResponseTimeToLiveWithStatusRule() {
+        configuration.setUseResponseCacheHeaders(true);
+        configuration.setTimeToLiveSeconds(60);
+        configuration.setCacheableStatuses(Arrays.asList(new StatusRule(200, 299, 600)));
+        HttpHeaders headers = headers();
+        headers.set(HttpHeaders.CACHE_CONTROL, "max-age=300");
+        backend.reply(200, headers, "long lived");
+
+        call();
+
+        CacheElement element = (CacheElement) cache.get(key());
+        Assert.assertEquals(300, element.getTimeToLive());
+    }
+
+    @Test
+    public void shouldNotCachePrivateResponses() {
+        HttpHeaders headers = headers();
+        headers.set(HttpHeaders.CACHE_CONTROL, "private, max-age=60");
+        backend.reply(200, headers, "mine");
+
+        Assert.assertEquals("mine", call().body.toString());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldCachePostRequestsByBody() {
+        configuration.setRequestBodyMethods(Arrays.asList("POST"));
+        when(request.method()).thenReturn(HttpMethod.POST);
+        requestHeaders.set(HttpHeaders.CONTENT_TYPE, "application/json");
+        backend.reply(200, headers(), "first")
+                .reply(200, headers(), "second");
+
+        Assert.assertEquals("first", call("{\"query\":", "\"a\"}").body.toString());
+        Assert.assertEquals("first", call("{\"query\":\"a\"}").body.toString());
+        Assert.assertEquals("second", call("{\"query\":\"b\"}").body.toString());
+
+        Assert.assertEquals(Arrays.asList("{\"query\":\"a\"}", "{\"query\":\"b\"}"), backend.bodies());
+    }
+
+    @Test
+    public void shouldNotCacheOversizedRequestBody() {
+        configuration.setRequestBodyMethods(Arrays.asList("POST"));
+        configuration.setMaxRequestBodySize(8);
+        when(request.method()).thenReturn(HttpMethod.POST);
+        requestHeaders.set(HttpHeaders.CONTENT_TYPE, "application/json");
+        backend.reply(200, headers(), "response");
+
+        Assert.assertEquals("response", call("{\"query\":", "\"a\"}").body.toString());
+        Assert.assertEquals(Arrays.asList("{\"query\":\"a\"}"), backend.bodies());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldPrewarmCache() throws InterruptedException {
+        when(request.pathInfo()).thenReturn("/products");
+        backend.reply(200, headers(), "all")
+                .reply(200, headers(), "first")
+                .reply(200, headers(), "second");
+        Assert.assertEquals("all", call().body.toString());
+
+        // Start the warm-up from a request answered from the cache, so that only warm-up requests reach the backend
+        configuration.setPrewarmPaths(Arrays.asList("/products/1", "/products/2?lang=fr"));
+        configuration.setPrewarmConcurrency(1);
+        requestHeaders.set(HttpHeaders.ACCEPT_LANGUAGE, "fr");
+        requestHeaders.set(HttpHeaders.AUTHORIZATION, "Bearer s3cr3t");
+        requestHeaders.set(HttpHeaders.COOKIE, "session=s3cr3t");
+        requestHeaders.set("X-Gravitee-Api-Key", "s3cr3t");
+        Assert.assertEquals("all", call().body.toString());
+
+        CachePrewarmer prewarmer = CacheAttachments.get(cache, CachePrewarmer.class);
+        for (int i = 0; i < 500 && !prewarmer.isDone(); i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertTrue(prewarmer.isDone());
+        Assert.assertEquals(3, backend.requests().size());
+        for (HttpHeaders warmupHeaders : backend.requests().subList(1, 3)) {
+            Assert.assertEquals("fr", warmupHeaders.getFirst(HttpHeaders.ACCEPT_LANGUAGE));
+            Assert.assertFalse(warmupHeaders.containsKey(HttpHeaders.AUTHORIZATION));
+            Assert.assertFalse(warmupHeaders.containsKey(HttpHeaders.COOKIE));
+            Assert.assertFalse(warmupHeaders.containsKey("X-Gravitee-Api-Key"));
+        }
+
+        when(request.path()).thenReturn("/products/1");
+        when(request.pathInfo()).thenReturn("/products/1");
+        Assert.assertEquals("first", call().body.toString());
+        Assert.assertEquals(3, backend.requests().size());
+    }
+
+    @Test
+    public void shouldPurgeElementsByTag() {
+        configuration.setTagHeader("Surrogate-Key");
+        configuration.setPurgeSecret("s3cr3t");
+        HttpHeaders tagged = headers();
+        tagged.set("Surrogate-Key", "product-1 listing");
+        backend.reply(200, tagged, "products")
+                .reply(200, headers(), "product")
+                .reply(200, headers(), "products again");
+
+        call();
+        when(request.path()).thenReturn("/products/2");
+        call();
+
+        requestHeaders.set("X-Gravitee-Cache-Purge-Tags", "product-1");
+        requestHeaders.set("X-Gravitee-Cache-Purge-Secret", "s3cr3t");
+        ClientResponse purge = call();
+        Assert.assertEquals(200, purge.status);
+        Assert.assertEquals("{\"purged\":1}", purge.body.toString());
+        Assert.assertFalse(requestHeaders.containsKey("X-Gravitee-Cache-Purge-Secret"));
+
+        Assert.assertEquals("product", call().body.toString());
+        when(request.path()).thenReturn("/products");
+        Assert.assertEquals("products again", call().body.toString());
+        Assert.assertEquals(3, backend.requests().size());
+    }
+
+    @Test
+    public void shouldPurgeElementsUnderPath() {
+        configuration.setPurgeSecret("s3cr3t");
+        backend.reply(200, headers(), "product 1")
+                .reply(200, headers(), "product 2")
+                .reply(200, headers(), "orders")
+                .reply(200, headers(), "product 1 again");
+
+        when(request.path()).thenReturn("/products/1");
+        call();
+        when(request.path()).thenReturn("/products/2");
+        call();
+        when(request.path()).thenReturn("/orders");
+        call();
+
+        when(request.path()).thenReturn("/products/*");
+        requestHeaders.set("X-Gravitee-Cache", "PURGE");
+        requestHeaders.set("X-Gravitee-Cache-Purge-Secret", "s3cr3t");
+        Assert.assertEquals("{\"purged\":2}", call().body.toString());
+
+        when(request.path()).thenReturn("/orders");
+        Assert.assertEquals("orders", call().body.toString());
+        when(request.path()).thenReturn("/products/1");
+        Assert.assertEquals("product 1 again", call().body.toString());
+        Assert.assertEquals(4, backend.requests().size());
+    }
+
+    @Test
+    public void shouldRejectPurgeWithoutSecret() {
+        configuration.setTagHeader("Surrogate-Key");
+        configuration.setPurgeSecret("s3cr3t");
+        requestHeaders.set("X-Gravitee-Cache-Purge-Tags", "product-1");
+        requestHeaders.set("X-Gravitee-Cache-Purge-Secret", "guess");
+
+        new CachePolicy(configuration).onRequest(request, response, executionContext, policyChain);
+
+        verify(policyChain).failWith(argThat(result -> result.httpStatusCode() == HttpStatusCode.FORBIDDEN_403));
+        verify(policyChain, never()).doNext(request, response);
+    }
+
+    @Test
+    public void shouldRecordMetrics() {
+        CacheMetrics metrics = ((StripedCacheMetricsRegistry) CacheMetricsRegistry.getInstance()).metrics("my-api", "my-cache");
+        long hits = metrics.count(CacheEvent.HIT);
+        long misses = metrics.count(CacheEvent.MISS);
+        long oversized = metrics.count(CacheEvent.OVERSIZED);
+        long fills = metrics.getFillLatency().count();
+
+        configuration.setMaxCacheableBodySize(8);
+        backend.reply(200, headers(), "hello")
+                .reply(200, headers(), "hello", " world");
+
+        call();
+        Assert.assertEquals("MISS", attributes.get(CachePolicy.ATTR_CACHE_STATUS));
+        Assert.assertEquals(5L, attributes.get(CachePolicy.ATTR_CACHE_BODY_SIZE));
+        Assert.assertNotNull(attributes.get(CachePolicy.ATTR_CACHE_FILL_LATENCY));
+
+        call();
+        Assert.assertEquals("HIT", attributes.get(CachePolicy.ATTR_CACHE_STATUS));
+
+        cache.clear();
+        call();
+        Assert.assertEquals("OVERSIZED", attributes.get(CachePolicy.ATTR_CACHE_STATUS));
+
+        Assert.assertEquals(hits + 1, metrics.count(CacheEvent.HIT));
+        Assert.assertEquals(misses + 2, metrics.count(CacheEvent.MISS));
+        Assert.assertEquals(oversized + 1, metrics.count(CacheEvent.OVERSIZED));
+        Assert.assertEquals(fills + 1, metrics.getFillLatency().count());
+    }
+
+    @Test
+    public void shouldRefreshStaleElementOnceInBackground() {
+        configuration.setTimeToLiveSeconds(10);
+        configuration.setStaleWhileRevalidateSeconds(60);
+        configuration.setRevalidationWindowSeconds(60);
+        HttpHeaders headers = headers();
+        headers.set(HttpHeaders.ETAG, "\"v1\"");
+        backend.reply(200, headers, "v1")
+                .reply(200, headers(), "v2");
+
+        call();
+        age(20_000);
+        backend.hold();
+
+        Assert.assertEquals("v1", call().body.toString());
+        Assert.assertEquals("v1", call().body.toString());
+        Assert.assertEquals(2, backend.requests().size());
+        Assert.assertEquals("\"v1\"", backend.requests().get(1).getFirst(HttpHeaders.IF_NONE_MATCH));
+        // The background request is detached from the client one
+        Assert.assertFalse(requestHeaders.containsKey(HttpHeaders.IF_NONE_MATCH));
+
+        backend.release();
+
+        Assert.assertEquals("v2", call().body.toString());
+        Assert.assertEquals(2, backend.requests().size());
+    }
+
+    @Test
+    public void shouldCoalesceConcurrentMisses() {
+        configuration.setCoalesceRequests(true);
+        backend.hold().reply(200, headers(), "hello");
+
+        ClientResponse leader = start();
+        ClientResponse follower = start();
+        Assert.assertFalse(leader.ended);
+        Assert.assertFalse(follower.ended);
+
+        backend.release();
+
+        Assert.assertEquals("hello", leader.body.toString());
+        Assert.assertEquals("hello", follower.body.toString());
+        Assert.assertTrue(follower.ended);
+        Assert.assertEquals(1, backend.requests().size());
+    }
+
+    /**
+     * Simulate the time going by for the cached element.
+     */
+    private void age(long millis) {
+        CacheResponse cached = (CacheResponse) cache.get(key()).value();
+        cached.setExpiresAt(cached.getExpiresAt() - millis);
+        cached.setStoredAt(cached.getStoredAt() - millis);
+        cache.age(key(), millis);
+    }
+
+    private String key() {
+        return CacheKeyBuilder.get().append("API").append("my-api").append("/products").build();
+    }
+
+    private static HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_TYPE, "application/json");
+        return headers;
+    }
+
+    private ClientResponse call(String... body) {
+        ClientResponse clientResponse = start(body);
+        Assert.assertTrue(clientResponse.ended);
+        return clientResponse;
+    }
+
+    /**
+     * Send a request through the policy, without waiting for its response.
+     */
+    private ClientResponse start(String... body) {
+        attributes.put(ExecutionContext.ATTR_INVOKER, backend);
+        new CachePolicy(configuration).onRequest(request, response, executionContext, policyChain);
+
+        BufferedReadStream stream = new BufferedReadStream();
+        for (String chunk : body) {
+            stream.write(Buffer.buffer(chunk));
+        }
+        stream.end();
+
+        ClientResponse clientResponse = new ClientResponse();
+        Invoker invoker = (Invoker) attributes.get(ExecutionContext.ATTR_INVOKER);
+        invoker.invoke(executionContext, stream, connection -> connection.responseHandler(proxyResponse -> {
+            clientResponse.status = proxyResponse.status();
+            clientResponse.headers = proxyResponse.headers();
+            proxyResponse
+                    .bodyHandler(chunk -> clientResponse.body.append(chunk.toString()))
+                    .endHandler(aVoid -> clientResponse.ended = true);
+            proxyResponse.resume();
+        }));
+
+        return clientResponse;
+    }
+
+    private static class ClientResponse {
+        private int status;
+        private HttpHeaders headers;
+        private final StringBuilder body = new StringBuilder();
+        private boolean ended;
+    }
+}
@@ -17,6 +17,7 @@ package io.gravitee.policy.cache;
 
 import io.gravitee.common.http.HttpHeaders;
 import io.gravitee.gateway.api.proxy.ProxyResponse;
+import io.gravitee.policy.cache.configuration.CachePolicyConfiguration;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -91,4 +92,55 @@ public class CachePolicyTest {
         long timeToLive = CachePolicy.timeToLiveFromResponse(response);
         Assert.assertEquals(-1, timeToLive);
     }
+
+    @Test
+    public void should_cap_stalewhilerevalidate_with_configuration() {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CACHE_CONTROL, "max-age=600, stale-while-revalidate=300");
+
+        CachePolicyConfiguration configuration = new CachePolicyConfiguration();
+        configuration.setUseResponseCacheHeaders(true);
+        configuration.setStaleWhileRevalidateSeconds(60);
+        Assert.assertEquals(60, new CachePolicy(configuration).resolveStaleWhileRevalidate(headers));
+
+        configuration.setStaleWhileRevalidateSeconds(600);
+        Assert.assertEquals(300, new CachePolicy(configuration).resolveStaleWhileRevalidate(headers));
+
+        configuration.setStaleWhileRevalidateSeconds(0);
+        Assert.assertEquals(0, new CachePolicy(configuration).resolveStaleWhileRevalidate(headers));
+    }
+
+    @Test
+    public void should_cap_staleiferror_with_configuration() {
+        final HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CACHE_CONTROL, "max-age=600, stale-if-error=86400");
+
+        CachePolicyConfiguration configuration = new CachePolicyConfiguration();
+        configuration.setUseResponseCacheHeaders(true);
+        configuration.setStaleIfErrorSeconds(3600);
+        Assert.assertEquals(3600, new CachePolicy(configuration).resolveStaleIfError(headers));
+
+        headers.set(HttpHeaders.CACHE_CONTROL, "max-age=600, stale-if-error=60");
+        Assert.assertEquals(60, new CachePolicy(configuration).resolveStaleIfError(headers));
+    }
+
+    @Test
+    public void should_only_shorten_timetolive_with_jitter() {
+        CachePolicyConfiguration configuration = new CachePolicyConfiguration();
+        Assert.assertEquals(100, new CachePolicy(configuration).jitter(100));
+
+        configuration.setTimeToLiveJitterPercent(10);
+        CachePolicy policy = new CachePolicy(configuration);
+        for (int i = 0; i < 100; i++) {
+            long timeToLive = policy.jitter(100);
+            Assert.assertTrue(timeToLive >= 90 && timeToLive <= 100);
+        }
+        Assert.assertEquals(1, policy.jitter(1));
+        Assert.assertEquals(0, policy.jitter(0));
+
+        configuration.setTimeToLiveJitterPercent(500);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(policy.jitter(10) >= 1);
+        }
+    }
 }
@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.gateway.api.buffer.Buffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class CacheResponseTest {
+
+    @Test
+    public void shouldRefreshHeadersFromNotModifiedResponse() {
+        CacheResponse cached = new CacheResponse();
+        cached.setStatus(200);
+        cached.setHeaders(new HttpHeaders());
+        cached.getHeaders().set(HttpHeaders.ETAG, "\"v1\"");
+        cached.getHeaders().set(HttpHeaders.CACHE_CONTROL, "max-age=60");
+        cached.getHeaders().set(HttpHeaders.CONTENT_LENGTH, "4");
+        cached.setContent(mock(Buffer.class));
+        cached.setEtag("\"v1\"");
+
+        HttpHeaders notModified = new HttpHeaders();
+        notModified.set(HttpHeaders.CACHE_CONTROL, "max-age=120");
+        notModified.set(HttpHeaders.CONTENT_LENGTH, "0");
+
+        CacheResponse refreshed = cached.refresh(notModified);
+
+        Assert.assertEquals(200, refreshed.getStatus());
+        Assert.assertSame(cached.getContent(), refreshed.getContent());
+        Assert.assertEquals("max-age=120", refreshed.getHeaders().getFirst(HttpHeaders.CACHE_CONTROL));
+        Assert.assertEquals("4", refreshed.getHeaders().getFirst(HttpHeaders.CONTENT_LENGTH));
+        Assert.assertEquals("\"v1\"", refreshed.getEtag());
+
+        // The cached response must be left untouched
+        Assert.assertEquals("max-age=60", cached.getHeaders().getFirst(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    public void shouldNotHaveValidators() {
+        Assert.assertFalse(new CacheResponse().hasValidators());
+    }
+
+    @Test
+    public void shouldExpireEarlyCloseToExpiry() {
+        CacheResponse cached = new CacheResponse();
+        cached.setExpiresAt(10_000);
+        cached.setFillDuration(1_000);
+
+        // -ln(0.5) * 1000 ~ 693ms ahead of the expiry
+        Assert.assertFalse(cached.isExpiringEarly(9_000, 1, 0.5));
+        Assert.assertTrue(cached.isExpiringEarly(9_400, 1, 0.5));
+        Assert.assertFalse(cached.isExpiringEarly(9_999, 1, 1));
+        Assert.assertTrue(cached.isExpiringEarly(10_000, 1, 1));
+        // The higher beta, the earlier
+        Assert.assertTrue(cached.isExpiringEarly(9_000, 2, 0.5));
+    }
+
+    @Test
+    public void shouldNotExpireEarlyWithoutExpiry() {
+        CacheResponse cached = new CacheResponse();
+        cached.setFillDuration(1_000);
+
+        Assert.assertFalse(cached.isExpiringEarly(System.currentTimeMillis(), 1, 0.001));
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.coalescing;
+
+import io.gravitee.policy.cache.CacheResponse;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class RequestCoalescerTest {
+
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+
+    @Test
+    public void shouldShareLeaderResponse() {
+        AtomicReference<CacheResponse> shared = new AtomicReference<>();
+
+        InFlightRequest leader = coalescer.join("key", 5000, response -> Assert.fail());
+        Assert.assertNotNull(leader);
+
+        InFlightRequest follower = coalescer.join("key", 5000, shared::set);
+        Assert.assertNull(follower);
+
+        CacheResponse response = new CacheResponse();
+        leader.complete(response);
+
+        Assert.assertSame(response, shared.get());
+    }
+
+    @Test
+    public void shouldReleaseFollowersOnFailure() {
+        AtomicReference<Boolean> released = new AtomicReference<>();
+
+        InFlightRequest leader = coalescer.join("key", 5000, response -> Assert.fail());
+        coalescer.join("key", 5000, response -> released.set(response == null));
+
+        leader.fail();
+
+        Assert.assertTrue(released.get());
+        Assert.assertNotNull(coalescer.join("key", 5000, response -> Assert.fail()));
+    }
+
+    @Test
+    public void shouldReleaseFollowersOnTimeout() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+
+        coalescer.join("key", 50, response -> Assert.fail());
+        coalescer.join("key", 50, response -> {
+            if (response == null) {
+                latch.countDown();
+            }
+        });
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldTakeTheLeadOfAnExpiredFlight() throws InterruptedException {
+        coalescer.join("key", 10, response -> Assert.fail());
+        Thread.sleep(50);
+
+        Assert.assertNotNull(coalescer.join("key", 10, response -> Assert.fail()));
+    }
+
+    @Test
+    public void shouldCallFollowersOnTheirOwnContext() throws InterruptedException {
+        Vertx vertx = Vertx.vertx();
+        try {
+            Context context = vertx.getOrCreateContext();
+            InFlightRequest leader = coalescer.join("key", 5000, response -> Assert.fail());
+
+            CountDownLatch subscribed = new CountDownLatch(1);
+            CountDownLatch served = new CountDownLatch(1);
+            AtomicReference<Context> servedOn = new AtomicReference<>();
+            context.runOnContext(aVoid -> {
+                coalescer.join("key", 5000, response -> {
+                    servedOn.set(Vertx.currentContext());
+                    served.countDown();
+                });
+                subscribed.countDown();
+            });
+            Assert.assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+
+            // Completed from another thread than the follower's event loop
+            leader.complete(new CacheResponse());
+
+            Assert.assertTrue(served.await(5, TimeUnit.SECONDS));
+            Assert.assertSame(context, servedOn.get());
+        } finally {
+            vertx.close();
+        }
+    }
+}
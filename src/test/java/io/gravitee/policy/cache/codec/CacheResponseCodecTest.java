@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.codec;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.cache.CacheResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class CacheResponseCodecTest {
+
+    @Test
+    public void shouldEncodeAndDecode() {
+        CacheResponse response = response();
+
+        CacheResponse decoded = CacheResponseCodec.decode(CacheResponseCodec.encode(response));
+
+        assertSameResponse(response, decoded);
+    }
+
+    @Test
+    public void shouldEncodeAndDecodeWithoutContent() {
+        CacheResponse response = new CacheResponse();
+        response.setStatus(204);
+
+        CacheResponse decoded = CacheResponseCodec.decode(CacheResponseCodec.encode(response));
+
+        Assert.assertEquals(204, decoded.getStatus());
+        Assert.assertNull(decoded.getContent());
+        Assert.assertTrue(decoded.getHeaders().isEmpty());
+    }
+
+    @Test
+    public void shouldSerializeWithJavaSerialization() throws Exception {
+        CacheResponse response = response();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(response);
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertSameResponse(response, (CacheResponse) in.readObject());
+        }
+    }
+
+    @Test
+    public void shouldDecodeFirstVersion() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(1);
+        CacheResponseCodec.writeVarLong(out, 200);
+        out.writeByte(0);
+        CacheResponseCodec.writeVarLong(out, 1_600_000_000_000L);
+        CacheResponseCodec.writeVarLong(out, 30);
+        CacheResponseCodec.writeVarLong(out, 3600);
+        CacheResponseCodec.writeVarLong(out, 0);
+
+        CacheResponse decoded = CacheResponseCodec.decode(bytes.toByteArray());
+
+        Assert.assertEquals(200, decoded.getStatus());
+        Assert.assertEquals(1_600_000_000_000L, decoded.getExpiresAt());
+        Assert.assertEquals(3600, decoded.getStaleIfError());
+        Assert.assertEquals(0, decoded.getStoredAt());
+        Assert.assertEquals(0, decoded.getFillDuration());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRejectUnknownVersion() {
+        byte[] bytes = CacheResponseCodec.encode(response());
+        bytes[0] = 42;
+        CacheResponseCodec.decode(bytes);
+    }
+
+    private static CacheResponse response() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_TYPE, "application/json");
+        headers.set("X-Custom", "custom");
+        headers.put(HttpHeaders.VARY, Arrays.asList("Accept", "Accept-Language"));
+
+        CacheResponse response = new CacheResponse();
+        response.setStatus(200);
+        response.setHeaders(headers);
+        response.setContent(Buffer.buffer("{\"id\":1}"));
+        response.setExpiresAt(1_600_000_000_000L);
+        response.setStaleWhileRevalidate(30);
+        response.setStaleIfError(3600);
+        response.setStoredAt(1_599_999_400_000L);
+        response.setFillDuration(250);
+        response.setEtag("\"v1\"");
+        response.setLastModified("Thu, 01 Dec 1994 16:00:00 GMT");
+        response.setContentEncoding("gzip");
+        return response;
+    }
+
+    private static void assertSameResponse(CacheResponse expected, CacheResponse actual) {
+        Assert.assertEquals(expected.getStatus(), actual.getStatus());
+        Assert.assertEquals(expected.getHeaders().toSingleValueMap(), actual.getHeaders().toSingleValueMap());
+        Assert.assertEquals(expected.getHeaders().get(HttpHeaders.VARY), actual.getHeaders().get(HttpHeaders.VARY));
+        Assert.assertEquals(expected.getContent().toString(), actual.getContent().toString());
+        Assert.assertEquals(expected.getExpiresAt(), actual.getExpiresAt());
+        Assert.assertEquals(expected.getStaleWhileRevalidate(), actual.getStaleWhileRevalidate());
+        Assert.assertEquals(expected.getStaleIfError(), actual.getStaleIfError());
+        Assert.assertEquals(expected.getStoredAt(), actual.getStoredAt());
+        Assert.assertEquals(expected.getFillDuration(), actual.getFillDuration());
+        Assert.assertEquals(expected.getEtag(), actual.getEtag());
+        Assert.assertEquals(expected.getLastModified(), actual.getLastModified());
+        Assert.assertEquals(expected.getContentEncoding(), actual.getContentEncoding());
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.configuration;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class CacheabilityRulesTest {
+
+    @Test
+    public void shouldCacheSuccessfulResponsesByDefault() {
+        CacheabilityRules rules = new CachePolicyConfiguration().cacheabilityRules();
+
+        Assert.assertEquals(CacheabilityRules.DEFAULT_TIME_TO_LIVE, rules.timeToLive(200));
+        Assert.assertTrue(rules.isCacheable(299));
+        Assert.assertFalse(rules.isCacheable(301));
+        Assert.assertFalse(rules.isCacheable(404));
+        Assert.assertFalse(rules.isCacheable(42));
+    }
+
+    @Test
+    public void shouldApplyFirstMatchingRule() {
+        CacheabilityRules rules = CacheabilityRules.compile(Arrays.asList(
+                new StatusRule(404, 0, 30),
+                new StatusRule(400, 499, 5),
+                new StatusRule(301, 301, 0)));
+
+        Assert.assertEquals(30, rules.timeToLive(404));
+        Assert.assertEquals(5, rules.timeToLive(410));
+        Assert.assertEquals(0, rules.timeToLive(301));
+        Assert.assertEquals(CacheabilityRules.NOT_CACHEABLE, rules.timeToLive(200));
+    }
+
+    @Test
+    public void shouldRecompileOnceRulesChange() {
+        CachePolicyConfiguration configuration = new CachePolicyConfiguration();
+        Assert.assertSame(configuration.cacheabilityRules(), configuration.cacheabilityRules());
+
+        configuration.setCacheableStatuses(Arrays.asList(new StatusRule(404, 404, 10)));
+        Assert.assertTrue(configuration.cacheabilityRules().isCacheable(404));
+        Assert.assertFalse(configuration.cacheabilityRules().isCacheable(200));
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.disk;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.cache.CacheResponse;
+import io.gravitee.policy.cache.codec.CacheResponseCodec;
+import io.gravitee.policy.cache.resource.CacheElement;
+import io.gravitee.policy.cache.support.InMemoryCache;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class DiskStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final InMemoryCache cache = new InMemoryCache();
+
+    @Test
+    public void shouldWriteContentOnDisk() {
+        DiskStore store = new DiskStore(folder.getRoot().toPath(), 1024, 4096);
+        CacheResponse response = response("key", "hello");
+
+        Assert.assertTrue(store.store(cache, "key", response, 0));
+        Assert.assertNull(response.getContent());
+        Assert.assertEquals("hello", new String(response.getDiskContent().getBytes()));
+        Assert.assertEquals(1024, store.size());
+    }
+
+    @Test
+    public void shouldResolvePointerAfterSerialization() {
+        DiskStore store = new DiskStore(folder.getRoot().toPath(), 1024, 4096);
+        CacheResponse response = response("key", "hello");
+        store.store(cache, "key", response, 0);
+
+        CacheResponse decoded = CacheResponseCodec.decode(CacheResponseCodec.encode(response));
+
+        Assert.assertNull(decoded.getContent());
+        Assert.assertEquals(5, decoded.getContentLength());
+        Assert.assertEquals("hello", new String(decoded.getDiskContent().getBytes()));
+    }
+
+    @Test
+    public void shouldEvictOldestSegment() {
+        DiskStore store = new DiskStore(folder.getRoot().toPath(), 8, 16);
+
+        store.store(cache, "key1", response("key1", "hello"), 0);
+        store.store(cache, "key2", response("key2", "world"), 0);
+        CacheResponse third = response("key3", "again");
+        store.store(cache, "key3", third, 0);
+
+        Assert.assertNull(cache.get("key1"));
+        Assert.assertNotNull(cache.get("key2"));
+        Assert.assertEquals("again", new String(third.getDiskContent().getBytes()));
+        Assert.assertEquals(16, store.size());
+    }
+
+    @Test
+    public void shouldCompactReleasedContents() {
+        DiskStore store = new DiskStore(folder.getRoot().toPath(), 16, 64);
+
+        store.store(cache, "key1", response("key1", "hello"), 0);
+        store.store(cache, "key2", response("key2", "world"), 0);
+        CacheResponse kept = response("key3", "kept");
+        store.store(cache, "key3", kept, 0);
+        store.store(cache, "key4", response("key4", "next segment"), 0);
+
+        cache.evict("key1");
+        cache.evict("key2");
+        store.sweep(cache, System.currentTimeMillis() + DiskStore.SWEEP_INTERVAL_MS);
+
+        // The first segment has been compacted: its remaining content moved to the current segment
+        Assert.assertEquals("kept", new String(kept.getDiskContent().getBytes()));
+
+        // ... and it is filled again instead of a new segment
+        CacheResponse next = response("key5", "again");
+        Assert.assertTrue(store.store(cache, "key5", next, 0));
+        Assert.assertEquals("again", new String(next.getDiskContent().getBytes()));
+        Assert.assertEquals(32, store.size());
+    }
+
+    @Test
+    public void shouldNotFillSegmentAgainWhileRead() {
+        DiskStore store = new DiskStore(folder.getRoot().toPath(), 8, 16);
+
+        CacheResponse first = response("key1", "hello");
+        store.store(cache, "key1", first, 0);
+        store.store(cache, "key2", response("key2", "world"), 0);
+
+        try (DiskReader reader = first.getDiskContent().open()) {
+            // The oldest segment is dropped, but still read: the next one is filled again instead
+            CacheResponse third = response("key3", "again");
+            Assert.assertTrue(store.store(cache, "key3", third, 0));
+            Assert.assertNull(cache.get("key2"));
+            Assert.assertEquals("again", new String(third.getDiskContent().getBytes()));
+            Assert.assertEquals("hello", StandardCharsets.UTF_8.decode(reader.view()).toString());
+        }
+
+        Assert.assertNull(first.getDiskContent().open());
+        Assert.assertEquals(16, store.size());
+    }
+
+    @Test
+    public void shouldNotWriteContentLargerThanSegment() {
+        DiskStore store = new DiskStore(folder.getRoot().toPath(), 8, 64);
+        CacheResponse response = response("key", "larger than a segment");
+
+        Assert.assertFalse(store.store(cache, "key", response, 0));
+        Assert.assertNotNull(response.getContent());
+        Assert.assertEquals(0, store.size());
+    }
+
+    @Test
+    public void shouldNotResolveReleasedContent() {
+        DiskStore store = new DiskStore(folder.getRoot().toPath(), 1024, 4096);
+        CacheResponse response = response("key", "hello");
+        store.store(cache, "key", response, 0);
+
+        cache.evict("key");
+        store.sweep(cache, System.currentTimeMillis() + DiskStore.SWEEP_INTERVAL_MS);
+
+        Assert.assertNull(response.getDiskContent().open());
+        Assert.assertFalse(response.isContentAvailable());
+    }
+
+    private CacheResponse response(String key, String content) {
+        CacheResponse response = new CacheResponse();
+        response.setStatus(200);
+        response.setHeaders(new HttpHeaders());
+        response.setContent(Buffer.buffer(content));
+        cache.put(new CacheElement(key, response));
+        return response;
+    }
+}
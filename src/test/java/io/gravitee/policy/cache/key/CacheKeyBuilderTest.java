@@ -0,0 +1,83 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.key;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class CacheKeyBuilderTest {
+
+    @Test
+    public void shouldBuildFixedLengthUrlSafeKeys() {
+        String shortKey = key("API", "my-api", "/");
+        String longKey = key("API", "my-api", new String(new char[10_000]).replace('\0', 'x'));
+
+        Assert.assertEquals(CacheKeyBuilder.KEY_LENGTH, shortKey.length());
+        Assert.assertEquals(CacheKeyBuilder.KEY_LENGTH, longKey.length());
+        Assert.assertTrue(shortKey.matches("[A-Za-z0-9_-]+"));
+        Assert.assertTrue(longKey.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    public void shouldBeDeterministic() {
+        Assert.assertEquals(key("API", "my-api", "/products"), key("API", "my-api", "/products"));
+    }
+
+    @Test
+    public void shouldNotCollideOnStringHashCodeCollisions() {
+        // "Aa" and "BB" share the same String#hashCode
+        Assert.assertEquals("/Aa".hashCode(), "/BB".hashCode());
+        Assert.assertNotEquals(key("API", "my-api", "/Aa"), key("API", "my-api", "/BB"));
+    }
+
+    @Test
+    public void shouldNotBeAmbiguousOnPartBoundaries() {
+        Assert.assertNotEquals(key("API", "my-api_", "/products"), key("API", "my-api", "_/products"));
+        Assert.assertNotEquals(key("API", "ab", "c"), key("API", "a", "bc"));
+    }
+
+    @Test
+    public void shouldDistinguishNullFromLiteral() {
+        Assert.assertNotEquals(key("API", null, "/"), key("API", "null", "/"));
+        Assert.assertNotEquals(key("API", null, "/"), key("API", "", "/"));
+    }
+
+    @Test
+    public void shouldDistinguishNonAsciiParts() {
+        Assert.assertNotEquals(key("API", "my-api", "/caf\u00e9"), key("API", "my-api", "/cafe"));
+        Assert.assertNotEquals(key("API", "my-api", "/\ud83d\ude00"), key("API", "my-api", "/\ud83d\ude01"));
+    }
+
+    @Test
+    public void shouldNotCollideOnManyPaths() {
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < 100_000; i++) {
+            keys.add(key("API", "my-api", "/products/" + i));
+        }
+
+        Assert.assertEquals(100_000, keys.size());
+    }
+
+    private static String key(String scope, String api, String path) {
+        return CacheKeyBuilder.get().append(scope).append(api).append(path).build();
+    }
+}
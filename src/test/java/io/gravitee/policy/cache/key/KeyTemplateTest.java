@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.key;
+
+import io.gravitee.el.TemplateEngine;
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.policy.cache.configuration.CachePolicyConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class KeyTemplateTest {
+
+    @Test
+    public void shouldNotUseTemplateEngineForLiteralKeys() {
+        ExecutionContext executionContext = mock(ExecutionContext.class);
+
+        KeyTemplate template = KeyTemplate.compile("my-static-key");
+
+        Assert.assertTrue(template.isLiteral());
+        Assert.assertEquals("my-static-key", template.evaluate(executionContext));
+        verifyZeroInteractions(executionContext);
+    }
+
+    @Test
+    public void shouldCompileOnceForConfiguration() {
+        CachePolicyConfiguration configuration = new CachePolicyConfiguration();
+        Assert.assertNull(configuration.keyTemplate());
+
+        configuration.setKey("{#request.id}");
+        KeyTemplate template = configuration.keyTemplate();
+        Assert.assertSame(template, configuration.keyTemplate());
+
+        configuration.setKey("my-static-key");
+        Assert.assertNotSame(template, configuration.keyTemplate());
+        Assert.assertTrue(configuration.keyTemplate().isLiteral());
+    }
+
+    @Test
+    public void shouldEvaluateAsTemplateEngine() {
+        TemplateEngine templateEngine = TemplateEngine.templateEngine();
+        templateEngine.getTemplateContext().setVariable("request", Collections.singletonMap("id", "1234"));
+        templateEngine.getTemplateContext().setVariable("version", "v2");
+
+        assertSameAsTemplateEngine(templateEngine, "{#request['id']}");
+        assertSameAsTemplateEngine(templateEngine, "prefix-{#request['id']}-{#version}");
+        assertSameAsTemplateEngine(templateEngine, "{literal}-{#version}");
+        assertSameAsTemplateEngine(templateEngine, "{T(java.lang.Math).max(1, 2)}");
+    }
+
+    @Test
+    public void shouldLeaveInvalidTemplatesToTemplateEngine() {
+        TemplateEngine templateEngine = TemplateEngine.templateEngine();
+
+        KeyTemplate template = KeyTemplate.compile("{#request[}");
+
+        Assert.assertFalse(template.isLiteral());
+        try {
+            template.evaluate(templateEngine);
+            Assert.fail();
+        } catch (RuntimeException expected) {
+            // Reported by the template engine
+        }
+    }
+
+    private static void assertSameAsTemplateEngine(TemplateEngine templateEngine, String key) {
+        Assert.assertEquals(templateEngine.getValue(key, String.class), KeyTemplate.compile(key).evaluate(templateEngine));
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class HistogramTest {
+
+    @Test
+    public void shouldCountValuesByPowerOfTwo() {
+        Histogram histogram = new Histogram();
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(5);
+        histogram.record(7);
+        histogram.record(8);
+
+        Assert.assertEquals(5, histogram.count());
+        Assert.assertEquals(21, histogram.sum());
+        Assert.assertEquals(1, histogram.count(0));
+        Assert.assertEquals(1, histogram.count(1));
+        Assert.assertEquals(2, histogram.count(3));
+        Assert.assertEquals(1, histogram.count(4));
+    }
+
+    @Test
+    public void shouldEstimatePercentiles() {
+        Histogram histogram = new Histogram();
+        Assert.assertEquals(0, histogram.percentile(50));
+
+        for (int i = 0; i < 90; i++) {
+            histogram.record(100);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(10_000);
+        }
+
+        Assert.assertEquals(128, histogram.percentile(50));
+        Assert.assertEquals(128, histogram.percentile(90));
+        Assert.assertEquals(16_384, histogram.percentile(99));
+    }
+
+    @Test
+    public void shouldRecordConcurrently() throws InterruptedException {
+        Histogram histogram = new Histogram();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int t = 0; t < 4; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i);
+                }
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertEquals(40_000, histogram.count());
+        Assert.assertEquals(4L * 9_999 * 10_000 / 2, histogram.sum());
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class StripedCacheMetricsRegistryTest {
+
+    @Test
+    public void shouldDropMetricsOnceNoCacheResourceUsesThem() {
+        StripedCacheMetricsRegistry registry = new StripedCacheMetricsRegistry();
+        registry.acquire("my-api", "my-cache");
+        registry.acquire("my-api", "my-cache");
+        registry.increment("my-api", "my-cache", CacheEvent.HIT);
+
+        // The API has been redeployed, the cache resource of its previous deployment is released
+        registry.release("my-api", "my-cache");
+        Assert.assertEquals(1, registry.metrics("my-api", "my-cache").count(CacheEvent.HIT));
+
+        registry.release("my-api", "my-cache");
+        AtomicInteger caches = new AtomicInteger();
+        registry.forEach("my-api", (cacheName, metrics) -> caches.incrementAndGet());
+        Assert.assertEquals(0, caches.get());
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.offheap;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.cache.CacheResponse;
+import io.gravitee.policy.cache.resource.CacheElement;
+import io.gravitee.policy.cache.support.InMemoryCache;
+import io.netty.buffer.ByteBuf;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class OffHeapStoreTest {
+
+    private final InMemoryCache cache = new InMemoryCache();
+
+    @Test
+    public void shouldReuseReleasedChunks() {
+        OffHeapArena arena = new OffHeapArena(4096, 1024);
+
+        OffHeapContent content = arena.allocate("hello".getBytes());
+        Assert.assertEquals(5, content.length());
+        Assert.assertEquals("hello", new String(content.getBytes()));
+        Assert.assertEquals(OffHeapArena.MIN_CHUNK_SIZE, arena.reserved());
+
+        content.release();
+        content.release();
+        Assert.assertTrue(content.isReleased());
+        Assert.assertFalse(content.retain());
+        Assert.assertEquals(0, arena.reserved());
+    }
+
+    @Test
+    public void shouldReleaseOnceWrappedBuffersAreUnreachable() throws InterruptedException {
+        OffHeapArena arena = new OffHeapArena(4096, 1024);
+        OffHeapContent content = arena.allocate("hello".getBytes());
+
+        Object holder = new Object();
+        ByteBuf wrapped = content.wrap(1, 3, holder);
+        Assert.assertTrue(wrapped.isDirect());
+        Assert.assertEquals("ell", wrapped.toString(StandardCharsets.UTF_8));
+
+        content.releaseWhenUnreachable(holder);
+        holder = null;
+        arena.reclaim();
+        Assert.assertFalse(content.isReleased());
+
+        wrapped = null;
+        for (int i = 0; i < 100 && !content.isReleased(); i++) {
+            System.gc();
+            Thread.sleep(10);
+            arena.reclaim();
+        }
+        Assert.assertTrue(content.isReleased());
+        Assert.assertEquals(0, arena.reserved());
+    }
+
+    @Test
+    public void shouldNotAllocateOverBudget() {
+        OffHeapArena arena = new OffHeapArena(1024, 1024);
+
+        Assert.assertNotNull(arena.allocate(new byte[600]));
+        Assert.assertNull(arena.allocate(new byte[600]));
+    }
+
+    @Test
+    public void shouldSplitFreeChunksWithoutAllocatingMoreMemory() {
+        OffHeapArena arena = new OffHeapArena(4096, 1024);
+
+        for (int i = 0; i < 4; i++) {
+            arena.allocate(new byte[1024]).release();
+            Assert.assertNotNull(arena.allocate(new byte[1024]));
+        }
+        Assert.assertEquals(4096, arena.allocated());
+        Assert.assertNull(arena.allocate(new byte[100]));
+    }
+
+    @Test
+    public void shouldReuseFreeChunksAcrossSizeClasses() {
+        OffHeapArena arena = new OffHeapArena(4096, 1024);
+
+        OffHeapContent[] contents = new OffHeapContent[4];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = arena.allocate(new byte[1024]);
+        }
+        for (OffHeapContent content : contents) {
+            content.release();
+        }
+
+        for (int i = 0; i < 16; i++) {
+            Assert.assertNotNull(arena.allocate(new byte[256]));
+        }
+        Assert.assertEquals(4096, arena.allocated());
+        Assert.assertEquals(4096, arena.reserved());
+    }
+
+    @Test
+    public void shouldRecycleSlabRemainder() {
+        OffHeapArena arena = new OffHeapArena(2048, 1024);
+
+        Assert.assertNotNull(arena.allocate(new byte[256]));
+        Assert.assertNotNull(arena.allocate(new byte[1024]));
+        for (int i = 0; i < 3; i++) {
+            Assert.assertNotNull(arena.allocate(new byte[256]));
+        }
+        Assert.assertEquals(2048, arena.allocated());
+    }
+
+    @Test
+    public void shouldMoveContentOffHeap() {
+        OffHeapStore store = new OffHeapStore(4096);
+        CacheResponse response = response("key", "hello");
+
+        Assert.assertTrue(store.store(cache, "key", response, 0));
+        Assert.assertNull(response.getContent());
+        Assert.assertEquals("hello", new String(response.getOffHeapContent().getBytes()));
+        Assert.assertEquals(5, response.getContentLength());
+    }
+
+    @Test
+    public void shouldKeepContentOnHeapWhenFull() {
+        OffHeapStore store = new OffHeapStore(256);
+
+        Assert.assertTrue(store.store(cache, "key1", response("key1", "hello"), 0));
+
+        CacheResponse response = response("key2", "world");
+        Assert.assertFalse(store.store(cache, "key2", response, 0));
+        Assert.assertNotNull(response.getContent());
+    }
+
+    @Test
+    public void shouldReleaseEvictedContent() {
+        OffHeapStore store = new OffHeapStore(256);
+        CacheResponse evicted = response("key1", "hello");
+        store.store(cache, "key1", evicted, 0);
+
+        cache.evict("key1");
+
+        // The arena is full: evicted elements are given back before giving up
+        CacheResponse response = response("key2", "world");
+        Assert.assertTrue(store.store(cache, "key2", response, 0));
+        Assert.assertTrue(evicted.getOffHeapContent().isReleased());
+    }
+
+    @Test
+    public void shouldReleaseReplacedContent() {
+        OffHeapStore store = new OffHeapStore(4096);
+        CacheResponse first = response("key", "hello");
+        store.store(cache, "key", first, 0);
+
+        store.store(cache, "key", response("key", "world"), 0);
+
+        Assert.assertTrue(first.getOffHeapContent().isReleased());
+        Assert.assertEquals(OffHeapArena.MIN_CHUNK_SIZE, store.arena().reserved());
+    }
+
+    private CacheResponse response(String key, String content) {
+        CacheResponse response = new CacheResponse();
+        response.setStatus(200);
+        response.setHeaders(new HttpHeaders());
+        response.setContent(Buffer.buffer(content));
+        cache.put(new CacheElement(key, response));
+        return response;
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.prewarm;
+
+import io.gravitee.gateway.api.handler.Handler;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class CachePrewarmerTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void shouldLoadPathsFromConfigurationAndFile() throws IOException {
+        File file = File.createTempFile("prewarm", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), Arrays.asList("# Products", "/products/1", "", "  /products/2  ", "/products/1"),
+                StandardCharsets.UTF_8);
+
+        Assert.assertEquals(Arrays.asList("/", "/products/1", "/products/2"),
+                new ArrayList<>(CachePrewarmer.load(Arrays.asList("/", " "), file.getPath())));
+        Assert.assertEquals(Collections.singletonList("/"),
+                new ArrayList<>(CachePrewarmer.load(Collections.singletonList("/"), "/does/not/exist")));
+    }
+
+    @Test
+    public void shouldLimitConcurrentWarmups() throws InterruptedException {
+        CachePrewarmer prewarmer = new CachePrewarmer(scheduler, 2, 0);
+        Queue<Handler<Void>> inFlight = new ConcurrentLinkedQueue<>();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CountDownLatch warmed = new CountDownLatch(5);
+
+        Assert.assertTrue(prewarmer.start(Arrays.asList("/1", "/2", "/3", "/4", "/5"), null, (path, done) -> {
+            inFlight.add(done);
+            maxInFlight.accumulateAndGet(inFlight.size(), Math::max);
+            warmed.countDown();
+        }));
+        Assert.assertFalse(prewarmer.start(Collections.singletonList("/6"), null, (path, done) -> Assert.fail()));
+
+        while (!prewarmer.isDone() && warmed.getCount() > 0) {
+            Handler<Void> done = inFlight.poll();
+            if (done != null) {
+                done.handle(null);
+            } else {
+                Thread.sleep(5);
+            }
+        }
+        inFlight.forEach(done -> done.handle(null));
+
+        Assert.assertTrue(warmed.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(2, maxInFlight.get());
+    }
+
+    @Test
+    public void shouldLimitWarmupRate() throws InterruptedException {
+        CachePrewarmer prewarmer = new CachePrewarmer(scheduler, 10, 20);
+        List<Long> startedAt = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch warmed = new CountDownLatch(3);
+
+        prewarmer.start(Arrays.asList("/1", "/2", "/3"), null, (path, done) -> {
+            startedAt.add(System.nanoTime());
+            done.handle(null);
+            warmed.countDown();
+        });
+
+        Assert.assertTrue(warmed.await(5, TimeUnit.SECONDS));
+        // 20 requests per second: one every 50 ms
+        Assert.assertTrue(startedAt.get(2) - startedAt.get(0) >= TimeUnit.MILLISECONDS.toNanos(90));
+    }
+
+    @Test
+    public void shouldWarmUpFromContextOfStartingRequest() throws InterruptedException {
+        Vertx vertx = Vertx.vertx();
+        try {
+            Context context = vertx.getOrCreateContext();
+            CachePrewarmer prewarmer = new CachePrewarmer(scheduler, 2, 0);
+            Queue<Context> warmedOn = new ConcurrentLinkedQueue<>();
+            CountDownLatch warmed = new CountDownLatch(2);
+
+            context.runOnContext(aVoid -> prewarmer.start(Arrays.asList("/1", "/2"), null, (path, done) -> {
+                warmedOn.add(Vertx.currentContext());
+                done.handle(null);
+                warmed.countDown();
+            }));
+
+            Assert.assertTrue(warmed.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(Arrays.asList(context, context), new ArrayList<>(warmedOn));
+        } finally {
+            vertx.close();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.proxy;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.proxy.ProxyResponse;
+import io.gravitee.policy.cache.CacheResponse;
+import io.gravitee.policy.cache.configuration.CompressionAlgorithm;
+import io.gravitee.policy.cache.offheap.OffHeapArena;
+import io.gravitee.policy.cache.util.CompressionUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class CacheProxyConnectionTest {
+
+    @Test
+    public void shouldReplayContentInChunks() {
+        ProxyResponse response = response(CacheProxyConnection.CHUNK_SIZE * 2 + 10);
+        List<Buffer> chunks = new ArrayList<>();
+        AtomicInteger ends = new AtomicInteger();
+
+        response.bodyHandler(chunks::add).endHandler(aVoid -> ends.incrementAndGet());
+        response.resume();
+
+        Assert.assertEquals(3, chunks.size());
+        Assert.assertEquals(CacheProxyConnection.CHUNK_SIZE, chunks.get(0).length());
+        Assert.assertEquals(10, chunks.get(2).length());
+        Assert.assertEquals(1, ends.get());
+    }
+
+    @Test
+    public void shouldReplayChunksAsViewsOfNativeContent() {
+        byte[] bytes = new byte[CacheProxyConnection.CHUNK_SIZE + 10];
+        Buffer content = mock(Buffer.class);
+        when(content.getNativeBuffer()).thenReturn(Unpooled.wrappedBuffer(bytes));
+        when(content.length()).thenReturn(bytes.length);
+
+        CacheResponse cached = new CacheResponse();
+        cached.setStatus(200);
+        cached.setHeaders(new HttpHeaders());
+        cached.setContent(content);
+
+        List<Buffer> chunks = new ArrayList<>();
+        AtomicReference<ProxyResponse> response = new AtomicReference<>();
+        new CacheProxyConnection(cached).responseHandler(response::set).end();
+        response.get().bodyHandler(chunks::add).endHandler(aVoid -> {});
+        response.get().resume();
+
+        // The chunks share the memory of the cached content
+        bytes[CacheProxyConnection.CHUNK_SIZE] = 42;
+        Assert.assertEquals(2, chunks.size());
+        Assert.assertEquals(10, chunks.get(1).length());
+        Assert.assertEquals(42, ((ByteBuf) chunks.get(1).getNativeBuffer()).getByte(0));
+        Assert.assertEquals(42, chunks.get(1).getBytes()[0]);
+        verify(content, never()).getBytes();
+    }
+
+    @Test
+    public void shouldReplayOffHeapContentWithoutCopy() {
+        OffHeapArena arena = new OffHeapArena(4096, 1024);
+        CacheResponse cached = new CacheResponse();
+        cached.setStatus(200);
+        cached.setHeaders(new HttpHeaders());
+        cached.setOffHeapContent(arena.allocate("hello".getBytes()));
+
+        List<Buffer> chunks = new ArrayList<>();
+        AtomicReference<ProxyResponse> response = new AtomicReference<>();
+        new CacheProxyConnection(cached).responseHandler(response::set).end();
+        response.get().bodyHandler(chunks::add).endHandler(aVoid -> {});
+        response.get().resume();
+
+        ByteBuf chunk = (ByteBuf) chunks.get(0).getNativeBuffer();
+        Assert.assertTrue(chunk.isDirect());
+        Assert.assertEquals("hello", chunk.toString(StandardCharsets.UTF_8));
+
+        // Given back by the cache, but still referenced by the chunk being written
+        cached.getOffHeapContent().release();
+        Assert.assertFalse(cached.getOffHeapContent().isReleased());
+    }
+
+    @Test
+    public void shouldStopReplayWhenPaused() {
+        ProxyResponse response = response(CacheProxyConnection.CHUNK_SIZE * 3);
+        List<Buffer> chunks = new ArrayList<>();
+        AtomicInteger ends = new AtomicInteger();
+
+        // The client write queue is full after each chunk
+        response.bodyHandler(chunk -> {
+            chunks.add(chunk);
+            response.pause();
+        }).endHandler(aVoid -> ends.incrementAndGet());
+
+        response.resume();
+        Assert.assertEquals(1, chunks.size());
+        Assert.assertEquals(0, ends.get());
+
+        response.resume();
+        response.resume();
+        Assert.assertEquals(3, chunks.size());
+        Assert.assertEquals(0, ends.get());
+
+        response.resume();
+        Assert.assertEquals(1, ends.get());
+
+        response.resume();
+        Assert.assertEquals(1, ends.get());
+    }
+
+    @Test
+    public void shouldGoOnWhenResumedFromBodyHandler() {
+        ProxyResponse response = response(CacheProxyConnection.CHUNK_SIZE * 3);
+        List<Buffer> chunks = new ArrayList<>();
+        AtomicInteger ends = new AtomicInteger();
+
+        // The write queue is drained synchronously
+        response.bodyHandler(chunk -> {
+            chunks.add(chunk);
+            response.pause();
+            response.resume();
+        }).endHandler(aVoid -> ends.incrementAndGet());
+
+        response.resume();
+
+        Assert.assertEquals(3, chunks.size());
+        Assert.assertEquals(1, ends.get());
+    }
+
+    @Test
+    public void shouldTellRepresentationsApart() {
+        CacheResponse cached = new CacheResponse();
+        cached.setStatus(200);
+        cached.setHeaders(new HttpHeaders());
+        cached.getHeaders().set(HttpHeaders.ETAG, "\"v1\"");
+        cached.getHeaders().set(HttpHeaders.TRANSFER_ENCODING, "chunked");
+        cached.setContent(Buffer.buffer(CompressionUtil.compress("hello".getBytes(), CompressionAlgorithm.GZIP)));
+        cached.setContentEncoding("gzip");
+
+        AtomicReference<ProxyResponse> compressed = new AtomicReference<>();
+        new CacheProxyConnection(cached, "gzip").responseHandler(compressed::set).end();
+        HttpHeaders headers = compressed.get().headers();
+        Assert.assertEquals("gzip", headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assert.assertEquals("W/\"v1\"", headers.getFirst(HttpHeaders.ETAG));
+        Assert.assertEquals(HttpHeaders.ACCEPT_ENCODING, headers.getFirst(HttpHeaders.VARY));
+        Assert.assertFalse(headers.containsKey(HttpHeaders.TRANSFER_ENCODING));
+
+        AtomicReference<ProxyResponse> identity = new AtomicReference<>();
+        new CacheProxyConnection(cached, null).responseHandler(identity::set).end();
+        headers = identity.get().headers();
+        Assert.assertNull(headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+        Assert.assertEquals("\"v1\"", headers.getFirst(HttpHeaders.ETAG));
+        Assert.assertEquals(HttpHeaders.ACCEPT_ENCODING, headers.getFirst(HttpHeaders.VARY));
+
+        StringBuilder body = new StringBuilder();
+        identity.get().bodyHandler(chunk -> body.append(chunk.toString())).endHandler(aVoid -> {});
+        identity.get().resume();
+        Assert.assertEquals("hello", body.toString());
+
+        // The cached headers are left untouched
+        Assert.assertNull(cached.getHeaders().getFirst(HttpHeaders.VARY));
+    }
+
+    @Test
+    public void shouldHoldOffHeapContentUntilSent() {
+        OffHeapArena arena = new OffHeapArena(4096, 1024);
+        CacheResponse cached = new CacheResponse();
+        cached.setStatus(200);
+        cached.setHeaders(new HttpHeaders());
+        cached.setOffHeapContent(arena.allocate("hello".getBytes()));
+
+        CacheProxyConnection held = new CacheProxyConnection(cached);
+        cached.getOffHeapContent().release();
+        Assert.assertTrue(held.isContentAvailable());
+        held.cancel();
+        Assert.assertEquals(0, arena.reserved());
+
+        // The content has been given back by the cache in between: the lookup is a miss
+        Assert.assertFalse(new CacheProxyConnection(cached).isContentAvailable());
+    }
+
+    private static ProxyResponse response(int length) {
+        CacheResponse cached = new CacheResponse();
+        cached.setStatus(200);
+        cached.setHeaders(new HttpHeaders());
+        cached.setContent(Buffer.buffer(new byte[length]));
+
+        AtomicReference<ProxyResponse> response = new AtomicReference<>();
+        new CacheProxyConnection(cached).responseHandler(response::set).end();
+        return response.get();
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.resource;
+
+import io.gravitee.policy.cache.support.InMemoryCache;
+import io.gravitee.resource.cache.Cache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class CacheAttachmentsTest {
+
+    @Test
+    public void shouldAttachStateToEachCache() {
+        Cache cache = new InMemoryCache();
+        Object attached = new Object();
+
+        Assert.assertNull(CacheAttachments.get(cache, Object.class));
+        Assert.assertSame(attached, CacheAttachments.get(cache, Object.class, () -> attached));
+        Assert.assertSame(attached, CacheAttachments.get(cache, Object.class, Object::new));
+        Assert.assertSame(attached, CacheAttachments.get(cache, Object.class));
+        Assert.assertNull(CacheAttachments.get(new InMemoryCache(), Object.class));
+    }
+
+    @Test
+    public void shouldDropStateOnceCacheIsUnreachable() throws InterruptedException {
+        Cache cache = new InMemoryCache();
+        WeakReference<Object> attached = new WeakReference<>(CacheAttachments.get(cache, Object.class, Object::new));
+
+        cache = null;
+        for (int i = 0; i < 100 && attached.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+            CacheAttachments.reclaim();
+        }
+        Assert.assertNull(attached.get());
+    }
+
+    @Test
+    public void shouldReleaseStateOnceCacheIsUnreachable() throws InterruptedException {
+        Cache cache = new InMemoryCache();
+        AtomicBoolean released = new AtomicBoolean();
+        CacheAttachments.get(cache, CacheAttachments.Releasable.class, () -> () -> released.set(true));
+
+        cache = null;
+        for (int i = 0; i < 100 && !released.get(); i++) {
+            System.gc();
+            Thread.sleep(10);
+            CacheAttachments.reclaim();
+        }
+        Assert.assertTrue(released.get());
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.resource;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.cache.CacheResponse;
+import io.gravitee.policy.cache.support.InMemoryCache;
+import io.gravitee.resource.cache.Element;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class NearCacheTest {
+
+    private final InMemoryCache remote = new InMemoryCache();
+
+    @Test
+    public void shouldFillLocalTierOnRemoteHit() {
+        LocalCache local = new LocalCache(10, 1024, 5000);
+        Element element = element("key", "hello");
+        remote.put(element);
+
+        NearCache cache = new NearCache(local, remote);
+        Assert.assertSame(element, cache.get("key"));
+        Assert.assertSame(element, local.get("key"));
+
+        remote.evict("key");
+        Assert.assertSame(element, cache.get("key"));
+    }
+
+    @Test
+    public void shouldNotFillLocalTierOnPeek() {
+        LocalCache local = new LocalCache(10, 1024, 5000);
+        Element element = element("key", "hello");
+        remote.put(element);
+
+        NearCache cache = new NearCache(local, remote);
+        Assert.assertSame(element, NearCache.peek(cache, "key"));
+        Assert.assertNull(local.get("key"));
+    }
+
+    @Test
+    public void shouldPruneReplacedElementsBehindOldestOne() {
+        LocalCache local = new LocalCache(10, 1024, 60000);
+        local.put(element("oldest", "hello"));
+
+        for (int i = 0; i < 10000; i++) {
+            local.put(element("key", "hello"));
+        }
+
+        Assert.assertEquals(2, local.size());
+        Assert.assertTrue(local.queued() <= 129);
+        Assert.assertNotNull(local.get("oldest"));
+    }
+
+    @Test
+    public void shouldFillBothTiersOnPut() {
+        LocalCache local = new LocalCache(10, 1024, 5000);
+        NearCache cache = new NearCache(local, remote);
+
+        cache.put(element("key", "hello"));
+
+        Assert.assertNotNull(local.get("key"));
+        Assert.assertNotNull(remote.get("key"));
+
+        cache.evict("key");
+        Assert.assertNull(local.get("key"));
+        Assert.assertNull(remote.get("key"));
+    }
+
+    @Test
+    public void shouldEvictOldestEntries() {
+        LocalCache local = new LocalCache(2, 1024, 5000);
+
+        local.put(element("key1", "hello"));
+        local.put(element("key2", "hello"));
+        local.put(element("key3", "hello"));
+
+        Assert.assertNull(local.get("key1"));
+        Assert.assertNotNull(local.get("key3"));
+        Assert.assertEquals(2, local.size());
+    }
+
+    @Test
+    public void shouldBoundContentSize() {
+        LocalCache local = new LocalCache(10, 8, 5000);
+
+        local.put(element("key1", "hello"));
+        local.put(element("key2", "world"));
+        local.put(element("key3", "too large content"));
+
+        Assert.assertNull(local.get("key1"));
+        Assert.assertNotNull(local.get("key2"));
+        Assert.assertNull(local.get("key3"));
+    }
+
+    @Test
+    public void shouldExpireEntries() throws InterruptedException {
+        LocalCache local = new LocalCache(10, 1024, 10);
+
+        local.put(element("key", "hello"));
+        Thread.sleep(50);
+
+        Assert.assertNull(local.get("key"));
+        Assert.assertEquals(0, local.size());
+    }
+
+    private static Element element(String key, String content) {
+        CacheResponse response = new CacheResponse();
+        response.setStatus(200);
+        response.setHeaders(new HttpHeaders());
+        response.setContent(Buffer.buffer(content));
+        return new CacheElement(key, response);
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.resource;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class PathIndexTest {
+
+    private final PathIndex index = new PathIndex(100);
+
+    @Before
+    public void init() {
+        index.index("catalog", "/v2/catalog", 0);
+        index.index("products", "/v2/catalog/products", 0);
+        index.index("product-1", "/v2/catalog/products/1", 0);
+        index.index("reviews-1", "/v2/catalog/products/1/reviews", 0);
+        index.index("orders", "/v2/orders", 0);
+    }
+
+    @Test
+    public void shouldPurgeExactPath() {
+        Assert.assertEquals(Collections.singleton("products"), index.purge("/v2/catalog/products"));
+        Assert.assertEquals(4, index.size());
+    }
+
+    @Test
+    public void shouldPurgeUnderPrefix() {
+        Assert.assertEquals(new HashSet<>(Arrays.asList("products", "product-1", "reviews-1")),
+                index.purge("/v2/catalog/*"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("catalog", "orders")), index.purge("/v2*"));
+    }
+
+    @Test
+    public void shouldPurgeMatchingGlob() {
+        Assert.assertEquals(Collections.singleton("product-1"), index.purge("/v2/catalog/*/1"));
+        Assert.assertEquals(Collections.singleton("reviews-1"), index.purge("/v2/**/reviews"));
+        Assert.assertTrue(index.purge("/v2/*/reviews").isEmpty());
+    }
+
+    @Test
+    public void shouldCompileGlob() {
+        Assert.assertTrue(PathIndex.compile("/a/*/c.json").matcher("/a/b/c.json").matches());
+        Assert.assertFalse(PathIndex.compile("/a/*/c.json").matcher("/a/b/d/c.json").matches());
+        Assert.assertFalse(PathIndex.compile("/a/*/c.json").matcher("/a/b/cXjson").matches());
+        Assert.assertTrue(PathIndex.compile("/a/**/c").matcher("/a/b/d/c").matches());
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.resource;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class TagIndexTest {
+
+    @Test
+    public void shouldParseTags() {
+        Assert.assertEquals(new HashSet<>(Arrays.asList("product-1", "listing", "home")),
+                TagIndex.parse(Arrays.asList(" product-1  listing", "home,listing")));
+        Assert.assertTrue(TagIndex.parse(null).isEmpty());
+    }
+
+    @Test
+    public void shouldPurgeKeysByTag() {
+        TagIndex index = new TagIndex(10);
+        index.index("a", tags("product-1", "listing"), 0);
+        index.index("b", tags("product-2", "listing"), 0);
+        index.index("c", tags("product-3"), 0);
+
+        Assert.assertEquals(tags("a", "b"), index.purge(Collections.singletonList("listing")));
+        Assert.assertEquals(Collections.emptySet(), index.purge(Collections.singletonList("product-1")));
+        Assert.assertEquals(1, index.size());
+    }
+
+    @Test
+    public void shouldReplaceTagsOfReindexedKey() {
+        TagIndex index = new TagIndex(10);
+        index.index("a", tags("product-1"), 0);
+        index.index("a", tags("product-2"), 0);
+
+        Assert.assertTrue(index.purge(Collections.singletonList("product-1")).isEmpty());
+        Assert.assertEquals(tags("a"), index.purge(Collections.singletonList("product-2")));
+
+        index.index("b", tags("product-1"), 0);
+        index.index("b", Collections.emptySet(), 0);
+        Assert.assertEquals(0, index.size());
+    }
+
+    @Test
+    public void shouldDropOldestKeysOnceFull() {
+        TagIndex index = new TagIndex(2);
+        long now = System.currentTimeMillis();
+        index.index("expired", tags("product"), now - 1);
+        index.index("a", tags("product"), 0);
+
+        Assert.assertEquals(Collections.emptyList(), index.index("b", tags("product"), 0));
+        Assert.assertEquals(Collections.singletonList("a"), index.index("c", tags("product"), 0));
+        Assert.assertEquals(tags("b", "c"), index.purge(Collections.singletonList("product")));
+    }
+
+    @Test
+    public void shouldDropExpiredKeys() {
+        TagIndex index = new TagIndex(10);
+        long now = System.currentTimeMillis();
+        index.index("a", tags("product"), now + 60_000);
+
+        index.expire("a", now);
+        Assert.assertEquals(1, index.size());
+
+        index.expire("a", now + 60_000);
+        Assert.assertEquals(0, index.size());
+    }
+
+    private static Set<String> tags(String... tags) {
+        return new HashSet<>(Arrays.asList(tags));
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.snapshot;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.policy.cache.CacheResponse;
+import io.gravitee.policy.cache.resource.CacheElement;
+import io.gravitee.policy.cache.resource.VaryIndex;
+import io.gravitee.policy.cache.support.InMemoryCache;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class CacheSnapshotterTest {
+
+    private Path directory;
+    private CacheSnapshotter snapshotter;
+
+    @Before
+    public void init() throws IOException {
+        directory = Files.createTempDirectory("cache-snapshot");
+        snapshotter = new CacheSnapshotter(directory.resolve("snapshot"), 60, 2);
+    }
+
+    @After
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(directory.resolve("snapshot"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void shouldRestoreHottestElements() {
+        InMemoryCache cache = new InMemoryCache();
+        cache.put(element("hot", "hot content", 60, 30));
+        cache.put(element("warm", "warm content", 0, 0));
+        cache.put(element("cold", "cold content", 60, 0));
+
+        touch("hot", 3);
+        touch("warm", 2);
+        touch("cold", 1);
+
+        Assert.assertEquals(2, snapshotter.write(cache));
+
+        InMemoryCache restarted = new InMemoryCache();
+        Assert.assertEquals(2, snapshotter.load(restarted));
+
+        CacheElement hot = (CacheElement) restarted.get("hot");
+        Assert.assertEquals("hot content", ((CacheResponse) hot.value()).getContent().toString());
+        Assert.assertEquals(90, hot.timeToLive());
+        Assert.assertEquals(30, hot.getStaleTimeToLive());
+        Assert.assertEquals(0, restarted.get("warm").timeToLive());
+        Assert.assertNull(restarted.get("cold"));
+    }
+
+    @Test
+    public void shouldRestoreVariantsWithTheirIndex() {
+        InMemoryCache cache = new InMemoryCache();
+        cache.put(element("variant", "gzip content", 60, 0));
+        cache.put(new VaryIndex.Element("primary", new VaryIndex(Collections.singletonList("accept-encoding")), 60));
+        snapshotter.hotKeys().touch("variant", "primary");
+
+        Assert.assertEquals(1, snapshotter.write(cache));
+
+        InMemoryCache restarted = new InMemoryCache();
+        Assert.assertEquals(1, snapshotter.load(restarted));
+        Assert.assertNotNull(restarted.get("variant"));
+        Assert.assertEquals(Collections.singletonList("accept-encoding"),
+                ((VaryIndex) restarted.get("primary").value()).getHeaderNames());
+    }
+
+    @Test
+    public void shouldSkipExpiredAndPresentElements() {
+        InMemoryCache cache = new InMemoryCache();
+        CacheElement expiring = element("expiring", "content", 1, 0);
+        ((CacheResponse) expiring.value()).setExpiresAt(System.currentTimeMillis() + 10);
+        cache.put(expiring);
+        cache.put(element("present", "old content", 60, 0));
+        touch("expiring", 1);
+        touch("present", 1);
+
+        Assert.assertEquals(2, snapshotter.write(cache));
+
+        InMemoryCache restarted = new InMemoryCache();
+        restarted.put(element("present", "new content", 60, 0));
+
+        sleep(20);
+        Assert.assertEquals(0, snapshotter.load(restarted));
+        Assert.assertEquals("new content",
+                ((CacheResponse) restarted.get("present").value()).getContent().toString());
+    }
+
+    @Test
+    public void shouldIgnoreMissingSnapshot() {
+        Assert.assertEquals(0, snapshotter.load(new InMemoryCache()));
+    }
+
+    private void touch(String key, int times) {
+        for (int i = 0; i < times; i++) {
+            snapshotter.hotKeys().touch(key, null);
+        }
+    }
+
+    private static CacheElement element(String key, String content, int timeToLive, int staleTimeToLive) {
+        CacheResponse response = new CacheResponse();
+        response.setStatus(200);
+        response.setHeaders(new HttpHeaders());
+        response.setContent(Buffer.buffer(content));
+        response.setExpiresAt((timeToLive > 0) ? System.currentTimeMillis() + timeToLive * 1000L : 0);
+
+        CacheElement element = new CacheElement(key, response);
+        element.setTimeToLive(timeToLive);
+        element.setStaleTimeToLive(staleTimeToLive);
+        return element;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
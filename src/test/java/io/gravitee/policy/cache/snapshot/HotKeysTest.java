@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.snapshot;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class HotKeysTest {
+
+    @Test
+    public void shouldRankKeysByAccesses() {
+        HotKeys hotKeys = new HotKeys(10);
+        touch(hotKeys, "cold", 1);
+        touch(hotKeys, "hot", 5);
+        touch(hotKeys, "warm", 3);
+
+        List<String> hottest = hotKeys.hottest(2).stream().map(HotKeys.Key::getKey).collect(Collectors.toList());
+        Assert.assertEquals(2, hottest.size());
+        Assert.assertEquals("hot", hottest.get(0));
+        Assert.assertEquals("warm", hottest.get(1));
+    }
+
+    @Test
+    public void shouldIgnoreNewKeysOnceFull() {
+        HotKeys hotKeys = new HotKeys(2);
+        touch(hotKeys, "a", 1);
+        touch(hotKeys, "b", 1);
+        touch(hotKeys, "c", 10);
+
+        Assert.assertEquals(2, hotKeys.size());
+        Assert.assertEquals(2, hotKeys.hottest(10).size());
+    }
+
+    @Test
+    public void shouldForgetKeysNoLongerAccessed() {
+        HotKeys hotKeys = new HotKeys(2);
+        touch(hotKeys, "a", 1);
+        touch(hotKeys, "b", 4);
+
+        hotKeys.decay();
+
+        Assert.assertEquals(1, hotKeys.size());
+        Assert.assertEquals(2, hotKeys.hottest(1).get(0).getHits());
+
+        touch(hotKeys, "c", 1);
+        Assert.assertEquals(2, hotKeys.size());
+    }
+
+    private static void touch(HotKeys hotKeys, String key, int times) {
+        for (int i = 0; i < times; i++) {
+            hotKeys.touch(key, null);
+        }
+    }
+}
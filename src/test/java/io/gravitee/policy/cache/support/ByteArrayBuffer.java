@@ -0,0 +1,96 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.support;
+
+import io.gravitee.gateway.api.buffer.Buffer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Heap {@link Buffer} used by the tests, the gateway relies on Vert.x buffers at runtime.
+ *
+ * @author GraviteeSource Team
+ */
+public class ByteArrayBuffer implements Buffer {
+
+    private final ByteArrayOutputStream bytes;
+
+    ByteArrayBuffer(int initialSize) {
+        this.bytes = new ByteArrayOutputStream(Math.max(initialSize, 1));
+    }
+
+    ByteArrayBuffer(byte[] content) {
+        this(content.length);
+        this.bytes.write(content, 0, content.length);
+    }
+
+    @Override
+    public Buffer appendBuffer(Buffer buffer) {
+        byte[] content = buffer.getBytes();
+        bytes.write(content, 0, content.length);
+        return this;
+    }
+
+    @Override
+    public Buffer appendBuffer(Buffer buffer, int length) {
+        bytes.write(buffer.getBytes(), 0, length);
+        return this;
+    }
+
+    @Override
+    public Buffer appendString(String str, String enc) {
+        byte[] content = str.getBytes(Charset.forName(enc));
+        bytes.write(content, 0, content.length);
+        return this;
+    }
+
+    @Override
+    public Buffer appendString(String str) {
+        return appendString(str, StandardCharsets.UTF_8.name());
+    }
+
+    @Override
+    public String toString() {
+        return toString(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString(String enc) {
+        return toString(Charset.forName(enc));
+    }
+
+    @Override
+    public String toString(Charset enc) {
+        return new String(bytes.toByteArray(), enc);
+    }
+
+    @Override
+    public byte[] getBytes() {
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public int length() {
+        return bytes.size();
+    }
+
+    @Override
+    public Object getNativeBuffer() {
+        return bytes;
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.support;
+
+import io.gravitee.common.http.HttpHeaders;
+import io.gravitee.gateway.api.ExecutionContext;
+import io.gravitee.gateway.api.Invoker;
+import io.gravitee.gateway.api.buffer.Buffer;
+import io.gravitee.gateway.api.handler.Handler;
+import io.gravitee.gateway.api.proxy.ProxyConnection;
+import io.gravitee.gateway.api.proxy.ProxyResponse;
+import io.gravitee.gateway.api.stream.ReadStream;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * {@link Invoker} answering with scripted responses, or failing the connection.
+ *
+ * @author GraviteeSource Team
+ */
+public class FakeBackend implements Invoker {
+
+    private final Queue<Reply> replies = new LinkedList<>();
+    private final List<HttpHeaders> requests = new ArrayList<>();
+    private final List<String> bodies = new ArrayList<>();
+    private final List<BackendConnection> held = new ArrayList<>();
+    private boolean holding;
+
+    public synchronized FakeBackend reply(int status, HttpHeaders headers, String... chunks) {
+        replies.add(new Reply(status, headers, chunks, null));
+        return this;
+    }
+
+    public FakeBackend fail(Throwable throwable) {
+        replies.add(new Reply(0, null, null, throwable));
+        return this;
+    }
+
+    /**
+     * Hold the responses until {@link #release()}, as if the backend calls were still in flight.
+     */
+    public synchronized FakeBackend hold() {
+        holding = true;
+        return this;
+    }
+
+    public void release() {
+        List<BackendConnection> connections;
+        synchronized (this) {
+            holding = false;
+            connections = new ArrayList<>(held);
+            held.clear();
+        }
+        connections.forEach(BackendConnection::answer);
+    }
+
+    /**
+     * The headers of the requests received by the backend.
+     */
+    public List<HttpHeaders> requests() {
+        return requests;
+    }
+
+    /**
+     * The bodies of the requests received by the backend.
+     */
+    public List<String> bodies() {
+        return bodies;
+    }
+
+    @Override
+    public synchronized void invoke(ExecutionContext executionContext, ReadStream<Buffer> stream, Handler<ProxyConnection> connectionHandler) {
+        requests.add(new HttpHeaders(executionContext.request().headers()));
+        Reply reply = replies.remove();
+
+        BackendConnection connection = new BackendConnection(reply);
+        connectionHandler.handle(connection);
+
+        StringBuilder body = new StringBuilder();
+        stream
+                .bodyHandler(chunk -> body.append(chunk.toString()))
+                .endHandler(aVoid -> {
+                    bodies.add(body.toString());
+                    if (holding) {
+                        held.add(connection);
+                    } else {
+                        connection.end();
+                    }
+                });
+    }
+
+    private static class Reply {
+        private final int status;
+        private final HttpHeaders headers;
+        private final String[] chunks;
+        private final Throwable failure;
+
+        Reply(final int status, final HttpHeaders headers, final String[] chunks, final Throwable failure) {
+            this.status = status;
+            this.headers = headers;
+            this.chunks = chunks;
+            this.failure = failure;
+        }
+    }
+
+    private static class BackendConnection implements ProxyConnection {
+        private final Reply reply;
+        private Handler<ProxyResponse> responseHandler;
+        private Handler<Throwable> exceptionHandler;
+
+        BackendConnection(final Reply reply) {
+            this.reply = reply;
+        }
+
+        @Override
+        public ProxyConnection write(Buffer buffer) {
+            return this;
+        }
+
+        @Override
+        public void end() {
+            answer();
+        }
+
+        void answer() {
+            if (reply.failure != null) {
+                exceptionHandler.handle(reply.failure);
+            } else {
+                responseHandler.handle(new BackendResponse(reply));
+            }
+        }
+
+        @Override
+        public ProxyConnection exceptionHandler(Handler<Throwable> exceptionHandler) {
+            this.exceptionHandler = exceptionHandler;
+            return this;
+        }
+
+        @Override
+        public ProxyConnection responseHandler(Handler<ProxyResponse> responseHandler) {
+            this.responseHandler = responseHandler;
+            return this;
+        }
+    }
+
+    private static class BackendResponse implements ProxyResponse {
+        private final Reply reply;
+        private Handler<Buffer> bodyHandler;
+        private Handler<Void> endHandler;
+
+        BackendResponse(final Reply reply) {
+            this.reply = reply;
+        }
+
+        @Override
+        public int status() {
+            return reply.status;
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return reply.headers;
+        }
+
+        @Override
+        public ReadStream<Buffer> bodyHandler(Handler<Buffer> bodyHandler) {
+            this.bodyHandler = bodyHandler;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+            this.endHandler = endHandler;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> resume() {
+            for (String chunk : reply.chunks) {
+                bodyHandler.handle(Buffer.buffer(chunk));
+            }
+            endHandler.handle(null);
+            return this;
+        }
+    }
+}
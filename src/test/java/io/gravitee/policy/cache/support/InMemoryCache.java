@@ -0,0 +1,97 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.support;
+
+import io.gravitee.resource.cache.Cache;
+import io.gravitee.resource.cache.Element;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link Cache} keeping elements in a map, honoring their time to live as a cache resource does.
+ *
+ * @author GraviteeSource Team
+ */
+public class InMemoryCache implements Cache {
+
+    private final Map<Object, Entry> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public String getName() {
+        return "in-memory";
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return entries;
+    }
+
+    @Override
+    public Element get(Object key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.expiresAt != 0 && System.currentTimeMillis() >= entry.expiresAt) {
+            entries.remove(key, entry);
+            return null;
+        }
+
+        return entry.element;
+    }
+
+    @Override
+    public void put(Element element) {
+        long expiresAt = (element.timeToLive() > 0) ? System.currentTimeMillis() + element.timeToLive() * 1000L : 0;
+        entries.put(element.key(), new Entry(element, expiresAt));
+    }
+
+    @Override
+    public void evict(Object key) {
+        entries.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Move the expiry of an element, to simulate the time going by.
+     */
+    public void age(Object key, long millis) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt != 0) {
+            entries.put(key, new Entry(entry.element, entry.expiresAt - millis));
+        }
+    }
+
+    private static class Entry {
+        private final Element element;
+        private final long expiresAt;
+
+        Entry(final Element element, final long expiresAt) {
+            this.element = element;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
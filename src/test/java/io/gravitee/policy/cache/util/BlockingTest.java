@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class BlockingTest {
+
+    @Test
+    public void shouldRunInlineOutsideOfEventLoop() {
+        AtomicReference<String> result = new AtomicReference<>();
+
+        Blocking.execute(() -> "done", result::set, throwable -> Assert.fail());
+
+        Assert.assertEquals("done", result.get());
+    }
+
+    @Test
+    public void shouldRunOffEventLoop() throws InterruptedException {
+        Vertx vertx = Vertx.vertx();
+        try {
+            Context context = vertx.getOrCreateContext();
+            AtomicBoolean onEventLoop = new AtomicBoolean(true);
+            AtomicReference<Context> calledBackOn = new AtomicReference<>();
+            CountDownLatch latch = new CountDownLatch(1);
+
+            context.runOnContext(aVoid -> Blocking.execute(() -> {
+                onEventLoop.set(Context.isOnEventLoopThread());
+                return "done";
+            }, result -> {
+                calledBackOn.set(Vertx.currentContext());
+                latch.countDown();
+            }, throwable -> Assert.fail()));
+
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+            Assert.assertFalse(onEventLoop.get());
+            Assert.assertSame(context, calledBackOn.get());
+        } finally {
+            vertx.close();
+        }
+    }
+
+    @Test
+    public void shouldReportFailure() {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Blocking.execute(() -> {
+            throw new IllegalStateException();
+        }, result -> Assert.fail(), failure::set);
+
+        Assert.assertTrue(failure.get() instanceof IllegalStateException);
+    }
+}
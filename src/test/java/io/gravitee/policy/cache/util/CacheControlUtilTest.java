@@ -41,4 +41,61 @@ public class CacheControlUtilTest {
         Assert.assertTrue(cacheControl.isNoTransform());
         Assert.assertTrue(cacheControl.isPublic());
     }
+
+    @Test
+    public void shouldExtractStaleWhileRevalidate() {
+        CacheControl cacheControl = CacheControlUtil.parseCacheControl("max-age=600, stale-while-revalidate=30");
+        Assert.assertEquals(600, cacheControl.getMaxAge());
+        Assert.assertEquals(30, cacheControl.getStaleWhileRevalidate());
+    }
+
+    @Test
+    public void shouldExtractRequestDirectives() {
+        CacheControl cacheControl = CacheControlUtil.parseCacheControl("max-stale=60, min-fresh=10, only-if-cached");
+        Assert.assertEquals(60, cacheControl.getMaxStale());
+        Assert.assertEquals(10, cacheControl.getMinFresh());
+        Assert.assertTrue(cacheControl.isOnlyIfCached());
+
+        cacheControl = CacheControlUtil.parseCacheControl("max-stale");
+        Assert.assertEquals(2147483648L, cacheControl.getMaxStale());
+        Assert.assertEquals(-1, cacheControl.getMinFresh());
+        Assert.assertFalse(cacheControl.isOnlyIfCached());
+    }
+
+    @Test
+    public void shouldExtractQuotedAndSpacedValues() {
+        CacheControl cacheControl = CacheControlUtil.parseCacheControl(" private=\"Set-Cookie, X-Token\" , max-age = \"120\",MUST-REVALIDATE ");
+        Assert.assertTrue(cacheControl.isPrivate());
+        Assert.assertEquals(120, cacheControl.getMaxAge());
+        Assert.assertTrue(cacheControl.isMustRevalidate());
+        Assert.assertFalse(cacheControl.isNoCache());
+    }
+
+    @Test
+    public void shouldIgnoreInvalidValuesAndUnknownDirectives() {
+        CacheControl cacheControl = CacheControlUtil.parseCacheControl("max-age=abc, s-maxage, community=\"UCI\", immutable, no-store");
+        Assert.assertEquals(-1, cacheControl.getMaxAge());
+        Assert.assertEquals(-1, cacheControl.getSMaxAge());
+        Assert.assertTrue(cacheControl.isNoStore());
+    }
+
+    @Test
+    public void shouldCapDeltaSeconds() {
+        CacheControl cacheControl = CacheControlUtil.parseCacheControl("max-age=99999999999999999999999");
+        Assert.assertEquals(2147483648L, cacheControl.getMaxAge());
+    }
+
+    @Test
+    public void shouldMemoizeParsedValues() {
+        Assert.assertSame(CacheControlUtil.parseCacheControl("public, max-age=60"),
+                CacheControlUtil.parseCacheControl("public, max-age=60"));
+    }
+
+    @Test
+    public void shouldSelectDirective() {
+        Assert.assertEquals(CacheControlUtil.Directive.SMAXAGE, CacheControlUtil.Directive.select("s-maxage"));
+        Assert.assertEquals(CacheControlUtil.Directive.STALEIFERROR, CacheControlUtil.Directive.select("Stale-If-Error"));
+        Assert.assertEquals(CacheControlUtil.Directive.UNKNOWN, CacheControlUtil.Directive.select("max-ages"));
+        Assert.assertEquals(CacheControlUtil.Directive.UNKNOWN, CacheControlUtil.Directive.select(""));
+    }
 }
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import io.gravitee.policy.cache.configuration.CompressionAlgorithm;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class CompressionUtilTest {
+
+    private static final byte[] CONTENT = "{\"items\":[{\"id\":1},{\"id\":2},{\"id\":3},{\"id\":4}]}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void shouldCompressAndDecompressWithGzip() {
+        byte[] compressed = CompressionUtil.compress(CONTENT, CompressionAlgorithm.GZIP);
+        Assert.assertArrayEquals(CONTENT, CompressionUtil.decompress(compressed, "gzip"));
+    }
+
+    @Test
+    public void shouldCompressAndDecompressWithDeflate() {
+        byte[] compressed = CompressionUtil.compress(CONTENT, CompressionAlgorithm.DEFLATE);
+        Assert.assertArrayEquals(CONTENT, CompressionUtil.decompress(compressed, "deflate"));
+    }
+
+    @Test
+    public void shouldAcceptEncoding() {
+        Assert.assertTrue(CompressionUtil.accepts("gzip, deflate, br", "gzip"));
+        Assert.assertTrue(CompressionUtil.accepts("deflate;q=0.5, GZIP;q=1.0", "gzip"));
+        Assert.assertTrue(CompressionUtil.accepts("*", "gzip"));
+        Assert.assertFalse(CompressionUtil.accepts("*, gzip;q=0", "gzip"));
+        Assert.assertFalse(CompressionUtil.accepts("br", "gzip"));
+        Assert.assertFalse(CompressionUtil.accepts(null, "gzip"));
+    }
+
+    @Test
+    public void shouldMatchContentTypes() {
+        Assert.assertTrue(CompressionUtil.matches("application/json; charset=UTF-8", Arrays.asList("application/json")));
+        Assert.assertTrue(CompressionUtil.matches("text/html", Arrays.asList("text/*")));
+        Assert.assertTrue(CompressionUtil.matches("application/hal+json", Arrays.asList("application/*+json")));
+        Assert.assertFalse(CompressionUtil.matches("image/png", Arrays.asList("text/*", "application/json")));
+        Assert.assertFalse(CompressionUtil.matches(null, Arrays.asList("text/*")));
+    }
+}
@@ -43,4 +43,24 @@ public class ExpiresUtilTest {
         Instant instant = ExpiresUtil.parseExpires(null);
         Assert.assertNull(instant);
     }
+
+    @Test
+    public void shouldParseExpiresHeaderAsFormatter() {
+        Assert.assertEquals(Instant.parse("1994-12-01T16:00:00Z"), ExpiresUtil.parseRfc1123("Thu, 01 Dec 1994 16:00:00 GMT"));
+        Assert.assertEquals(Instant.parse("2024-02-29T23:59:59Z"), ExpiresUtil.parseExpires("Thu, 29 Feb 2024 23:59:59 GMT"));
+    }
+
+    @Test
+    public void shouldNotParseInvalidDates() {
+        Assert.assertNull(ExpiresUtil.parseExpires("Fri, 01 Dec 1994 16:00:00 GMT"));
+        Assert.assertNull(ExpiresUtil.parseExpires("Thu, 30 Feb 2023 16:00:00 GMT"));
+        Assert.assertNull(ExpiresUtil.parseExpires("0"));
+        Assert.assertNull(ExpiresUtil.parseExpires("-1"));
+    }
+
+    @Test
+    public void shouldMemoizeParsedValues() {
+        Assert.assertSame(ExpiresUtil.parseExpires("Sun, 06 Nov 1994 08:49:37 GMT"),
+                ExpiresUtil.parseExpires("Sun, 06 Nov 1994 08:49:37 GMT"));
+    }
 }
@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class MurmurHash3Test {
+
+    @Test
+    public void shouldMatchReferenceImplementation() {
+        assertHash("", 0L, 0L);
+        assertHash("hello", -3758069500696749310L, 6565844092913065241L);
+        assertHash("0123456789abcdefXYZ", -7362412312553418723L, 5650296070450224371L);
+        assertHash("The quick brown fox jumps over the lazy dog", -2068352364225029268L, 8809951995912426311L);
+    }
+
+    @Test
+    public void shouldHashRange() {
+        byte[] data = "__hello__".getBytes(StandardCharsets.UTF_8);
+        long[] hash = new long[2];
+
+        MurmurHash3.hash128x64(data, 2, 5, 0, hash);
+
+        Assert.assertEquals(-3758069500696749310L, hash[0]);
+        Assert.assertEquals(6565844092913065241L, hash[1]);
+    }
+
+    private static void assertHash(String value, long h1, long h2) {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        long[] hash = new long[2];
+
+        MurmurHash3.hash128x64(data, 0, data.length, 0, hash);
+
+        Assert.assertEquals(h1, hash[0]);
+        Assert.assertEquals(h2, hash[1]);
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2015 The Gravitee team (http://gravitee.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.gravitee.policy.cache.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * @author GraviteeSource Team
+ */
+public class VaryUtilTest {
+
+    @Test
+    public void shouldParseVary() {
+        Assert.assertEquals(Collections.emptyList(), VaryUtil.parseVary(null));
+        Assert.assertEquals(Collections.emptyList(), VaryUtil.parseVary(" , "));
+        Assert.assertEquals(Arrays.asList("accept", "accept-language"), VaryUtil.parseVary("Accept-Language, accept,ACCEPT"));
+        Assert.assertNull(VaryUtil.parseVary("Accept, *"));
+    }
+
+    @Test
+    public void shouldNormalizeAcceptHeaders() {
+        Assert.assertNull(VaryUtil.normalize("Accept", null));
+        Assert.assertEquals("text/html;q=0.9,application/json",
+                VaryUtil.normalize("Accept", Arrays.asList("Text/HTML ; q=0.9", " application/json")));
+        Assert.assertEquals("fr-fr,en;q=0.5", VaryUtil.normalize("Accept-Language", Collections.singletonList("fr-FR, en; q=0.5")));
+    }
+
+    @Test
+    public void shouldNormalizeAcceptEncoding() {
+        Assert.assertEquals(VaryUtil.normalize("Accept-Encoding", Collections.singletonList("gzip, deflate")),
+                VaryUtil.normalize("Accept-Encoding", Collections.singletonList("Deflate,GZIP, identity;q=0")));
+    }
+
+    @Test
+    public void shouldKeepCaseOfOtherHeaders() {
+        Assert.assertEquals("Bearer abc", VaryUtil.normalize("Authorization", Collections.singletonList("  Bearer  abc ")));
+    }
+}